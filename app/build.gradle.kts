@@ -47,6 +47,16 @@ android {
     kotlinOptions {
         jvmTarget = "11"
     }
+    testOptions {
+        unitTests.all {
+            // 微基准 (*Benchmark) 默认不跑：./gradlew testDebugUnitTest -Pbenchmark
+            if (project.hasProperty("benchmark")) {
+                it.systemProperty("benchmark", "true")
+            } else {
+                it.exclude("**/*Benchmark.class")
+            }
+        }
+    }
 }
 
 dependencies {
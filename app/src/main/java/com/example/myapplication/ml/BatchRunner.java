@@ -0,0 +1,243 @@
+package com.example.myapplication.ml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量识别队列：有界、并发可配、可取消，逐项回调结果，结束时给出吞吐统计
+ *
+ * 导入整本相册 (50~500 张) 时不能一次把所有任务塞进线程池：每张图解码后都是几 MB 的位图，
+ * 全部排队会撑爆内存。这里用一个 feeder 线程按顺序投递，信号量限制"在跑 + 排队"的总数
+ * (concurrency + queueCapacity)，一项完成才放进下一项。
+ *
+ * 回调在工作线程上执行，UI 需要自己切回主线程。
+ * 纯 Java 实现，不依赖 android.*，任务内容 (解码 + 检测) 由调用方提供。
+ */
+public class BatchRunner<I, O> {
+
+    /** 处理单个输入，允许抛异常 (记为失败，不影响其余项) */
+    public interface Task<I, O> {
+        O run(I input) throws Exception;
+    }
+
+    public interface Listener<I, O> {
+        /**
+         * 单项完成
+         *
+         * @param output 成功时的结果；失败时为 null
+         * @param error  失败原因；成功时为 null
+         */
+        void onItem(int index, I input, O output, Throwable error, long latencyMs, Progress progress);
+
+        /** 全部完成或被取消后回调一次 */
+        void onFinished(Summary summary);
+    }
+
+    /** 实时进度 */
+    public static final class Progress {
+        public final int completed;
+        public final int failed;
+        public final int total;
+
+        Progress(int completed, int failed, int total) {
+            this.completed = completed;
+            this.failed = failed;
+            this.total = total;
+        }
+    }
+
+    /** 吞吐统计 */
+    public static final class Summary {
+        public final int total;
+        public final int completed;
+        public final int failed;
+        public final boolean cancelled;
+        public final long wallTimeMs;
+        public final double imagesPerSecond;
+        public final long p50LatencyMs;
+        public final long p95LatencyMs;
+
+        Summary(int total, int completed, int failed, boolean cancelled, long wallTimeMs, long[] latencies) {
+            this.total = total;
+            this.completed = completed;
+            this.failed = failed;
+            this.cancelled = cancelled;
+            this.wallTimeMs = wallTimeMs;
+            this.imagesPerSecond = wallTimeMs > 0 ? completed * 1000.0 / wallTimeMs : 0;
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            this.p50LatencyMs = percentile(sorted, 50);
+            this.p95LatencyMs = percentile(sorted, 95);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d done (%d failed%s) in %d ms, %.2f img/s, p50 %d ms, p95 %d ms",
+                    completed, total, failed, cancelled ? ", cancelled" : "",
+                    wallTimeMs, imagesPerSecond, p50LatencyMs, p95LatencyMs);
+        }
+    }
+
+    /** 一次批量任务的句柄 */
+    public final class Batch {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        // 正在执行的工作线程，取消时逐个中断
+        private final Set<Thread> running = new HashSet<>();
+        private volatile Thread feeder;
+
+        /** 停止投递新项，中断正在执行的项；onFinished 仍会回调 */
+        public void cancel() {
+            if (!cancelled.compareAndSet(false, true)) return;
+            Thread t = feeder;
+            if (t != null) t.interrupt();
+            synchronized (running) {
+                for (Thread worker : running) worker.interrupt();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+
+    private final ExecutorService workers;
+    private final Set<Batch> activeBatches = new HashSet<>();
+    private final int concurrency;
+    private final int queueCapacity;
+
+    /**
+     * @param concurrency   同时处理的项数 (通常等于检测器池大小)
+     * @param queueCapacity 已投递但尚未开始的项数上限
+     */
+    public BatchRunner(int concurrency, int queueCapacity) {
+        this.concurrency = Math.max(1, concurrency);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.workers = Executors.newFixedThreadPool(this.concurrency);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * 开始一批任务，立即返回
+     */
+    public Batch submit(List<I> inputs, Task<I, O> task, Listener<I, O> listener) {
+        final List<I> items = new ArrayList<>(inputs);
+        final int total = items.size();
+        final int permits = concurrency + queueCapacity;
+        final Batch batch = new Batch();
+        final Semaphore slots = new Semaphore(permits);
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final long[] latencies = new long[total];
+        final long start = System.nanoTime();
+
+        Thread feeder = new Thread(() -> {
+            try {
+                for (int i = 0; i < total && !batch.isCancelled(); i++) {
+                    slots.acquire();
+                    final int index = i;
+                    try {
+                        workers.execute(() -> {
+                            try {
+                                runItem(index, items.get(index), task, listener, batch,
+                                        completed, failed, latencies, total);
+                            } finally {
+                                slots.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // 线程池已关闭
+                        slots.release();
+                        batch.cancelled.set(true);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // 取消
+            }
+            // 收回全部许可 = 已投递的项全部结束 (已排队但被取消的项会在 runItem 开头直接返回)
+            slots.acquireUninterruptibly(permits);
+
+            long wallMs = (System.nanoTime() - start) / 1_000_000L;
+            int done = completed.get() + failed.get();
+            long[] recorded = new long[done];
+            int n = 0;
+            for (long v : latencies) {
+                if (v > 0 && n < done) recorded[n++] = v - 1;
+            }
+            synchronized (activeBatches) {
+                activeBatches.remove(batch);
+            }
+            listener.onFinished(new Summary(total, completed.get(), failed.get(),
+                    batch.isCancelled(), wallMs, Arrays.copyOf(recorded, n)));
+        }, "BatchRunner-feeder");
+        batch.feeder = feeder;
+        synchronized (activeBatches) {
+            activeBatches.add(batch);
+        }
+        feeder.start();
+        return batch;
+    }
+
+    private void runItem(int index, I input, Task<I, O> task, Listener<I, O> listener, Batch batch,
+                         AtomicInteger completed, AtomicInteger failed, long[] latencies, int total) {
+        Thread self = Thread.currentThread();
+        synchronized (batch.running) {
+            // 先登记再检查，保证 cancel() 不会漏掉正要开始的项
+            if (batch.isCancelled()) return;
+            batch.running.add(self);
+        }
+        long t0 = System.nanoTime();
+        O output = null;
+        Throwable error = null;
+        try {
+            output = task.run(input);
+        } catch (Throwable t) {
+            error = t;
+        } finally {
+            synchronized (batch.running) {
+                batch.running.remove(self);
+            }
+            // 清掉取消时留下的中断标记，免得影响线程池里的下一项
+            Thread.interrupted();
+        }
+        // 取消导致的失败不计入统计
+        if (batch.isCancelled() && error != null) return;
+
+        long latencyMs = (System.nanoTime() - t0) / 1_000_000L;
+        latencies[index] = latencyMs + 1; // 0 表示未执行
+        int c = error == null ? completed.incrementAndGet() : completed.get();
+        int f = error != null ? failed.incrementAndGet() : failed.get();
+        listener.onItem(index, input, output, error, latencyMs, new Progress(c, f, total));
+    }
+
+    /**
+     * 最近秩法分位数
+     */
+    static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /** 取消所有进行中的批次并关闭工作线程 */
+    public void close() {
+        List<Batch> batches;
+        synchronized (activeBatches) {
+            batches = new ArrayList<>(activeBatches);
+        }
+        for (Batch batch : batches) batch.cancel();
+        // 不用 shutdownNow：已排队的项要跑到 runItem 开头直接返回，把许可还给 feeder
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.myapplication.ml;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * 按尺寸复用的位图池 (实时帧路径用)
+ *
+ * 30 fps 下每帧 new 一张 1280x720 的 ARGB 位图，每分钟就是几百 MB 的垃圾。这里：
+ * 1. acquire(w, h) 优先取尺寸完全相同的空闲位图
+ * 2. 没有时用 Bitmap.reconfigure 把一张足够大的空闲位图改成目标尺寸 (不重新分配像素内存)
+ * 3. 都不行才新建；release() 归还，空闲总字节数超过上限时回收最早放入的
+ *
+ * 分配 / 复用 / reconfigure / 回收次数可以通过 getter 读取，稳态下 getAllocations() 应不再增长。
+ * 线程安全。
+ */
+public class BitmapPool {
+
+    private static final String TAG = "VISION_DEBUG";
+
+    private final long maxIdleBytes;
+    private final ArrayDeque<Bitmap> idle = new ArrayDeque<>();
+    private long idleBytes;
+
+    private long allocations;
+    private long reuses;
+    private long reconfigures;
+    private long evictions;
+
+    /**
+     * @param maxIdleBytes 池中空闲位图的总字节数上限
+     */
+    public BitmapPool(long maxIdleBytes) {
+        this.maxIdleBytes = maxIdleBytes;
+    }
+
+    /**
+     * 借出一张 width x height 的 ARGB_8888 位图，内容未定义 (调用方会整张覆盖)
+     */
+    public synchronized Bitmap acquire(int width, int height) {
+        // 1. 尺寸完全相同
+        for (Iterator<Bitmap> it = idle.iterator(); it.hasNext(); ) {
+            Bitmap b = it.next();
+            if (b.getWidth() == width && b.getHeight() == height) {
+                it.remove();
+                idleBytes -= b.getAllocationByteCount();
+                reuses++;
+                return b;
+            }
+        }
+        // 2. 足够大的空闲位图就地改尺寸
+        long needed = (long) width * height * 4;
+        for (Iterator<Bitmap> it = idle.iterator(); it.hasNext(); ) {
+            Bitmap b = it.next();
+            if (b.isMutable() && b.getAllocationByteCount() >= needed) {
+                it.remove();
+                idleBytes -= b.getAllocationByteCount();
+                try {
+                    b.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+                    reconfigures++;
+                    return b;
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "BitmapPool: reconfigure failed", e);
+                    b.recycle();
+                    evictions++;
+                    break;
+                }
+            }
+        }
+        // 3. 新建
+        allocations++;
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 归还位图；null 和已回收的位图直接忽略
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) return;
+        idle.addLast(bitmap);
+        idleBytes += bitmap.getAllocationByteCount();
+        while (idleBytes > maxIdleBytes && !idle.isEmpty()) {
+            Bitmap oldest = idle.removeFirst();
+            idleBytes -= oldest.getAllocationByteCount();
+            oldest.recycle();
+            evictions++;
+        }
+    }
+
+    /** 回收全部空闲位图 (页面销毁 / 内存紧张时) */
+    public synchronized void clear() {
+        for (Bitmap b : idle) b.recycle();
+        evictions += idle.size();
+        idle.clear();
+        idleBytes = 0;
+    }
+
+    public synchronized long getAllocations() { return allocations; }
+
+    public synchronized long getReuses() { return reuses; }
+
+    public synchronized long getReconfigures() { return reconfigures; }
+
+    public synchronized long getEvictions() { return evictions; }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool{alloc=" + allocations + ", reuse=" + reuses + ", reconfigure=" + reconfigures
+                + ", evict=" + evictions + ", idle=" + idle.size() + " (" + idleBytes / 1024 + " KB)}";
+    }
+}
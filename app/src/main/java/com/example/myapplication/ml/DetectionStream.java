@@ -0,0 +1,292 @@
+package com.example.myapplication.ml;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 检测流：输入帧 / 图片，输出检测结果，所有页面共用同一套调度方式
+ *
+ * 以前实时页用单线程 executor、拍照页用 executor + 序号判断新旧、ObjectRecognitionHelper 用回调接口，
+ * 各自处理"来不及处理怎么办"和"页面关了怎么办"。这里统一成：
+ * 1. 背压 + 合并：最多一个在处理、一个在等待。等待中的输入被新输入覆盖 (交给 Recycler 释放，计入 dropped)，
+ *    生产者永远不会被阻塞，也不会无限排队
+ * 2. 输出合并：结果经 ResultMailbox 交给 delivery 线程，接收端忙时只拿到最新一个
+ * 3. 取消：cancel() 释放等待中的输入、中断正在处理的工作线程、丢弃之后产生的结果；
+ *    supersede() / submitLatest() 只作废当前工作 (相当于 collectLatest)，流继续可用
+ *
+ * Processor 返回 null 表示这次没有要发出的结果。worker 必须是串行的 (单线程 executor)，
+ * 可以和其它任务共用，例如相机分析线程。纯 Java 实现，生命周期绑定见 DetectionStreams。
+ */
+public class DetectionStream<I, O> {
+
+    /** 在 worker 线程上处理一个输入，允许抛异常 (交给 Sink.onError) */
+    public interface Processor<I, O> {
+        O process(I input) throws Exception;
+    }
+
+    /** 在 delivery 线程上接收结果 */
+    public interface Sink<O> {
+        void onResult(O output);
+
+        void onError(Throwable error);
+    }
+
+    /** 释放没被处理的输入 (例如关闭 ImageProxy)；被覆盖或取消时调用 */
+    public interface Recycler<I> {
+        void recycle(I input);
+    }
+
+    /** 一次输出：结果或异常 */
+    private static final class Emission<O> {
+        final long seq;
+        final O output;
+        final Throwable error;
+
+        Emission(long seq, O output, Throwable error) {
+            this.seq = seq;
+            this.output = output;
+            this.error = error;
+        }
+    }
+
+    private final Executor worker;
+    private final Executor delivery;
+    private final Processor<I, O> processor;
+    private final Sink<O> sink;
+    private final Recycler<I> recycler;
+    private final ResultMailbox<Emission<O>> outbox = new ResultMailbox<>();
+    private final Runnable drainTask = this::drain;
+    private final Runnable deliverTask = this::deliver;
+
+    private final Object lock = new Object();
+    private I pending;
+    private long pendingSeq;
+    private long nextSeq;
+    // 序号小于它的输入产生的结果一律丢弃
+    private long discardBefore;
+    private boolean drainScheduled;
+    private Thread busyThread;
+    private boolean cancelled;
+
+    private long submitted;
+    private long processed;
+    private long dropped;
+    private long discarded;
+
+    /**
+     * @param worker    串行执行处理的线程
+     * @param delivery  接收结果的线程 (主线程 executor，或 Runnable::run 直接在 worker 上回调)
+     * @param recycler  释放没被处理的输入，可为 null
+     */
+    public DetectionStream(Executor worker, Executor delivery, Processor<I, O> processor, Sink<O> sink,
+                           Recycler<I> recycler) {
+        this.worker = worker;
+        this.delivery = delivery;
+        this.processor = processor;
+        this.sink = sink;
+        this.recycler = recycler;
+    }
+
+    /**
+     * 提交输入，立即返回。等待中的旧输入被覆盖，正在处理的输入照常完成并发出结果。
+     *
+     * @return false = 流已取消，输入已被释放
+     */
+    public boolean submit(I input) {
+        I replaced;
+        boolean schedule;
+        synchronized (lock) {
+            if (cancelled) {
+                replaced = input;
+                schedule = false;
+            } else {
+                replaced = pending;
+                if (replaced != null) dropped++;
+                pending = input;
+                pendingSeq = nextSeq++;
+                submitted++;
+                schedule = !drainScheduled;
+                drainScheduled = true;
+            }
+        }
+        recycle(replaced);
+        if (!schedule) return replaced != input;
+        try {
+            worker.execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            // worker 已关闭：等同于取消
+            cancel();
+        }
+        return true;
+    }
+
+    /**
+     * 提交输入，并作废之前所有还没发出的工作 (等待中的被释放，正在处理的被中断、结果丢弃)
+     */
+    public boolean submitLatest(I input) {
+        supersede();
+        return submit(input);
+    }
+
+    /**
+     * 作废之前提交的所有工作，流继续可用
+     */
+    public void supersede() {
+        I replaced;
+        synchronized (lock) {
+            replaced = pending;
+            pending = null;
+            if (replaced != null) dropped++;
+            discardBefore = nextSeq;
+            if (busyThread != null) busyThread.interrupt();
+        }
+        // 信箱里已发布的旧结果留给已安排的投递任务取走并丢弃 (见 deliver)
+        recycle(replaced);
+    }
+
+    /**
+     * 取回还没开始处理的等待输入 (计入 dropped，不交给 Recycler)，没有时返回 null
+     * 供自己管理输入缓冲区的生产者使用：缓冲区不够时把等待中的那个拿回来改写成更新的输入
+     */
+    public I takePending() {
+        synchronized (lock) {
+            I taken = pending;
+            pending = null;
+            if (taken != null) dropped++;
+            return taken;
+        }
+    }
+
+    /**
+     * 永久关闭：释放等待中的输入，中断正在处理的工作，之后不再发出任何结果 (可重复调用)
+     */
+    public void cancel() {
+        I replaced;
+        synchronized (lock) {
+            if (cancelled) return;
+            cancelled = true;
+            replaced = pending;
+            pending = null;
+            discardBefore = nextSeq;
+            if (busyThread != null) busyThread.interrupt();
+        }
+        outbox.clear();
+        recycle(replaced);
+    }
+
+    public boolean isCancelled() {
+        synchronized (lock) {
+            return cancelled;
+        }
+    }
+
+    /** worker 线程：处理完等待中的输入为止 */
+    private void drain() {
+        while (true) {
+            I input;
+            long seq;
+            synchronized (lock) {
+                input = pending;
+                seq = pendingSeq;
+                pending = null;
+                if (input == null || cancelled) {
+                    drainScheduled = false;
+                    return;
+                }
+                busyThread = Thread.currentThread();
+            }
+
+            O output = null;
+            Throwable error = null;
+            try {
+                output = processor.process(input);
+            } catch (Throwable t) {
+                error = t;
+            }
+
+            boolean stale;
+            synchronized (lock) {
+                busyThread = null;
+                // 在锁里清掉中断标记：supersede / cancel 只在 busyThread 非空时中断，不会漏到共用线程的下一个任务
+                Thread.interrupted();
+                processed++;
+                stale = cancelled || seq < discardBefore;
+                if (stale) discarded++;
+            }
+            if (stale || (output == null && error == null)) continue;
+
+            // 信箱原来是空的才需要安排一次投递；非空说明已有投递在路上，它会取到这个最新结果
+            if (!outbox.publish(new Emission<>(seq, output, error))) {
+                try {
+                    delivery.execute(deliverTask);
+                } catch (RejectedExecutionException e) {
+                    cancel();
+                }
+            }
+        }
+    }
+
+    /** delivery 线程 */
+    private void deliver() {
+        Emission<O> emission = outbox.take();
+        if (emission == null) return;
+        synchronized (lock) {
+            // 发布之后才被作废的结果也不能送出去
+            if (cancelled || emission.seq < discardBefore) {
+                discarded++;
+                return;
+            }
+        }
+        if (emission.error != null) {
+            sink.onError(emission.error);
+        } else {
+            sink.onResult(emission.output);
+        }
+    }
+
+    private void recycle(I input) {
+        if (input != null && recycler != null) recycler.recycle(input);
+    }
+
+    /** 已接受的输入数 */
+    public long getSubmitted() {
+        synchronized (lock) {
+            return submitted;
+        }
+    }
+
+    /** 实际处理过的输入数 */
+    public long getProcessed() {
+        synchronized (lock) {
+            return processed;
+        }
+    }
+
+    /** 等待中被新输入覆盖或被作废的输入数 (背压丢弃) */
+    public long getDropped() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    /** 处理完但因作废 / 取消被丢掉的结果数 */
+    public long getDiscarded() {
+        synchronized (lock) {
+            return discarded;
+        }
+    }
+
+    /** 接收端来不及取、被更新结果覆盖的输出数 */
+    public long getConflatedOutputs() {
+        return outbox.getDropped();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return "DetectionStream{submitted=" + submitted + ", processed=" + processed + ", dropped=" + dropped
+                    + ", discarded=" + discarded + ", conflated=" + outbox.getDropped()
+                    + (cancelled ? ", cancelled" : "") + "}";
+        }
+    }
+}
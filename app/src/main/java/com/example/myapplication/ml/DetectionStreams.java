@@ -0,0 +1,35 @@
+package com.example.myapplication.ml;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+/**
+ * DetectionStream 的生命周期绑定：页面销毁时立即取消流 (释放等待中的输入、中断正在处理的工作)
+ */
+public final class DetectionStreams {
+
+    private DetectionStreams() {
+    }
+
+    /**
+     * 在 owner 进入 DESTROYED 时 cancel()；owner 已经销毁则立即取消。主线程调用。
+     */
+    public static <I, O> DetectionStream<I, O> bindTo(LifecycleOwner owner, DetectionStream<I, O> stream) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            stream.cancel();
+            return stream;
+        }
+        lifecycle.addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    stream.cancel();
+                    source.getLifecycle().removeObserver(this);
+                }
+            }
+        });
+        return stream;
+    }
+}
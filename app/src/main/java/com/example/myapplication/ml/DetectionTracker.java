@@ -0,0 +1,91 @@
+package com.example.myapplication.ml;
+
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ObjectTracker} 的 Result 适配层：把检测结果喂给跟踪器，并输出带 trackId 的 Result
+ *
+ * 典型用法 (每一帧)：
+ * <pre>
+ * if (tracker.needsDetection()) 运行检测器 -> tracker.update(results, now)
+ * else                          tracker.predict(now)
+ * </pre>
+ * 两种情况返回的都是跟踪后的结果列表 (置信度从高到低)。
+ */
+public class DetectionTracker {
+
+    private final ObjectTracker tracker;
+
+    // 以下由 this 保护，update() 时复用
+    private float[] boxes = new float[64];
+    private int[] classIds = new int[16];
+    private float[] scores = new float[16];
+    private final Map<Integer, String> labels = new HashMap<>();
+
+    public DetectionTracker(ObjectTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    public ObjectTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * 这一帧是否需要运行检测器 (每帧只调用一次)
+     */
+    public boolean needsDetection() {
+        return tracker.needsDetection();
+    }
+
+    /**
+     * 关键帧：用检测结果更新跟踪，返回跟踪后的结果
+     */
+    public synchronized List<YoloDetector.Result> update(List<YoloDetector.Result> detections, long timeNanos) {
+        int count = detections.size();
+        if (scores.length < count) {
+            boxes = new float[count * 4];
+            classIds = new int[count];
+            scores = new float[count];
+        }
+        for (int i = 0; i < count; i++) {
+            YoloDetector.Result r = detections.get(i);
+            RectF rect = r.getRect();
+            boxes[i * 4] = rect.left;
+            boxes[i * 4 + 1] = rect.top;
+            boxes[i * 4 + 2] = rect.right;
+            boxes[i * 4 + 3] = rect.bottom;
+            classIds[i] = r.getClassIndex();
+            scores[i] = r.getScore();
+            labels.put(r.getClassIndex(), r.getLabel());
+        }
+        tracker.update(boxes, classIds, scores, count, timeNanos);
+        return collect();
+    }
+
+    /**
+     * 非关键帧：返回预测到 timeNanos 的结果
+     */
+    public synchronized List<YoloDetector.Result> predict(long timeNanos) {
+        tracker.predict(timeNanos);
+        return collect();
+    }
+
+    public synchronized void reset() {
+        tracker.reset();
+    }
+
+    private List<YoloDetector.Result> collect() {
+        List<YoloDetector.Result> results = new ArrayList<>(tracker.getTrackCount());
+        tracker.visitTracks((trackId, classId, score, left, top, right, bottom) -> {
+            String label = labels.get(classId);
+            results.add(new YoloDetector.Result(new RectF(left, top, right, bottom), classId,
+                    label != null ? label : "Unknown", score, trackId));
+        });
+        return results;
+    }
+}
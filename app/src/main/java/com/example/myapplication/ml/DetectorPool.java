@@ -0,0 +1,227 @@
+package com.example.myapplication.ml;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 线程安全的检测器池
+ *
+ * YoloDetector 持有一个 Interpreter 和共享的输入/输出缓冲区，detect() 不可重入。
+ * 这里维护多个各自拥有解释器和缓冲区的检测器实例：
+ * 1. 调用方通过 acquire() 借出 (有超时的阻塞等待)，用完 release() 归还，借不到就排队而不是抢同一份缓冲区
+ * 2. 实例按需懒加载 (后台异步初始化)，最多 poolSize 个，也可以用 prewarm() 提前加载
+ * 3. poolSize 按设备核心数取默认值 (见 {@link #recommendedPoolSize()})，每个实例的线程数交给自动调优
+ */
+public class DetectorPool {
+
+    private static final String TAG = "VISION_DEBUG";
+
+    private final Context context;
+    private final String modelPath;
+    private final String labelsPath;
+    private final int inputSize;
+    private final int poolSize;
+    private final int threadsPerDetector;
+
+    private final BlockingQueue<YoloDetector> idle;
+    private int created;
+    private volatile boolean closed;
+
+    public DetectorPool(Context context, String modelPath, String labelsPath, int inputSize,
+                        int poolSize, int threadsPerDetector) {
+        this.context = context.getApplicationContext();
+        this.modelPath = modelPath;
+        this.labelsPath = labelsPath;
+        this.inputSize = inputSize;
+        this.poolSize = Math.max(1, poolSize);
+        // <= 0 表示交给 YoloDetector 自动调优
+        this.threadsPerDetector = Math.max(YoloDetector.AUTO_THREADS, threadsPerDetector);
+        this.idle = new ArrayBlockingQueue<>(this.poolSize);
+    }
+
+    /**
+     * 按核心数给出的默认池大小：大约每 2 个核一个实例，至少 2 个 (实时扫描与拍照识别各一个)，至多 4 个
+     * 每个实例的线程数不在这里分配，由 YoloDetector.AUTO_THREADS 按本机实测调优
+     */
+    public static int recommendedPoolSize() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(2, Math.min(4, cores / 2));
+    }
+
+    public int getPoolSize() { return poolSize; }
+
+    /**
+     * 借出一个检测器，池满且都在使用中时最多等待 timeout
+     *
+     * @return 借到的检测器；超时或池已关闭时返回 null
+     */
+    public YoloDetector acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (closed) return null;
+        YoloDetector detector = idle.poll();
+        if (detector != null) return detector;
+
+        int index = reserveSlot();
+        if (index > 0) {
+            detector = createDetector();
+            Log.d(TAG, "DetectorPool: created instance " + index + "/" + poolSize);
+            if (closed) {
+                detector.close();
+                return null;
+            }
+            return detector;
+        }
+        return idle.poll(timeout, unit);
+    }
+
+    /**
+     * 不等待的借出：有空闲实例或还能新建时立即返回 (新实例在后台加载)，否则返回 null
+     * 可以在主线程调用
+     */
+    public YoloDetector tryAcquire() {
+        try {
+            return acquire(0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 归还检测器 (必须是本池借出的实例)
+     * 加载失败的实例不放回空闲队列：直接关闭并空出名额，下次借出时重新加载
+     */
+    public void release(YoloDetector detector) {
+        if (detector == null) return;
+        if (closed) {
+            detector.close();
+            return;
+        }
+        if (detector.getReadiness().isCompletedExceptionally()) {
+            detector.close();
+            synchronized (this) {
+                created--;
+            }
+            Log.w(TAG, "DetectorPool: dropped an instance that failed to load");
+            return;
+        }
+        idle.offer(detector);
+        if (closed) {
+            close(); // 与 close() 并发时，保证刚归还的实例也被关闭
+        }
+    }
+
+    /**
+     * 便捷方法：借出 -> 检测 -> 归还
+     * 超时用异常表示，不返回空列表：调用方要能区分"模型还没好"和"图里没有物体"
+     *
+     * @return 检测结果
+     * @throws TimeoutException 等不到空闲检测器，或检测器还在加载
+     */
+    public List<YoloDetector.Result> detect(Bitmap bitmap, long timeoutMs)
+            throws InterruptedException, TimeoutException {
+        YoloDetector detector = acquireOrThrow(timeoutMs);
+        try {
+            awaitReady(detector, timeoutMs);
+            return detector.detect(bitmap);
+        } finally {
+            release(detector);
+        }
+    }
+
+    /**
+     * 借出检测器，超时抛 TimeoutException (池已关闭时抛 IllegalStateException)
+     */
+    YoloDetector acquireOrThrow(long timeoutMs) throws InterruptedException, TimeoutException {
+        YoloDetector detector = acquire(timeoutMs, TimeUnit.MILLISECONDS);
+        if (detector != null) return detector;
+        if (closed) throw new IllegalStateException("DetectorPool closed");
+        Log.w(TAG, "DetectorPool: no detector available within " + timeoutMs + " ms");
+        throw new TimeoutException("no detector available within " + timeoutMs + " ms");
+    }
+
+    /**
+     * 等新建的实例在后台加载完成：超时抛 TimeoutException，加载失败抛 IllegalStateException
+     */
+    static void awaitReady(YoloDetector detector, long timeoutMs) throws InterruptedException, TimeoutException {
+        if (detector.isReady()) return;
+        try {
+            detector.getReadiness().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Log.w(TAG, "DetectorPool: detector not ready within " + timeoutMs + " ms");
+            throw new TimeoutException("detector not ready within " + timeoutMs + " ms");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("detector failed to load", e.getCause());
+        }
+    }
+
+    /**
+     * 预热：池里还没有实例时，提前在后台加载一个放进空闲队列
+     *
+     * @return 该实例的就绪 Future；已有实例或池已满时返回 null
+     */
+    public CompletableFuture<YoloDetector> prewarm() {
+        if (closed || !idle.isEmpty()) return null;
+        int index = reserveSlot();
+        if (index == 0) return null;
+        YoloDetector detector = createDetector();
+        Log.d(TAG, "DetectorPool: prewarming instance " + index + "/" + poolSize);
+        release(detector);
+        return detector.getReadiness();
+    }
+
+    /**
+     * 实例一律异步初始化：构造立即返回，模型在后台加载并预热
+     */
+    private YoloDetector createDetector() {
+        return new YoloDetector(context, modelPath, labelsPath, inputSize, threadsPerDetector, true, 1);
+    }
+
+    /**
+     * @return 新实例的序号 (从 1 开始)；池已满返回 0
+     */
+    private synchronized int reserveSlot() {
+        if (created >= poolSize) return 0;
+        return ++created;
+    }
+
+    /**
+     * 释放当前空闲的实例 (内存紧张时调用)，之后需要时会重新懒加载
+     *
+     * @return 释放的实例数
+     */
+    public int trimIdle() {
+        int trimmed = 0;
+        YoloDetector detector;
+        while ((detector = idle.poll()) != null) {
+            detector.close();
+            trimmed++;
+        }
+        if (trimmed > 0) {
+            synchronized (this) {
+                created -= trimmed;
+            }
+            Log.d(TAG, "DetectorPool: trimmed " + trimmed + " idle instance(s)");
+        }
+        return trimmed;
+    }
+
+    /**
+     * 关闭所有空闲实例；仍被借出的实例在归还时关闭
+     */
+    public void close() {
+        closed = true;
+        YoloDetector detector;
+        while ((detector = idle.poll()) != null) {
+            detector.close();
+        }
+    }
+}
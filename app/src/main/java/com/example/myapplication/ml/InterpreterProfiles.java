@@ -0,0 +1,148 @@
+package com.example.myapplication.ml;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link InterpreterTuner} 的 Android 接入：真实的 TFLite 后端 + SharedPreferences 持久化
+ *
+ * 用法：创建解释器前调用 {@link #resolve}，再用 {@link #apply} 写进 Interpreter.Options。
+ * resolve 从不等待调优：有保存的结果就用它，否则立即返回默认配置，同时在一个低优先级后台线程上调优，
+ * 结果保存下来，下次创建解释器时生效。调优最多 2 个配置 x (1 次预热 + 3 次计时) = 8 次完整推理，
+ * 耗时约为单次推理的 8 倍，与正在运行的检测抢占 CPU 的时间也就这么长。
+ */
+public final class InterpreterProfiles {
+
+    private static final String TAG = "VISION_DEBUG";
+    private static final String PREFS_NAME = "interpreter_profiles";
+
+    // 单个后台线程串行调优；进程内每个 key 只调一次
+    private static final ExecutorService TUNER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "InterpreterTuner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Set<String> scheduled = new HashSet<>();
+
+    private InterpreterProfiles() {
+    }
+
+    /**
+     * 取得该模型在本机上的配置，不阻塞：没有保存的结果时返回默认配置并在后台调优 (下次生效)
+     *
+     * @param modelName   模型文件名
+     * @param model       已映射的模型 (只读，后台调优时与调用方共用)
+     * @param modelLength 模型文件字节数 (换模型后指纹随之改变)
+     */
+    public static InterpreterTuner.Config resolve(Context context, String modelName,
+                                                  ByteBuffer model, long modelLength) {
+        InterpreterTuner tuner = new InterpreterTuner(storeOf(context));
+        String key = modelName + "#" + modelLength + "@" + deviceFingerprint();
+        InterpreterTuner.Config saved = tuner.lookup(key);
+        if (saved != null) return saved;
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        synchronized (scheduled) {
+            if (scheduled.add(key)) {
+                TUNER.execute(() -> {
+                    long start = SystemClock.elapsedRealtime();
+                    InterpreterTuner.Config best = tuner.tune(key,
+                            InterpreterTuner.defaultCandidates(cores), new TfliteBackend(model));
+                    Log.d(TAG, "InterpreterProfiles: tuned " + modelName + " -> " + best
+                            + " in " + (SystemClock.elapsedRealtime() - start) + " ms (applies next load)");
+                });
+            }
+        }
+        return InterpreterTuner.defaultConfig(cores);
+    }
+
+    private static InterpreterTuner.Store storeOf(Context context) {
+        SharedPreferences prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return new InterpreterTuner.Store() {
+            @Override
+            public String get(String key) {
+                return prefs.getString(key, null);
+            }
+
+            @Override
+            public void put(String key, String value) {
+                prefs.edit().putString(key, value).apply();
+            }
+        };
+    }
+
+    public static void apply(Interpreter.Options options, InterpreterTuner.Config config) {
+        options.setNumThreads(config.numThreads);
+        options.setUseXNNPACK(config.useXnnpack);
+    }
+
+    /**
+     * 机型 + SoC + 系统版本 + 核心数；任何一项变化都重新调优
+     */
+    static String deviceFingerprint() {
+        return Build.MANUFACTURER + "/" + Build.MODEL + "/" + Build.HARDWARE
+                + "/" + Build.VERSION.SDK_INT + "/" + Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 用全零输入跑真实解释器
+     */
+    private static class TfliteBackend implements InterpreterTuner.Backend {
+        private final ByteBuffer model;
+        private Interpreter interpreter;
+        private ByteBuffer input;
+        private ByteBuffer output;
+
+        TfliteBackend(ByteBuffer model) {
+            this.model = model;
+        }
+
+        @Override
+        public void open(InterpreterTuner.Config config) {
+            Interpreter.Options options = new Interpreter.Options();
+            apply(options, config);
+            interpreter = new Interpreter(model, options);
+            Tensor in = interpreter.getInputTensor(0);
+            Tensor out = interpreter.getOutputTensor(0);
+            if (input == null || input.capacity() != in.numBytes()) {
+                input = ByteBuffer.allocateDirect(in.numBytes()).order(ByteOrder.nativeOrder());
+            }
+            if (output == null || output.capacity() != out.numBytes()) {
+                output = ByteBuffer.allocateDirect(out.numBytes()).order(ByteOrder.nativeOrder());
+            }
+        }
+
+        @Override
+        public void invoke() {
+            input.rewind();
+            output.rewind();
+            interpreter.run(input, output);
+        }
+
+        @Override
+        public void close() {
+            if (interpreter != null) {
+                interpreter.close();
+                interpreter = null;
+            }
+        }
+    }
+}
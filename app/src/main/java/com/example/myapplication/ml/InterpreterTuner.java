@@ -0,0 +1,190 @@
+package com.example.myapplication.ml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * 解释器运行参数自动调优 (线程数 x XNNPACK 开关)
+ *
+ * numThreads = 4 对大小核手机往往不是最优 (常常 2 线程更快)，XNNPACK 开/关对延迟影响也很大。
+ * 这里用固定输入逐个测试候选配置，选出中位延迟最低的一个，
+ * 按 "模型文件 + 设备指纹" 持久化，之后的启动直接复用。没有保存的结果时先用 {@link #defaultConfig}。
+ *
+ * 不依赖 TFLite / Android：真实解释器和持久化通过 {@link Backend}、{@link Store} 注入，
+ * 单元测试可以用假的后端验证调优逻辑。
+ */
+public class InterpreterTuner {
+
+    /**
+     * 一组候选配置
+     */
+    public static final class Config {
+        public final int numThreads;
+        public final boolean useXnnpack;
+
+        public Config(int numThreads, boolean useXnnpack) {
+            this.numThreads = numThreads;
+            this.useXnnpack = useXnnpack;
+        }
+
+        /** 持久化格式，例如 "4:1" */
+        public String encode() {
+            return numThreads + ":" + (useXnnpack ? 1 : 0);
+        }
+
+        /** @return 解析失败返回 null */
+        public static Config decode(String value) {
+            if (value == null) return null;
+            int sep = value.indexOf(':');
+            if (sep <= 0) return null;
+            try {
+                int threads = Integer.parseInt(value.substring(0, sep));
+                if (threads <= 0) return null;
+                return new Config(threads, "1".equals(value.substring(sep + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Config)) return false;
+            Config c = (Config) o;
+            return numThreads == c.numThreads && useXnnpack == c.useXnnpack;
+        }
+
+        @Override
+        public int hashCode() {
+            return numThreads * 2 + (useXnnpack ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return "threads=" + numThreads + ", xnnpack=" + useXnnpack;
+        }
+    }
+
+    /**
+     * 被测的解释器：按配置创建，用固定输入跑一次推理，用完释放
+     */
+    public interface Backend {
+        void open(Config config) throws Exception;
+
+        void invoke() throws Exception;
+
+        void close();
+    }
+
+    /**
+     * 调优结果的持久化 (Android 上是 SharedPreferences)
+     */
+    public interface Store {
+        String get(String key);
+
+        void put(String key, String value);
+    }
+
+    private final Store store;
+    private final LongSupplier clock;
+    private int warmupRuns = 1;
+    private int measuredRuns = 3;
+
+    public InterpreterTuner(Store store) {
+        this(store, System::nanoTime);
+    }
+
+    /**
+     * @param clock 纳秒时钟 (测试时可注入假时钟)
+     */
+    public InterpreterTuner(Store store, LongSupplier clock) {
+        this.store = store;
+        this.clock = clock;
+    }
+
+    public InterpreterTuner setRuns(int warmupRuns, int measuredRuns) {
+        this.warmupRuns = Math.max(0, warmupRuns);
+        this.measuredRuns = Math.max(1, measuredRuns);
+        return this;
+    }
+
+    /**
+     * 还没调优时使用的配置：XNNPACK 开，4 线程 (核心不足 4 个时用全部核心)
+     */
+    public static Config defaultConfig(int cores) {
+        return new Config(Math.max(1, Math.min(4, cores)), true);
+    }
+
+    /**
+     * 默认候选：XNNPACK 开，2 / 4 线程 (不超过核心数)
+     * 1 线程和 XNNPACK 关在 640 输入上都慢得多，测它们只会拉长调优时间
+     */
+    public static List<Config> defaultCandidates(int cores) {
+        int maxThreads = Math.max(1, cores);
+        List<Config> candidates = new ArrayList<>();
+        for (int t : new int[]{2, 4}) {
+            Config config = new Config(Math.min(t, maxThreads), true);
+            if (!candidates.contains(config)) candidates.add(config);
+        }
+        return candidates;
+    }
+
+    /**
+     * 已保存的配置，没有则返回 null
+     */
+    public Config lookup(String key) {
+        return Config.decode(store.get(key));
+    }
+
+    /**
+     * 有保存的结果直接返回；否则逐个测试候选配置，保存并返回最快的一个
+     *
+     * @param key        模型文件 + 设备指纹
+     * @param candidates 候选配置 (第一个同时作为全部失败时的兜底)
+     */
+    public Config tune(String key, List<Config> candidates, Backend backend) {
+        Config saved = lookup(key);
+        if (saved != null) return saved;
+
+        Config best = null;
+        long bestNanos = Long.MAX_VALUE;
+        for (Config config : candidates) {
+            long nanos = measure(config, backend);
+            if (nanos < bestNanos) {
+                bestNanos = nanos;
+                best = config;
+            }
+        }
+        if (best == null) {
+            // 全部失败：不保存，下次启动再试
+            return candidates.isEmpty() ? null : candidates.get(0);
+        }
+        store.put(key, best.encode());
+        return best;
+    }
+
+    /**
+     * @return 中位延迟 (纳秒)；该配置无法创建或运行时返回 Long.MAX_VALUE
+     */
+    long measure(Config config, Backend backend) {
+        long[] samples = new long[measuredRuns];
+        try {
+            backend.open(config);
+            for (int i = 0; i < warmupRuns; i++) {
+                backend.invoke();
+            }
+            for (int i = 0; i < measuredRuns; i++) {
+                long t0 = clock.getAsLong();
+                backend.invoke();
+                samples[i] = clock.getAsLong() - t0;
+            }
+        } catch (Exception e) {
+            return Long.MAX_VALUE;
+        } finally {
+            backend.close();
+        }
+        Arrays.sort(samples);
+        return samples[measuredRuns / 2];
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.myapplication.ml;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 进程级共享模型注册表 (引用计数)
+ *
+ * 以前每次打开 RealtimeActivity / PhotoRecognitionActivity 都会重新映射 yolov8n.tflite、
+ * 重读 labels.txt、重建解释器并分配约 9 MB 的 DirectBuffer，onDestroy 时又全部丢弃。
+ * 现在：
+ * 1. 按 "模型路径 + 输入尺寸" 缓存 DetectorPool，acquire() 返回带引用计数的 Handle
+ * 2. 引用计数归零后不立即释放，空闲 IDLE_TIMEOUT_MS 后才回收；期间再次 acquire 直接复用
+ * 3. 收到 onTrimMemory 内存压力时，立即回收无人使用的条目，并裁掉使用中条目的空闲实例
+ *
+ * 所有方法都可以在任意线程调用。
+ */
+public final class ModelRegistry implements ComponentCallbacks2 {
+
+    private static final String TAG = "VISION_DEBUG";
+
+    // 无人引用后保留多久
+    private static final long IDLE_TIMEOUT_MS = 60_000;
+    // 每个模型最多几个解释器实例：按核心数，至少保证实时扫描与拍照识别各一个
+    private static final int POOL_SIZE = DetectorPool.recommendedPoolSize();
+    // 线程数 / XNNPACK 按本机测出的最快配置 (首次运行先用默认配置，后台调优并持久化)
+    private static final int THREADS_PER_DETECTOR = YoloDetector.AUTO_THREADS;
+
+    private static volatile ModelRegistry instance;
+
+    public static ModelRegistry getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ModelRegistry.class) {
+                if (instance == null) {
+                    instance = new ModelRegistry(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final Context appContext;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private ModelRegistry(Context appContext) {
+        this.appContext = appContext;
+        appContext.registerComponentCallbacks(this);
+    }
+
+    /**
+     * 获取 (必要时创建) 共享模型，用完必须调用 {@link Handle#release()}
+     */
+    public Handle acquire(String modelPath, String labelsPath, int inputSize) {
+        String key = modelPath + "@" + inputSize;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                DetectorPool pool = new DetectorPool(appContext, modelPath, labelsPath, inputSize,
+                        POOL_SIZE, THREADS_PER_DETECTOR);
+                entry = new Entry(key, pool);
+                entries.put(key, entry);
+                Log.d(TAG, "ModelRegistry: created " + key);
+            }
+            if (entry.evictTask != null) {
+                mainHandler.removeCallbacks(entry.evictTask);
+                entry.evictTask = null;
+            }
+            entry.refCount++;
+            return new Handle(entry);
+        }
+    }
+
+    /**
+     * 预热：提前在后台加载模型并空跑推理 (例如在首页就调用，用户点"实时扫描"时已经就绪)
+     * 预热的模型和普通条目一样，空闲超时或内存紧张时会被回收
+     */
+    public void prewarm(String modelPath, String labelsPath, int inputSize) {
+        Handle handle = acquire(modelPath, labelsPath, inputSize);
+        handle.getPool().prewarm();
+        handle.release();
+    }
+
+    private void release(Entry entry) {
+        synchronized (this) {
+            entry.refCount--;
+            if (entry.refCount > 0 || entries.get(entry.key) != entry) return;
+
+            // 引用归零：延迟回收，期间再次 acquire 会取消回收
+            entry.evictTask = () -> {
+                synchronized (ModelRegistry.this) {
+                    if (entry.refCount == 0 && entries.get(entry.key) == entry) {
+                        evictLocked(entry);
+                    }
+                }
+            };
+            mainHandler.postDelayed(entry.evictTask, IDLE_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * 立即回收所有无人使用的模型
+     *
+     * @return 回收的条目数
+     */
+    public synchronized int evictIdle() {
+        List<Entry> idle = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.refCount == 0) idle.add(entry);
+        }
+        for (Entry entry : idle) {
+            evictLocked(entry);
+        }
+        return idle.size();
+    }
+
+    private void evictLocked(Entry entry) {
+        if (entry.evictTask != null) {
+            mainHandler.removeCallbacks(entry.evictTask);
+            entry.evictTask = null;
+        }
+        entries.remove(entry.key);
+        entry.pool.close();
+        Log.d(TAG, "ModelRegistry: evicted " + entry.key);
+    }
+
+    // ========================== 内存压力 ==========================
+
+    /**
+     * 各级别逐个判断，不用 level >= 比较：TRIM_MEMORY_UI_HIDDEN (20) 数值上大于 RUNNING_LOW / RUNNING_CRITICAL，
+     * 但它只表示界面退到后台，不是内存压力，短暂切出去再回来不应该重新加载和预热模型
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        boolean critical = level == TRIM_MEMORY_RUNNING_CRITICAL || level >= TRIM_MEMORY_MODERATE;
+        boolean pressure = critical || level == TRIM_MEMORY_RUNNING_LOW || level >= TRIM_MEMORY_BACKGROUND;
+        if (!pressure) return;
+        int evicted = evictIdle();
+        // 更严重时，连使用中模型的空闲解释器实例也释放掉
+        if (critical) {
+            synchronized (this) {
+                for (Entry entry : entries.values()) {
+                    entry.pool.trimIdle();
+                }
+            }
+        }
+        Log.d(TAG, "ModelRegistry: onTrimMemory(" + level + "), evicted " + evicted);
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    // ========================== 句柄 ==========================
+
+    private static class Entry {
+        final String key;
+        final DetectorPool pool;
+        int refCount;
+        Runnable evictTask;
+
+        Entry(String key, DetectorPool pool) {
+            this.key = key;
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * 共享模型的引用，release() 可重复调用 (只生效一次)
+     */
+    public final class Handle {
+        private final Entry entry;
+        private boolean released;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        public DetectorPool getPool() {
+            return entry.pool;
+        }
+
+        public void release() {
+            synchronized (this) {
+                if (released) return;
+                released = true;
+            }
+            ModelRegistry.this.release(entry);
+        }
+    }
+}
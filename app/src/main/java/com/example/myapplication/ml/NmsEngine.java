@@ -0,0 +1,391 @@
+package com.example.myapplication.ml;
+
+import java.util.Arrays;
+
+/**
+ * 可插拔的 NMS (非极大值抑制) 引擎，直接在 SoA 原始数组上工作
+ *
+ * 1. Top-K 预筛选 (可选，默认关闭)：用容量为 K 的小顶堆选出分数最高的 K 个候选，只对这 K 个排序。
+ *    开启后第 K 名之后的候选直接丢弃，候选数 <= K 时结果与不预筛选完全一致；
+ *    默认与旧版一样保留所有过阈值的候选，由调用方按需 setTopK 开启
+ * 2. 邻域搜索：ALL_PAIRS 为传统的两两比较；GRID 把框登记到网格里，只和同网格的邻居计算 IoU
+ *    (IoU > 0 的两个框必然共享至少一个网格，所以 GRID 与 ALL_PAIRS 结果完全一致)
+ * 3. 抑制方式：HARD 为经典 NMS；SOFT 为高斯 Soft-NMS (重叠框衰减分数而不是直接删除)
+ * 4. 可选按类别抑制 (classAware)：只有同类别的框才会互相抑制
+ *
+ * 框坐标约定为归一化的 [left, top, right, bottom]，超出 0~1 的坐标也能得到正确结果 (只是网格效率变差)。
+ * 非线程安全，工作区按需扩容后复用。
+ */
+public class NmsEngine {
+
+    public enum Search { ALL_PAIRS, GRID }
+
+    public enum Suppression { HARD, SOFT }
+
+    // ========================== 配置 ==========================
+    private float iouThreshold = 0.45f;
+    private int topK = 0;
+    private boolean classAware = false;
+    private Search search = Search.GRID;
+    private Suppression suppression = Suppression.HARD;
+    private float softSigma = 0.5f;
+    private float softMinScore = 0.5f;
+
+    // ========================== 工作区 ==========================
+    private int[] order = new int[0];
+    private int[] rank = new int[0];
+    private int[] stamp = new int[0];
+    private boolean[] done = new boolean[0];
+    private float[] work = new float[0];
+    private int[] keep = new int[0];
+    private float[] keptScores = new float[0];
+    private int keepCount;
+    private int epoch;
+
+    // 网格 (CSR 结构：cellStart[c] ~ cellStart[c + 1] 为第 c 个网格里的候选下标)
+    private int gridSize;
+    private int[] cellStart = new int[0];
+    private int[] cellItems = new int[0];
+
+    // 当前这次运行的输入
+    private float[] boxes;
+    private float[] scores;
+    private int[] classIds;
+
+    public NmsEngine() {
+    }
+
+    public NmsEngine(int initialCapacity) {
+        ensureCapacity(initialCapacity);
+    }
+
+    public NmsEngine setIouThreshold(float iouThreshold) { this.iouThreshold = iouThreshold; return this; }
+
+    /** topK <= 0 表示不做预筛选 (默认) */
+    public NmsEngine setTopK(int topK) { this.topK = topK; return this; }
+
+    public NmsEngine setClassAware(boolean classAware) { this.classAware = classAware; return this; }
+
+    public NmsEngine setSearch(Search search) { this.search = search; return this; }
+
+    public NmsEngine setSuppression(Suppression suppression) { this.suppression = suppression; return this; }
+
+    /**
+     * 高斯 Soft-NMS 参数
+     *
+     * @param sigma    衰减系数，score *= exp(-iou² / sigma)
+     * @param minScore 衰减后低于该分数的框被丢弃
+     */
+    public NmsEngine setSoftNms(float sigma, float minScore) {
+        this.softSigma = sigma;
+        this.softMinScore = minScore;
+        return this;
+    }
+
+    public float getIouThreshold() { return iouThreshold; }
+
+    public int getTopK() { return topK; }
+
+    public boolean isClassAware() { return classAware; }
+
+    public Search getSearch() { return search; }
+
+    public Suppression getSuppression() { return suppression; }
+
+    /**
+     * 执行 NMS
+     *
+     * @param boxes    [left, top, right, bottom] * count
+     * @param scores   每个候选的分数
+     * @param classIds 每个候选的类别 (classAware 为 false 时可以为 null)
+     * @param count    候选数量
+     * @return 保留的框数量，结果按分数从高到低排列，通过 getKeptIndex / getKeptScore 读取
+     */
+    public int run(float[] boxes, float[] scores, int[] classIds, int count) {
+        this.boxes = boxes;
+        this.scores = scores;
+        this.classIds = classIds;
+        ensureCapacity(count);
+        keepCount = 0;
+        if (count == 0) return 0;
+
+        int n = selectTopK(count);
+        for (int a = 0; a < n; a++) {
+            int i = order[a];
+            rank[i] = a;
+            done[i] = false;
+            work[i] = scores[i];
+        }
+        if (search == Search.GRID) {
+            buildGrid(n);
+        }
+
+        if (suppression == Suppression.SOFT) {
+            runSoft(n);
+        } else {
+            runHard(n);
+        }
+        this.boxes = null;
+        this.scores = null;
+        this.classIds = null;
+        return keepCount;
+    }
+
+    public int getKeepCount() { return keepCount; }
+
+    /** 第 k 个保留框在输入数组中的下标 */
+    public int getKeptIndex(int k) { return keep[k]; }
+
+    /** 第 k 个保留框的分数 (Soft-NMS 下为衰减后的分数) */
+    public float getKeptScore(int k) { return keptScores[k]; }
+
+    // ========================== Top-K ==========================
+
+    /**
+     * 选出分数最高的 K 个候选写入 order[0..n)，并按分数降序排好
+     */
+    private int selectTopK(int count) {
+        int k = topK > 0 ? Math.min(topK, count) : count;
+        if (k == count) {
+            for (int i = 0; i < count; i++) order[i] = i;
+        } else {
+            // 小顶堆：堆顶是当前 K 个里最差的
+            for (int i = 0; i < k; i++) {
+                order[i] = i;
+                siftUp(i);
+            }
+            for (int i = k; i < count; i++) {
+                if (before(i, order[0])) {
+                    order[0] = i;
+                    siftDown(0, k);
+                }
+            }
+        }
+        sortByScoreDesc(order, 0, k - 1);
+        return k;
+    }
+
+    private void siftUp(int pos) {
+        int item = order[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!before(order[parent], item)) break;
+            order[pos] = order[parent];
+            pos = parent;
+        }
+        order[pos] = item;
+    }
+
+    private void siftDown(int pos, int size) {
+        int item = order[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && before(order[child], order[right])) child = right;
+            if (!before(item, order[child])) break;
+            order[pos] = order[child];
+            pos = child;
+        }
+        order[pos] = item;
+    }
+
+    /** 排序规则：分数降序，分数相同时下标升序 (与稳定排序结果一致) */
+    private boolean before(int a, int b) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private void sortByScoreDesc(int[] idx, int lo, int hi) {
+        while (lo < hi) {
+            int pivot = idx[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (before(idx[i], pivot)) i++;
+                while (before(pivot, idx[j])) j--;
+                if (i <= j) {
+                    int t = idx[i]; idx[i] = idx[j]; idx[j] = t;
+                    i++; j--;
+                }
+            }
+            // 先递归较短的一半，避免最坏情况栈溢出
+            if (j - lo < hi - i) {
+                sortByScoreDesc(idx, lo, j);
+                lo = i;
+            } else {
+                sortByScoreDesc(idx, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    // ========================== 抑制 ==========================
+
+    private void runHard(int n) {
+        for (int a = 0; a < n; a++) {
+            int i = order[a];
+            if (done[i]) continue;
+            keep[keepCount] = i;
+            keptScores[keepCount] = scores[i];
+            keepCount++;
+
+            if (search == Search.GRID) {
+                epoch++;
+                int c0 = cell(boxes[i * 4]), c1 = cell(boxes[i * 4 + 2]);
+                int r0 = cell(boxes[i * 4 + 1]), r1 = cell(boxes[i * 4 + 3]);
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        int cellIndex = r * gridSize + c;
+                        for (int p = cellStart[cellIndex]; p < cellStart[cellIndex + 1]; p++) {
+                            int j = cellItems[p];
+                            if (stamp[j] == epoch) continue;
+                            stamp[j] = epoch;
+                            if (rank[j] > a && !done[j] && suppresses(i, j)) {
+                                done[j] = true;
+                            }
+                        }
+                    }
+                }
+            } else {
+                for (int b = a + 1; b < n; b++) {
+                    int j = order[b];
+                    if (!done[j] && suppresses(i, j)) {
+                        done[j] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean suppresses(int i, int j) {
+        if (classAware && classIds[i] != classIds[j]) return false;
+        return iou(i, j) > iouThreshold;
+    }
+
+    /**
+     * 高斯 Soft-NMS：每轮取剩余最高分的框，其余重叠框按 exp(-iou² / sigma) 衰减
+     */
+    private void runSoft(int n) {
+        while (true) {
+            int best = -1;
+            for (int a = 0; a < n; a++) {
+                int i = order[a];
+                if (!done[i] && (best < 0 || work[i] > work[best] || (work[i] == work[best] && i < best))) {
+                    best = i;
+                }
+            }
+            if (best < 0 || work[best] < softMinScore) break;
+
+            done[best] = true;
+            keep[keepCount] = best;
+            keptScores[keepCount] = work[best];
+            keepCount++;
+
+            if (search == Search.GRID) {
+                epoch++;
+                int c0 = cell(boxes[best * 4]), c1 = cell(boxes[best * 4 + 2]);
+                int r0 = cell(boxes[best * 4 + 1]), r1 = cell(boxes[best * 4 + 3]);
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        int cellIndex = r * gridSize + c;
+                        for (int p = cellStart[cellIndex]; p < cellStart[cellIndex + 1]; p++) {
+                            int j = cellItems[p];
+                            if (stamp[j] == epoch) continue;
+                            stamp[j] = epoch;
+                            decay(best, j);
+                        }
+                    }
+                }
+            } else {
+                for (int a = 0; a < n; a++) {
+                    decay(best, order[a]);
+                }
+            }
+        }
+    }
+
+    private void decay(int i, int j) {
+        if (done[j]) return;
+        if (classAware && classIds[i] != classIds[j]) return;
+        float overlap = iou(i, j);
+        if (overlap > 0f) {
+            work[j] *= (float) Math.exp(-(overlap * overlap) / softSigma);
+        }
+    }
+
+    private float iou(int a, int b) {
+        float aL = boxes[a * 4], aT = boxes[a * 4 + 1], aR = boxes[a * 4 + 2], aB = boxes[a * 4 + 3];
+        float bL = boxes[b * 4], bT = boxes[b * 4 + 1], bR = boxes[b * 4 + 2], bB = boxes[b * 4 + 3];
+        float interArea = Math.max(0f, Math.min(aR, bR) - Math.max(aL, bL))
+                * Math.max(0f, Math.min(aB, bB) - Math.max(aT, bT));
+        float unionArea = (aR - aL) * (aB - aT) + (bR - bL) * (bB - bT) - interArea;
+        return unionArea <= 0 ? 0f : interArea / unionArea;
+    }
+
+    // ========================== 网格 ==========================
+
+    /**
+     * 把前 n 个候选登记到 gridSize x gridSize 的网格里 (一个框会登记到它覆盖的所有网格)
+     */
+    private void buildGrid(int n) {
+        gridSize = Math.max(1, Math.min(32, (int) Math.sqrt(n)));
+        int cells = gridSize * gridSize;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+
+        // 第一遍：统计每个网格的数量
+        int total = 0;
+        for (int a = 0; a < n; a++) {
+            int i = order[a];
+            int c0 = cell(boxes[i * 4]), c1 = cell(boxes[i * 4 + 2]);
+            int r0 = cell(boxes[i * 4 + 1]), r1 = cell(boxes[i * 4 + 3]);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    cellStart[r * gridSize + c + 1]++;
+                }
+            }
+            total += (c1 - c0 + 1) * (r1 - r0 + 1);
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        if (cellItems.length < total) {
+            cellItems = new int[total];
+        }
+
+        // 第二遍：填充 (cellStart[c] 临时充当写游标，填完后整体右移一位恢复成起点)
+        for (int a = 0; a < n; a++) {
+            int i = order[a];
+            int c0 = cell(boxes[i * 4]), c1 = cell(boxes[i * 4 + 2]);
+            int r0 = cell(boxes[i * 4 + 1]), r1 = cell(boxes[i * 4 + 3]);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    cellItems[cellStart[r * gridSize + c]++] = i;
+                }
+            }
+        }
+        for (int c = cells; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    private int cell(float v) {
+        int c = (int) (v * gridSize);
+        return c < 0 ? 0 : (c >= gridSize ? gridSize - 1 : c);
+    }
+
+    private void ensureCapacity(int count) {
+        if (order.length >= count) return;
+        order = new int[count];
+        rank = new int[count];
+        stamp = new int[count];
+        done = new boolean[count];
+        work = new float[count];
+        keep = new int[count];
+        keptScores = new float[count];
+        epoch = 0;
+    }
+}
@@ -24,6 +24,7 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -45,6 +46,19 @@ public class ObjectRecognitionHelper {
         void onError(String errorMessage);
     }
 
+    /** Best result for one image; word is "No object detected." and boundingBox is null when nothing passes. */
+    public static final class Recognition {
+        public final String word;
+        public final float confidence;
+        public final RectF boundingBox;
+
+        Recognition(String word, float confidence, RectF boundingBox) {
+            this.word = word;
+            this.confidence = confidence;
+            this.boundingBox = boundingBox;
+        }
+    }
+
     public ObjectRecognitionHelper(Context context, int inputWidth, int inputHeight) {
         this.inputWidth = inputWidth;
         this.inputHeight = inputHeight;
@@ -71,7 +85,10 @@ public class ObjectRecognitionHelper {
         try {
             MappedByteBuffer modelBuffer = loadModelFile(context.getAssets(), MODEL_PATH);
             Interpreter.Options options = new Interpreter.Options();
-            options.setNumThreads(4);
+            // 线程数 / XNNPACK 使用本机调优结果，而不是写死 4 线程；
+            // resolve 不等待调优 (没有结果时返回默认配置)，构造函数在主线程上调用也不会卡住
+            InterpreterProfiles.apply(options,
+                    InterpreterProfiles.resolve(context, MODEL_PATH, modelBuffer, modelBuffer.capacity()));
             tflite = new Interpreter(modelBuffer, options);
             Log.d(TAG, "TFLite model loaded successfully.");
         } catch (IOException e) {
@@ -96,24 +113,7 @@ public class ObjectRecognitionHelper {
 
         backgroundExecutor.execute(() -> {
             try {
-                ImageProcessor imageProcessor = new ImageProcessor.Builder()
-                        .add(new ResizeOp(inputHeight, inputWidth, ResizeOp.ResizeMethod.BILINEAR))
-                        .add(new NormalizeOp(0f, 255f))
-                        .build();
-
-                TensorImage tensorImage = new TensorImage(DataType.FLOAT32);
-                tensorImage.load(bitmap);
-                TensorBuffer processedImageBuffer = imageProcessor.process(tensorImage).getTensorBuffer();
-                ByteBuffer byteBuffer = processedImageBuffer.getBuffer();
-
-                int outputTensorSize = labels.size() + 4;
-                int numPredictions = 8400;
-                float[][][] output = new float[1][outputTensorSize][numPredictions];
-
-                tflite.run(byteBuffer, output);
-
-                postProcess(output, callback, bitmap.getWidth(), bitmap.getHeight());
-
+                deliver(recognize(bitmap), callback);
             } catch (Exception e) {
                 Log.e(TAG, "Error during object detection", e);
                 callback.onError("Error during object detection: " + e.getMessage());
@@ -121,8 +121,56 @@ public class ObjectRecognitionHelper {
         });
     }
 
+    /**
+     * Stream variant of detectObjects: submitted bitmaps are recognized on the background thread,
+     * a newer bitmap replaces one still waiting, and results reach the callback on the delivery executor.
+     * Cancel the stream when done (see DetectionStreams.bindTo).
+     */
+    public DetectionStream<Bitmap, Recognition> openStream(Executor delivery, final RecognitionCallback callback) {
+        return new DetectionStream<>(backgroundExecutor, delivery, this::recognize,
+                new DetectionStream.Sink<Recognition>() {
+                    @Override
+                    public void onResult(Recognition recognition) {
+                        deliver(recognition, callback);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        Log.e(TAG, "Error during object detection", error);
+                        callback.onError("Error during object detection: " + error.getMessage());
+                    }
+                }, null);
+    }
+
+    private static void deliver(Recognition recognition, RecognitionCallback callback) {
+        callback.onResult(recognition.word, recognition.confidence, recognition.boundingBox);
+    }
+
+    private Recognition recognize(Bitmap bitmap) {
+        if (tflite == null) {
+            throw new IllegalStateException("TFLite model not initialized.");
+        }
+        ImageProcessor imageProcessor = new ImageProcessor.Builder()
+                .add(new ResizeOp(inputHeight, inputWidth, ResizeOp.ResizeMethod.BILINEAR))
+                .add(new NormalizeOp(0f, 255f))
+                .build();
+
+        TensorImage tensorImage = new TensorImage(DataType.FLOAT32);
+        tensorImage.load(bitmap);
+        TensorBuffer processedImageBuffer = imageProcessor.process(tensorImage).getTensorBuffer();
+        ByteBuffer byteBuffer = processedImageBuffer.getBuffer();
+
+        int outputTensorSize = labels.size() + 4;
+        int numPredictions = 8400;
+        float[][][] output = new float[1][outputTensorSize][numPredictions];
+
+        tflite.run(byteBuffer, output);
+
+        return postProcess(output, bitmap.getWidth(), bitmap.getHeight());
+    }
+
     // *** MODIFIED HERE: Optimized post-processing logic ***
-    private void postProcess(float[][][] output, RecognitionCallback callback, int originalWidth, int originalHeight) {
+    private Recognition postProcess(float[][][] output, int originalWidth, int originalHeight) {
         float topConfidence = -1.0f;
         String topLabel = "No object detected.";
         RectF topBoundingBox = new RectF();
@@ -167,11 +215,11 @@ public class ObjectRecognitionHelper {
             }
         }
 
-        // After checking all predictions, send the single best result via callback
+        // After checking all predictions, return the single best result
         if (topConfidence > 0.5f) {
-            callback.onResult(topLabel, topConfidence, topBoundingBox);
+            return new Recognition(topLabel, topConfidence, topBoundingBox);
         } else {
-            callback.onResult("No object detected.", 0.0f, null);
+            return new Recognition("No object detected.", 0.0f, null);
         }
     }
 
@@ -0,0 +1,364 @@
+package com.example.myapplication.ml;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 轻量多目标跟踪器：IoU / 中心距离关联 + 匀速 Kalman 滤波
+ *
+ * 以前每一帧都跑完整的 detect()，OverlayView 靠 200 ms 超时掩盖闪烁。现在：
+ * 1. 每个目标有稳定的 trackId，点击目标不会因为框抖动而跳来跳去
+ * 2. 只在关键帧运行检测器 (见 {@link #needsDetection()})，中间帧用 Kalman 预测框的位置
+ * 3. 关键帧间隔按实测运动自适应：画面静止时逐步拉长 (至多 maxInterval)，运动明显时立即缩短
+ *
+ * 坐标使用 0~1 的归一化值，与 YoloDetector.Result 一致。
+ * 不依赖 Android，方法都是 synchronized 的：相机线程调用 predict / needsDetection，推理线程调用 update。
+ */
+public class ObjectTracker {
+
+    // ========================== 参数 ==========================
+    private float iouThreshold = 0.3f;
+    // IoU 不够时，中心距离 (以框对角线为单位) 小于该值也算同一目标
+    private float centroidGate = 0.5f;
+    // 连续多少个关键帧没匹配上就删除
+    private int maxMisses = 3;
+    // 命中不到几次的目标是"试探"的：新目标立即可见，但试探期内一次没匹配上就直接删除 (不做丢失保留)，
+    // 偶发的误检只闪一个关键帧，而不是被预测位置留住 maxMisses 个关键帧
+    private int minHits = 2;
+    private int maxInterval = 6;
+    // 运动量 (预测误差 / 框尺寸) 的阈值
+    private float lowMotion = 0.02f;
+    private float highMotion = 0.08f;
+
+    // Kalman 噪声：过程噪声 (加速度) 与观测噪声 (相对框尺寸)
+    private static final float PROCESS_NOISE = 0.5f;
+    private static final float MEASUREMENT_NOISE = 0.05f;
+
+    // 置信度从高到低
+    private static final Comparator<Track> BY_SCORE_DESC = (a, b) -> Float.compare(b.score, a.score);
+
+    private final List<Track> tracks = new ArrayList<>();
+    private final List<Track> visible = new ArrayList<>();
+    private int nextId = 1;
+    private long lastTimeNanos = -1;
+
+    private int interval = 1;
+    private int framesSinceDetection;
+    private float motion;
+
+    public synchronized ObjectTracker setMaxInterval(int maxInterval) {
+        this.maxInterval = Math.max(1, maxInterval);
+        return this;
+    }
+
+    public synchronized ObjectTracker setAssociation(float iouThreshold, float centroidGate) {
+        this.iouThreshold = iouThreshold;
+        this.centroidGate = centroidGate;
+        return this;
+    }
+
+    public synchronized ObjectTracker setLifecycle(int minHits, int maxMisses) {
+        this.minHits = Math.max(1, minHits);
+        this.maxMisses = Math.max(1, maxMisses);
+        return this;
+    }
+
+    public synchronized ObjectTracker setMotionThresholds(float low, float high) {
+        this.lowMotion = low;
+        this.highMotion = high;
+        return this;
+    }
+
+    // ========================== 关键帧调度 ==========================
+
+    /**
+     * 每一帧调用一次：返回 true 表示这一帧应该运行检测器，否则用 {@link #predict(long)} 的结果
+     */
+    public synchronized boolean needsDetection() {
+        if (tracks.isEmpty() || ++framesSinceDetection >= interval) {
+            framesSinceDetection = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /** 当前的关键帧间隔 (1 = 每帧都检测) */
+    public synchronized int getInterval() {
+        return interval;
+    }
+
+    /** 最近一次关键帧测得的运动量 */
+    public synchronized float getMotion() {
+        return motion;
+    }
+
+    // ========================== 预测 / 更新 ==========================
+
+    /**
+     * 把所有目标推进到 timeNanos (非关键帧调用)
+     */
+    public synchronized void predict(long timeNanos) {
+        float dt = advanceClock(timeNanos);
+        if (dt > 0) {
+            for (Track t : tracks) t.predict(dt);
+        }
+        collectVisible();
+    }
+
+    /**
+     * 用一帧检测结果更新跟踪 (关键帧调用)
+     *
+     * @param boxes    [left, top, right, bottom] * count，归一化坐标
+     * @param classIds 类别
+     * @param scores   置信度
+     */
+    public synchronized void update(float[] boxes, int[] classIds, float[] scores, int count, long timeNanos) {
+        float dt = advanceClock(timeNanos);
+        if (dt > 0) {
+            for (Track t : tracks) t.predict(dt);
+        }
+
+        // 【关联】按 IoU 从大到小贪心匹配 (目标数很少，贪心足够)；IoU 不够的再按中心距离匹配
+        boolean[] detectionUsed = new boolean[count];
+        for (Track t : tracks) t.matched = false;
+        float motionSum = 0;
+        int motionCount = 0;
+        while (true) {
+            Track bestTrack = null;
+            int bestDetection = -1;
+            float bestCost = Float.MAX_VALUE;
+            for (Track t : tracks) {
+                if (t.matched) continue;
+                for (int d = 0; d < count; d++) {
+                    if (detectionUsed[d] || classIds[d] != t.classId) continue;
+                    float cost = matchCost(t, boxes, d);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestTrack = t;
+                        bestDetection = d;
+                    }
+                }
+            }
+            if (bestTrack == null) break;
+
+            int o = bestDetection * 4;
+            motionSum += bestTrack.innovation(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3]);
+            motionCount++;
+            bestTrack.correct(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], scores[bestDetection]);
+            bestTrack.matched = true;
+            detectionUsed[bestDetection] = true;
+        }
+
+        // 【生命周期】未匹配的目标累计丢失；未匹配的检测新建目标
+        for (int i = tracks.size() - 1; i >= 0; i--) {
+            Track t = tracks.get(i);
+            if (!t.matched && (++t.misses > maxMisses || t.hits < minHits)) tracks.remove(i);
+        }
+        for (int d = 0; d < count; d++) {
+            if (detectionUsed[d]) continue;
+            int o = d * 4;
+            tracks.add(new Track(nextId++, classIds[d], scores[d], boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3]));
+        }
+
+        adaptInterval(motionCount > 0 ? motionSum / motionCount : highMotion);
+        collectVisible();
+    }
+
+    /**
+     * 关联代价：IoU 足够时按 (1 - IoU)，否则中心距离在门限内时排在所有 IoU 匹配之后，都不满足返回 MAX
+     */
+    private float matchCost(Track t, float[] boxes, int d) {
+        int o = d * 4;
+        float l = boxes[o], tp = boxes[o + 1], r = boxes[o + 2], b = boxes[o + 3];
+        float iou = iou(t.left(), t.top(), t.right(), t.bottom(), l, tp, r, b);
+        if (iou >= iouThreshold) return 1f - iou;
+        float dx = (l + r) * 0.5f - t.cx;
+        float dy = (tp + b) * 0.5f - t.cy;
+        float diag = (float) Math.sqrt(t.w * t.w + t.h * t.h);
+        float dist = diag > 0 ? (float) Math.sqrt(dx * dx + dy * dy) / diag : Float.MAX_VALUE;
+        return dist <= centroidGate ? 1f + dist : Float.MAX_VALUE;
+    }
+
+    /**
+     * 静止时逐步拉长关键帧间隔，运动明显时减半
+     */
+    private void adaptInterval(float measuredMotion) {
+        motion = measuredMotion;
+        if (tracks.isEmpty() || hasTentativeTrack()) {
+            // 新目标要靠下一个关键帧确认，先不拉长间隔
+            interval = 1;
+        } else if (measuredMotion <= lowMotion) {
+            interval = Math.min(maxInterval, interval + 1);
+        } else if (measuredMotion >= highMotion) {
+            interval = Math.max(1, interval / 2);
+        }
+    }
+
+    private boolean hasTentativeTrack() {
+        for (Track t : tracks) {
+            if (t.hits < minHits) return true;
+        }
+        return false;
+    }
+
+    private float advanceClock(long timeNanos) {
+        float dt = lastTimeNanos < 0 ? 0f : Math.max(0, timeNanos - lastTimeNanos) / 1e9f;
+        lastTimeNanos = timeNanos;
+        return dt;
+    }
+
+    private void collectVisible() {
+        visible.clear();
+        visible.addAll(tracks);
+        visible.sort(BY_SCORE_DESC);
+    }
+
+    // ========================== 结果读取 (最近一次 predict / update 之后) ==========================
+
+    /**
+     * 逐个访问对外可见的目标 (置信度从高到低)
+     */
+    public interface Visitor {
+        void visit(int trackId, int classId, float score, float left, float top, float right, float bottom);
+    }
+
+    /**
+     * 在锁内遍历，保证读到的是同一次 predict / update 的完整结果
+     */
+    public synchronized void visitTracks(Visitor visitor) {
+        for (Track t : visible) {
+            visitor.visit(t.id, t.classId, t.score,
+                    clamp01(t.left()), clamp01(t.top()), clamp01(t.right()), clamp01(t.bottom()));
+        }
+    }
+
+    public synchronized int getTrackCount() {
+        return visible.size();
+    }
+
+    public synchronized void reset() {
+        tracks.clear();
+        visible.clear();
+        lastTimeNanos = -1;
+        interval = 1;
+        framesSinceDetection = 0;
+    }
+
+    static float iou(float l1, float t1, float r1, float b1, float l2, float t2, float r2, float b2) {
+        float iw = Math.min(r1, r2) - Math.max(l1, l2);
+        float ih = Math.min(b1, b2) - Math.max(t1, t2);
+        if (iw <= 0 || ih <= 0) return 0f;
+        float inter = iw * ih;
+        float union = (r1 - l1) * (b1 - t1) + (r2 - l2) * (b2 - t2) - inter;
+        return union > 0 ? inter / union : 0f;
+    }
+
+    private static float clamp01(float v) {
+        return v < 0f ? 0f : (v > 1f ? 1f : v);
+    }
+
+    // ========================== 单个目标 ==========================
+
+    /**
+     * 状态 (cx, cy, w, h) 及各自速度；每个分量独立的 [位置, 速度] 二维 Kalman 滤波
+     */
+    private static class Track {
+        final int id;
+        final int classId;
+        float score;
+        int hits = 1;
+        int misses;
+        int age;
+        boolean matched;
+
+        float cx, cy, w, h;
+        // 速度 + 每个分量的 2x2 协方差 [p00, p01, p11]
+        final float[] velocity = new float[4];
+        final float[] covariance = new float[12];
+
+        Track(int id, int classId, float score, float l, float t, float r, float b) {
+            this.id = id;
+            this.classId = classId;
+            this.score = score;
+            cx = (l + r) * 0.5f;
+            cy = (t + b) * 0.5f;
+            w = r - l;
+            h = b - t;
+            float size = Math.max(w, h);
+            for (int i = 0; i < 4; i++) {
+                covariance[i * 3] = sq(MEASUREMENT_NOISE * size);
+                covariance[i * 3 + 2] = sq(size); // 初始速度未知
+            }
+        }
+
+        float left() { return cx - w * 0.5f; }
+
+        float top() { return cy - h * 0.5f; }
+
+        float right() { return cx + w * 0.5f; }
+
+        float bottom() { return cy + h * 0.5f; }
+
+        void predict(float dt) {
+            float size = Math.max(w, h);
+            float q = sq(PROCESS_NOISE * size);
+            cx = predictAxis(0, cx, dt, q);
+            cy = predictAxis(1, cy, dt, q);
+            w = Math.max(1e-4f, predictAxis(2, w, dt, q));
+            h = Math.max(1e-4f, predictAxis(3, h, dt, q));
+            age++;
+        }
+
+        private float predictAxis(int axis, float x, float dt, float q) {
+            int c = axis * 3;
+            float p00 = covariance[c], p01 = covariance[c + 1], p11 = covariance[c + 2];
+            // x' = x + v*dt；P' = F P F^T + Q (离散白噪声加速度模型)
+            float dt2 = dt * dt;
+            covariance[c] = p00 + 2 * dt * p01 + dt2 * p11 + q * dt2 * dt2 / 4;
+            covariance[c + 1] = p01 + dt * p11 + q * dt2 * dt / 2;
+            covariance[c + 2] = p11 + q * dt2;
+            return x + velocity[axis] * dt;
+        }
+
+        /**
+         * 预测与观测的中心偏差 (以框尺寸为单位)，作为运动量
+         */
+        float innovation(float l, float t, float r, float b) {
+            float dx = (l + r) * 0.5f - cx;
+            float dy = (t + b) * 0.5f - cy;
+            float size = Math.max(1e-4f, Math.max(w, h));
+            return (float) Math.sqrt(dx * dx + dy * dy) / size;
+        }
+
+        void correct(float l, float t, float r, float b, float newScore) {
+            float size = Math.max(w, h);
+            float rNoise = sq(MEASUREMENT_NOISE * size);
+            cx = correctAxis(0, cx, (l + r) * 0.5f, rNoise);
+            cy = correctAxis(1, cy, (t + b) * 0.5f, rNoise);
+            w = correctAxis(2, w, r - l, rNoise);
+            h = correctAxis(3, h, b - t, rNoise);
+            score = newScore;
+            hits++;
+            misses = 0;
+            age = 0;
+        }
+
+        private float correctAxis(int axis, float x, float z, float rNoise) {
+            int c = axis * 3;
+            float p00 = covariance[c], p01 = covariance[c + 1], p11 = covariance[c + 2];
+            float s = p00 + rNoise;
+            float k0 = p00 / s, k1 = p01 / s;
+            float y = z - x;
+            velocity[axis] += k1 * y;
+            covariance[c] = (1 - k0) * p00;
+            covariance[c + 1] = (1 - k0) * p01;
+            covariance[c + 2] = p11 - k1 * p01;
+            return x + k0 * y;
+        }
+
+        private static float sq(float v) {
+            return v * v;
+        }
+    }
+}
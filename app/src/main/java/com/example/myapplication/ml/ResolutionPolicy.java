@@ -0,0 +1,106 @@
+package com.example.myapplication.ml;
+
+import java.util.Arrays;
+
+/**
+ * 动态输入分辨率策略 (例如 320 / 480 / 640)
+ *
+ * 物体占满对焦框时 640x640 推理纯属浪费。每帧推理后喂入 "耗时 + 最高置信度"：
+ * 1. 平均耗时超过延迟预算 -> 降一档
+ * 2. 置信度下降 (包括没检测到物体) -> 升一档，前提是预计耗时仍在预算内
+ * 3. 置信度一直很高 -> 降一档，省下算力
+ * 每次切换后至少冷却 cooldownFrames 帧再做下一次决定，避免来回抖动。
+ *
+ * 耗时和置信度都用指数滑动平均；各档耗时分别记录，未测过的档按像素数平方比例估算。
+ * 非线程安全，应只在推理线程调用。
+ */
+public class ResolutionPolicy {
+
+    private static final double ALPHA = 0.2;
+
+    private final int[] sizes;
+    private final double budgetMs;
+    private final double[] latencyEma;
+
+    private float lowConfidence = 0.6f;
+    private float highConfidence = 0.8f;
+    private int cooldownFrames = 15;
+
+    private int level;
+    private double confidenceEma = -1;
+    private int framesSinceChange;
+
+    /**
+     * @param sizes       可选的输入边长
+     * @param initialSize 初始边长 (必须在 sizes 里)
+     * @param budgetMs    每帧推理 (含解码) 的目标耗时
+     */
+    public ResolutionPolicy(int[] sizes, int initialSize, double budgetMs) {
+        if (sizes.length == 0) throw new IllegalArgumentException("sizes is empty");
+        this.sizes = sizes.clone();
+        Arrays.sort(this.sizes);
+        this.level = Arrays.binarySearch(this.sizes, initialSize);
+        if (level < 0) throw new IllegalArgumentException("initialSize not in sizes: " + initialSize);
+        this.budgetMs = budgetMs;
+        this.latencyEma = new double[sizes.length];
+    }
+
+    /**
+     * 置信度阈值：平均值低于 low 时升档，高于 high 时降档
+     */
+    public ResolutionPolicy setConfidenceThresholds(float low, float high) {
+        this.lowConfidence = low;
+        this.highConfidence = high;
+        return this;
+    }
+
+    public ResolutionPolicy setCooldownFrames(int frames) {
+        this.cooldownFrames = Math.max(1, frames);
+        return this;
+    }
+
+    public int getCurrentSize() {
+        return sizes[level];
+    }
+
+    public int getMaxSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * 记录一帧的结果并给出下一帧应使用的边长
+     *
+     * @param latencyMs 本帧推理 + 解码耗时
+     * @param topScore  本帧最高置信度，没检测到物体时传 0
+     * @return 下一帧的输入边长
+     */
+    public int onFrame(double latencyMs, float topScore) {
+        latencyEma[level] = latencyEma[level] == 0 ? latencyMs : latencyEma[level] * (1 - ALPHA) + latencyMs * ALPHA;
+        confidenceEma = confidenceEma < 0 ? topScore : confidenceEma * (1 - ALPHA) + topScore * ALPHA;
+
+        if (++framesSinceChange < cooldownFrames) return sizes[level];
+
+        if (latencyEma[level] > budgetMs) {
+            if (level > 0) changeLevel(level - 1);
+        } else if (confidenceEma < lowConfidence) {
+            if (level < sizes.length - 1 && estimateLatency(level + 1) <= budgetMs) changeLevel(level + 1);
+        } else if (confidenceEma >= highConfidence) {
+            if (level > 0) changeLevel(level - 1);
+        }
+        return sizes[level];
+    }
+
+    /**
+     * 某一档的预计耗时：测过就用实测平均值，否则按当前档的耗时乘以面积比估算
+     */
+    double estimateLatency(int targetLevel) {
+        if (latencyEma[targetLevel] > 0) return latencyEma[targetLevel];
+        double ratio = (double) sizes[targetLevel] / sizes[level];
+        return latencyEma[level] * ratio * ratio;
+    }
+
+    private void changeLevel(int newLevel) {
+        level = newLevel;
+        framesSinceChange = 0;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.myapplication.ml;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 单槽"最新结果"信箱：分析线程发布，UI 线程每个 vsync 取一次
+ *
+ * 以前每个分析帧都 runOnUiThread 一个新 lambda，主线程忙时它们在 Looper 队列里排队，
+ * 画出来的已经是好几帧之前的结果。这里只有一个槽位，用 getAndSet 原子交换：
+ * 1. publish() 直接覆盖槽位；被覆盖的旧结果从未被取走，计入 dropped
+ * 2. take() 取走并清空槽位，没有新结果时返回 null
+ * 任何时候最多积压一个结果，不加锁、不分配。
+ *
+ * 任意线程可调用 (通常一个生产者、一个消费者)。
+ */
+public class ResultMailbox<T> {
+
+    private final AtomicReference<T> slot = new AtomicReference<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * 放入最新结果 (不能为 null)
+     *
+     * @return true = 覆盖了一个还没被取走的旧结果
+     */
+    public boolean publish(T value) {
+        if (value == null) throw new IllegalArgumentException("value == null");
+        published.incrementAndGet();
+        if (slot.getAndSet(value) != null) {
+            dropped.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 取走最新结果；自上次 take() 以来没有新结果时返回 null
+     */
+    public T take() {
+        T value = slot.getAndSet(null);
+        if (value != null) consumed.incrementAndGet();
+        return value;
+    }
+
+    /** 丢弃未取走的结果 (不计入 dropped) */
+    public void clear() {
+        slot.set(null);
+    }
+
+    public long getPublished() { return published.get(); }
+
+    public long getConsumed() { return consumed.get(); }
+
+    /** 从未被 UI 取走就被新结果覆盖的个数 */
+    public long getDropped() { return dropped.get(); }
+
+    @Override
+    public String toString() {
+        return "ResultMailbox{published=" + published.get() + ", consumed=" + consumed.get()
+                + ", dropped=" + dropped.get() + "}";
+    }
+}
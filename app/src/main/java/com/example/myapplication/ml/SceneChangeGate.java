@@ -0,0 +1,149 @@
+package com.example.myapplication.ml;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 推理前的场景变化门控：画面基本没变时跳过推理，直接复用上一次的结果
+ *
+ * 学习者经常把手机对着同一个物体好几秒，每一帧都跑 YOLO 纯属重复劳动。
+ * 这里直接在 ImageProxy 的亮度平面上采样出 gridSize x gridSize 的缩略图 (每格 4 个采样点，
+ * 1080p 下每帧只读几千字节)，与 "上一次真正推理的帧" 的缩略图比较平均绝对差：
+ * 1. 低于阈值 -> 命中，调用方复用上一次的 Result 列表
+ * 2. 否则 -> 当前缩略图成为新的参考帧，调用方照常推理
+ * 与参考帧 (而不是上一帧) 比较，缓慢的平移也会累积到阈值；另外连续命中 maxReuseFrames 次后强制推理一次。
+ *
+ * 提供命中率、门控自身耗时和节省的推理时间统计。非线程安全，应只在相机分析线程调用。
+ */
+public class SceneChangeGate {
+
+    private final int gridSize;
+    private final float threshold;
+    private int maxReuseFrames = 60;
+
+    private final int[] current;
+    private final int[] reference;
+    private boolean hasReference;
+    private int consecutiveHits;
+
+    // ========================== 统计 ==========================
+    private long framesChecked;
+    private long hits;
+    private double gateCostMs;       // 门控本身耗时 (滑动平均)
+    private double inferenceMs;      // 推理耗时 (滑动平均，由调用方报告)
+    private double savedMs;          // 累计节省的推理时间
+    private float lastDifference;
+
+    /**
+     * @param gridSize  缩略图边长 (例如 16)
+     * @param threshold 平均亮度差阈值 (0~255 灰阶)，低于它视为静止
+     */
+    public SceneChangeGate(int gridSize, float threshold) {
+        this.gridSize = Math.max(2, gridSize);
+        this.threshold = threshold;
+        this.current = new int[this.gridSize * this.gridSize];
+        this.reference = new int[this.gridSize * this.gridSize];
+    }
+
+    /**
+     * 连续命中多少帧后强制推理一次 (防止漏掉缓慢变化)
+     */
+    public SceneChangeGate setMaxReuseFrames(int frames) {
+        this.maxReuseFrames = Math.max(1, frames);
+        return this;
+    }
+
+    /**
+     * 判断这一帧能否跳过推理
+     *
+     * @param luma        亮度平面 (YUV 的 Y 平面；RGBA 帧可以传 plane[0]，按 pixelStride 读取其中一个通道)
+     * @param width       帧宽
+     * @param height      帧高
+     * @param rowStride   行跨度
+     * @param pixelStride 像素跨度 (Y 平面为 1，RGBA 为 4)
+     * @return true = 与上次推理的帧几乎相同，应复用上次结果；false = 需要推理 (当前帧已记为新的参考帧)
+     */
+    public boolean shouldSkip(ByteBuffer luma, int width, int height, int rowStride, int pixelStride) {
+        long start = System.nanoTime();
+        sample(luma, width, height, rowStride, pixelStride);
+
+        boolean skip = false;
+        if (hasReference && consecutiveHits < maxReuseFrames) {
+            lastDifference = meanAbsDifference();
+            skip = lastDifference < threshold;
+        }
+        if (skip) {
+            consecutiveHits++;
+            hits++;
+            savedMs += inferenceMs;
+        } else {
+            System.arraycopy(current, 0, reference, 0, current.length);
+            hasReference = true;
+            consecutiveHits = 0;
+        }
+        framesChecked++;
+
+        double costMs = (System.nanoTime() - start) / 1e6;
+        gateCostMs = framesChecked == 1 ? costMs : gateCostMs * 0.9 + costMs * 0.1;
+        return skip;
+    }
+
+    /**
+     * 报告一次真实推理的耗时，用于估算命中时节省的时间
+     */
+    public void recordInferenceMs(double ms) {
+        inferenceMs = inferenceMs == 0 ? ms : inferenceMs * 0.9 + ms * 0.1;
+    }
+
+    /**
+     * 丢弃参考帧 (例如暂停后恢复扫描)，下一帧一定会推理
+     */
+    public void invalidate() {
+        hasReference = false;
+        consecutiveHits = 0;
+    }
+
+    private void sample(ByteBuffer luma, int width, int height, int rowStride, int pixelStride) {
+        int g = gridSize;
+        for (int gy = 0; gy < g; gy++) {
+            // 每格取 1/4、3/4 处的两行两列
+            int y0 = (int) ((gy + 0.25f) * height / g);
+            int y1 = (int) ((gy + 0.75f) * height / g);
+            int row0 = y0 * rowStride;
+            int row1 = y1 * rowStride;
+            for (int gx = 0; gx < g; gx++) {
+                int x0 = (int) ((gx + 0.25f) * width / g) * pixelStride;
+                int x1 = (int) ((gx + 0.75f) * width / g) * pixelStride;
+                int sum = (luma.get(row0 + x0) & 0xFF) + (luma.get(row0 + x1) & 0xFF)
+                        + (luma.get(row1 + x0) & 0xFF) + (luma.get(row1 + x1) & 0xFF);
+                current[gy * g + gx] = sum >> 2;
+            }
+        }
+    }
+
+    private float meanAbsDifference() {
+        int sum = 0;
+        for (int i = 0; i < current.length; i++) {
+            sum += Math.abs(current[i] - reference[i]);
+        }
+        return (float) sum / current.length;
+    }
+
+    // ========================== 统计读取 ==========================
+
+    public long getFramesChecked() { return framesChecked; }
+
+    public long getHits() { return hits; }
+
+    public double getHitRate() {
+        return framesChecked == 0 ? 0 : (double) hits / framesChecked;
+    }
+
+    /** 门控每帧的平均耗时 */
+    public double getGateCostMs() { return gateCostMs; }
+
+    /** 命中帧累计节省的推理时间 (按推理耗时的滑动平均估算) */
+    public double getSavedMs() { return savedMs; }
+
+    /** 最近一次与参考帧的平均亮度差 */
+    public float getLastDifference() { return lastDifference; }
+}
@@ -0,0 +1,309 @@
+package com.example.myapplication.ml;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * 单遍融合预处理：缩放 + 归一化 + 打包 一步写进模型输入张量
+ *
+ * 旧流程：createScaledBitmap (新建 640x640 位图) -> getPixels -> 逐像素 putFloat(x / 255f)
+ * 新流程：按行直接从源图采样 (最近邻 / 双线性)，查 256 项归一化表，整行批量 put 进 DirectBuffer
+ *
+ * 1. 不再产生中间位图，源图每行最多读取一次 (行缓存)
+ * 2. 采样坐标和插值权重按尺寸预计算，插值用定点整数完成
+ * 3. 支持 NHWC / NCHW 布局，以及 FLOAT32 / UINT8 / INT8 输入
+ * 4. 可以只处理源图的一个区域 (ROI，见 {@link #setRegion})，区域外的行不会被读取
+ *
+ * 该类不依赖 android.* ，位图由调用方通过 {@link RowSource} 按行提供。
+ * 非线程安全：每个目标缓冲区对应一个实例。
+ */
+public class TensorPreprocessor {
+
+    public enum Layout { NHWC, NCHW }
+
+    /**
+     * INT8 对应全整型量化模型的常见输入参数 (scale = 1/255, zeroPoint = -128)：写入 像素值 - 128
+     */
+    public enum Format { FLOAT32, UINT8, INT8 }
+
+    public enum Sampling { NEAREST, BILINEAR }
+
+    /**
+     * 按行读取源图像素 (ARGB_8888 打包的 int)
+     */
+    public interface RowSource {
+        void readRow(int y, int[] out);
+    }
+
+    // 256 项归一化表：0~255 -> 0.0~1.0
+    private static final float[] NORMALIZE_LUT = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            NORMALIZE_LUT[i] = i / 255.0f;
+        }
+    }
+
+    private final int dstWidth;
+    private final int dstHeight;
+    private final Layout layout;
+    private final Format format;
+    private Sampling sampling;
+
+    // 目标张量视图 (独立的 position，不影响原缓冲区)
+    private final FloatBuffer floatView;
+    private final ByteBuffer byteView;
+
+    // 行打包暂存区
+    private final int[] dstRow;
+    private final float[] floatRow;
+    private final byte[] byteRow;
+
+    // =========================================================================
+    // 【预计算】采样表，源尺寸不变时直接复用
+    // xFrac / yFrac 为 0~256 的定点权重
+    // =========================================================================
+    private int tableSrcWidth = -1;
+    private int tableSrcHeight = -1;
+    private Sampling tableSampling;
+    private float tableLeft, tableTop, tableRight, tableBottom;
+    private final int[] x0;
+    private final int[] x1;
+    private final int[] xFrac;
+    private final int[] y0;
+    private final int[] y1;
+    private final int[] yFrac;
+
+    // 源图行缓存
+    private int[] rowA = new int[0];
+    private int[] rowB = new int[0];
+    private int rowAIndex = -1;
+    private int rowBIndex = -1;
+    private boolean lastUsedA;
+
+    // 源图中要处理的区域 (0~1 归一化坐标)，默认整张图
+    private float regionLeft = 0f;
+    private float regionTop = 0f;
+    private float regionRight = 1f;
+    private float regionBottom = 1f;
+
+    public TensorPreprocessor(ByteBuffer target, int dstWidth, int dstHeight,
+                              Layout layout, Format format, Sampling sampling) {
+        this.dstWidth = dstWidth;
+        this.dstHeight = dstHeight;
+        this.layout = layout;
+        this.format = format;
+        this.sampling = sampling;
+
+        ByteBuffer view = target.duplicate();
+        view.order(target.order());
+        view.clear();
+        if (format == Format.FLOAT32) {
+            floatView = view.asFloatBuffer();
+            byteView = null;
+            floatRow = new float[dstWidth * 3];
+            byteRow = null;
+        } else {
+            floatView = null;
+            byteView = view;
+            floatRow = null;
+            byteRow = new byte[dstWidth * 3];
+        }
+
+        dstRow = new int[dstWidth];
+        x0 = new int[dstWidth];
+        x1 = new int[dstWidth];
+        xFrac = new int[dstWidth];
+        y0 = new int[dstHeight];
+        y1 = new int[dstHeight];
+        yFrac = new int[dstHeight];
+    }
+
+    public void setSampling(Sampling sampling) {
+        this.sampling = sampling;
+    }
+
+    /**
+     * 只把源图的 [left, right] x [top, bottom] 区域 (0~1 归一化坐标) 缩放进张量
+     * 传 (0, 0, 1, 1) 恢复整张图
+     */
+    public void setRegion(float left, float top, float right, float bottom) {
+        regionLeft = clamp01(Math.min(left, right));
+        regionTop = clamp01(Math.min(top, bottom));
+        regionRight = clamp01(Math.max(left, right));
+        regionBottom = clamp01(Math.max(top, bottom));
+    }
+
+    private static float clamp01(float v) {
+        return v < 0f ? 0f : (v > 1f ? 1f : v);
+    }
+
+    public int getDstWidth() { return dstWidth; }
+
+    public int getDstHeight() { return dstHeight; }
+
+    /**
+     * 把源图 (或其中 {@link #setRegion} 指定的区域) 缩放 (拉伸) 到目标尺寸并写入张量
+     */
+    public void process(RowSource source, int srcWidth, int srcHeight) {
+        prepareTables(srcWidth, srcHeight);
+        rowAIndex = -1;
+        rowBIndex = -1;
+
+        for (int dy = 0; dy < dstHeight; dy++) {
+            if (sampling == Sampling.NEAREST) {
+                int[] row = fetchRow(source, y0[dy], srcWidth);
+                for (int dx = 0; dx < dstWidth; dx++) {
+                    dstRow[dx] = row[x0[dx]];
+                }
+            } else {
+                int[] top = fetchRow(source, y0[dy], srcWidth);
+                int[] bottom = fetchRow(source, y1[dy], srcWidth);
+                int fy = yFrac[dy];
+                for (int dx = 0; dx < dstWidth; dx++) {
+                    dstRow[dx] = bilinear(top[x0[dx]], top[x1[dx]], bottom[x0[dx]], bottom[x1[dx]], xFrac[dx], fy);
+                }
+            }
+            writeRow(dy, dstRow);
+        }
+    }
+
+    /**
+     * 把一行 ARGB 像素按布局 / 格式打包写入张量第 dstY 行
+     * (YUV 等其它采样器也复用这个打包逻辑)
+     */
+    public void writeRow(int dstY, int[] argb) {
+        final int w = dstWidth;
+        if (format == Format.FLOAT32) {
+            final float[] lut = NORMALIZE_LUT;
+            final float[] out = floatRow;
+            if (layout == Layout.NHWC) {
+                // NHWC (RGB RGB RGB)
+                for (int x = 0, o = 0; x < w; x++, o += 3) {
+                    int pix = argb[x];
+                    out[o] = lut[(pix >> 16) & 0xFF];
+                    out[o + 1] = lut[(pix >> 8) & 0xFF];
+                    out[o + 2] = lut[pix & 0xFF];
+                }
+                floatView.position(dstY * w * 3);
+                floatView.put(out, 0, w * 3);
+            } else {
+                // NCHW (R排完排G排B)：一行拆成三段，分别写进三个平面
+                for (int x = 0; x < w; x++) {
+                    int pix = argb[x];
+                    out[x] = lut[(pix >> 16) & 0xFF];
+                    out[w + x] = lut[(pix >> 8) & 0xFF];
+                    out[2 * w + x] = lut[pix & 0xFF];
+                }
+                int plane = dstWidth * dstHeight;
+                for (int c = 0; c < 3; c++) {
+                    floatView.position(c * plane + dstY * w);
+                    floatView.put(out, c * w, w);
+                }
+            }
+        } else {
+            final byte[] out = byteRow;
+            // INT8：每个通道翻转最高位 = 减 128
+            final int flip = format == Format.INT8 ? 0x808080 : 0;
+            if (layout == Layout.NHWC) {
+                for (int x = 0, o = 0; x < w; x++, o += 3) {
+                    int pix = argb[x] ^ flip;
+                    out[o] = (byte) (pix >> 16);
+                    out[o + 1] = (byte) (pix >> 8);
+                    out[o + 2] = (byte) pix;
+                }
+                byteView.position(dstY * w * 3);
+                byteView.put(out, 0, w * 3);
+            } else {
+                for (int x = 0; x < w; x++) {
+                    int pix = argb[x] ^ flip;
+                    out[x] = (byte) (pix >> 16);
+                    out[w + x] = (byte) (pix >> 8);
+                    out[2 * w + x] = (byte) pix;
+                }
+                int plane = dstWidth * dstHeight;
+                for (int c = 0; c < 3; c++) {
+                    byteView.position(c * plane + dstY * w);
+                    byteView.put(out, c * w, w);
+                }
+            }
+        }
+    }
+
+    private int[] fetchRow(RowSource source, int y, int srcWidth) {
+        if (y == rowAIndex) {
+            lastUsedA = true;
+            return rowA;
+        }
+        if (y == rowBIndex) {
+            lastUsedA = false;
+            return rowB;
+        }
+        // 淘汰最近没用过的那一行，保证同一输出行的上下两行不会互相覆盖
+        if (lastUsedA) {
+            if (rowB.length < srcWidth) rowB = new int[srcWidth];
+            source.readRow(y, rowB);
+            rowBIndex = y;
+            lastUsedA = false;
+            return rowB;
+        } else {
+            if (rowA.length < srcWidth) rowA = new int[srcWidth];
+            source.readRow(y, rowA);
+            rowAIndex = y;
+            lastUsedA = true;
+            return rowA;
+        }
+    }
+
+    /**
+     * 定点双线性插值，fx / fy 为 0~256 的权重
+     */
+    private static int bilinear(int p00, int p01, int p10, int p11, int fx, int fy) {
+        int ifx = 256 - fx;
+        int ify = 256 - fy;
+        int r = ((((p00 >> 16) & 0xFF) * ifx + ((p01 >> 16) & 0xFF) * fx) * ify
+                + (((p10 >> 16) & 0xFF) * ifx + ((p11 >> 16) & 0xFF) * fx) * fy + 32768) >> 16;
+        int g = ((((p00 >> 8) & 0xFF) * ifx + ((p01 >> 8) & 0xFF) * fx) * ify
+                + (((p10 >> 8) & 0xFF) * ifx + ((p11 >> 8) & 0xFF) * fx) * fy + 32768) >> 16;
+        int b = (((p00 & 0xFF) * ifx + (p01 & 0xFF) * fx) * ify
+                + ((p10 & 0xFF) * ifx + (p11 & 0xFF) * fx) * fy + 32768) >> 16;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private void prepareTables(int srcWidth, int srcHeight) {
+        if (srcWidth == tableSrcWidth && srcHeight == tableSrcHeight && sampling == tableSampling
+                && regionLeft == tableLeft && regionTop == tableTop
+                && regionRight == tableRight && regionBottom == tableBottom) return;
+        buildAxis(srcWidth, dstWidth, regionLeft, regionRight, x0, x1, xFrac);
+        buildAxis(srcHeight, dstHeight, regionTop, regionBottom, y0, y1, yFrac);
+        tableSrcWidth = srcWidth;
+        tableSrcHeight = srcHeight;
+        tableSampling = sampling;
+        tableLeft = regionLeft;
+        tableTop = regionTop;
+        tableRight = regionRight;
+        tableBottom = regionBottom;
+    }
+
+    /**
+     * 像素中心对齐的坐标映射：src = origin + (dst + 0.5) * scale - 0.5
+     * [lo, hi] 为该轴上要处理的归一化区间
+     */
+    private void buildAxis(int srcLen, int dstLen, float lo, float hi, int[] i0, int[] i1, int[] frac) {
+        float origin = lo * srcLen;
+        float scale = (hi - lo) * srcLen / dstLen;
+        for (int d = 0; d < dstLen; d++) {
+            if (sampling == Sampling.NEAREST) {
+                i0[d] = Math.min(srcLen - 1, (int) (origin + (d + 0.5f) * scale));
+                i1[d] = i0[d];
+                frac[d] = 0;
+            } else {
+                float s = Math.max(0f, origin + (d + 0.5f) * scale - 0.5f);
+                int base = Math.min(srcLen - 1, (int) s);
+                i0[d] = base;
+                i1[d] = Math.min(srcLen - 1, base + 1);
+                frac[d] = (int) ((s - base) * 256f + 0.5f);
+            }
+        }
+    }
+}
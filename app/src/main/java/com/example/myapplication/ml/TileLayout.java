@@ -0,0 +1,72 @@
+package com.example.myapplication.ml;
+
+/**
+ * 切片推理的分块方案：把大图切成互相重叠的 tileSize 像素方块
+ *
+ * 每个方向上的块数 n = ceil((len - overlap) / (tile - overlap))，超过 maxTilesPerSide 时
+ * 块数封顶、单块相应变大；块的起点在 [0, len - tileLen] 上均匀分布，首尾两块贴边。
+ * 输出为归一化坐标 (0~1)，可直接作为 YoloDetector 的 ROI。
+ *
+ * 纯 Java 实现，不依赖 android.*。
+ */
+public final class TileLayout {
+
+    private TileLayout() {
+    }
+
+    /**
+     * @param width           图片宽 (像素)
+     * @param height          图片高 (像素)
+     * @param tileSize        单块边长 (像素)，通常等于模型输入边长
+     * @param overlap         相邻块的重叠比例 (0 ~ 0.5)
+     * @param maxTilesPerSide 每个方向最多几块
+     * @return [left, top, right, bottom] * 块数；整张图不超过一块时返回单块 (0, 0, 1, 1)
+     */
+    public static float[] plan(int width, int height, int tileSize, float overlap, int maxTilesPerSide) {
+        float clampedOverlap = Math.max(0f, Math.min(0.5f, overlap));
+        int maxPerSide = Math.max(1, maxTilesPerSide);
+        float[] xs = planAxis(width, tileSize, clampedOverlap, maxPerSide);
+        float[] ys = planAxis(height, tileSize, clampedOverlap, maxPerSide);
+
+        int nx = xs.length / 2, ny = ys.length / 2;
+        float[] tiles = new float[nx * ny * 4];
+        int o = 0;
+        for (int j = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                tiles[o++] = xs[i * 2];
+                tiles[o++] = ys[j * 2];
+                tiles[o++] = xs[i * 2 + 1];
+                tiles[o++] = ys[j * 2 + 1];
+            }
+        }
+        return tiles;
+    }
+
+    public static int tileCount(float[] tiles) {
+        return tiles.length / 4;
+    }
+
+    /**
+     * 单个方向的分块：返回 [start, end] * 块数 (归一化)
+     */
+    static float[] planAxis(int len, int tileSize, float overlap, int maxPerSide) {
+        if (len <= tileSize || tileSize <= 0) return new float[]{0f, 1f};
+
+        int overlapPx = Math.round(tileSize * overlap);
+        int step = tileSize - overlapPx;
+        int n = (int) Math.ceil((double) (len - overlapPx) / step);
+        n = Math.max(1, Math.min(maxPerSide, n));
+        if (n == 1) return new float[]{0f, 1f};
+
+        // 块数封顶时加大单块，保证仍然覆盖整条边并保留重叠
+        int tileLen = Math.max(tileSize, (int) Math.ceil((double) (len + (n - 1) * overlapPx) / n));
+        tileLen = Math.min(len, tileLen);
+        float[] out = new float[n * 2];
+        for (int i = 0; i < n; i++) {
+            int start = Math.round((float) i * (len - tileLen) / (n - 1));
+            out[i * 2] = (float) start / len;
+            out[i * 2 + 1] = (float) (start + tileLen) / len;
+        }
+        return out;
+    }
+}
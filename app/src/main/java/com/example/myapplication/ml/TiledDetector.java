@@ -0,0 +1,197 @@
+package com.example.myapplication.ml;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 切片 (分块) 高分辨率推理，用于相册照片
+ *
+ * 把一张几百万像素的照片整体拉伸进 640x640，小物体直接消失。拍照识别对延迟不敏感，所以：
+ * 1. 用 {@link TileLayout} 把大图切成互相重叠的 tileSize 像素方块 (可选再加一次整图推理，照顾大物体)
+ * 2. 每块作为 ROI 交给检测器池里的实例，多块并行推理
+ * 3. 各块的结果已经是整图归一化坐标，合并后做一次跨块 NMS (按类别) 去掉重叠块里的重复框
+ *
+ * 块大小、重叠比例、块数上限、并行度都可以配置；每次调用的墙钟耗时和块数通过 getter 读取。
+ * setBatchTiles(true) 时改为在一个检测器上用 {@link YoloDetector#detectBatch} 批量推理全部块。
+ */
+public class TiledDetector {
+
+    private static final String TAG = "VISION_DEBUG";
+
+    private final DetectorPool pool;
+    private final ExecutorService tileExecutor;
+    private final NmsEngine mergeNms = new NmsEngine(256).setClassAware(true);
+
+    private int tileSize = 640;
+    private float overlap = 0.2f;
+    private int maxTilesPerSide = 4;
+    private boolean includeFullFrame = true;
+    private float mergeIouThreshold = 0.5f;
+    private boolean batchTiles = false;
+
+    private volatile long lastWallTimeMs;
+    private volatile int lastTileCount;
+
+    /**
+     * @param parallelism 同时推理的块数 (超过池大小时多出的任务会排队等检测器)
+     */
+    public TiledDetector(DetectorPool pool, int parallelism) {
+        this.pool = pool;
+        this.tileExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+    }
+
+    public TiledDetector setTileSize(int tileSize) { this.tileSize = tileSize; return this; }
+
+    public TiledDetector setOverlap(float overlap) { this.overlap = overlap; return this; }
+
+    public TiledDetector setMaxTilesPerSide(int maxTilesPerSide) { this.maxTilesPerSide = maxTilesPerSide; return this; }
+
+    /** 是否额外对整张图推理一次 (大物体可能被切碎) */
+    public TiledDetector setIncludeFullFrame(boolean includeFullFrame) { this.includeFullFrame = includeFullFrame; return this; }
+
+    public TiledDetector setMergeIouThreshold(float iouThreshold) { this.mergeIouThreshold = iouThreshold; return this; }
+
+    /** true = 全部块打包成 [N, H, W, 3] 在一个检测器上推理，而不是多个检测器并行 */
+    public TiledDetector setBatchTiles(boolean batchTiles) { this.batchTiles = batchTiles; return this; }
+
+    /** 最近一次 detect() 的墙钟耗时 */
+    public long getLastWallTimeMs() { return lastWallTimeMs; }
+
+    /** 最近一次 detect() 推理的块数 (含整图) */
+    public int getLastTileCount() { return lastTileCount; }
+
+    /**
+     * 分块检测整张图
+     *
+     * @param timeoutMs 每块等待检测器的超时
+     * @return 整图归一化坐标下的结果，置信度从高到低
+     * @throws TimeoutException 有块等不到检测器或检测器还在加载 (与"没有物体"区分开)
+     */
+    public List<YoloDetector.Result> detect(Bitmap bitmap, long timeoutMs)
+            throws InterruptedException, TimeoutException {
+        long start = SystemClock.elapsedRealtime();
+
+        float[] tiles = TileLayout.plan(bitmap.getWidth(), bitmap.getHeight(), tileSize, overlap, maxTilesPerSide);
+        int tileCount = TileLayout.tileCount(tiles);
+        List<RectF> regions = new ArrayList<>(tileCount + 1);
+        if (tileCount == 1) {
+            // 整张图不超过一块：就是普通推理
+            regions.add(null);
+        } else {
+            if (includeFullFrame) regions.add(null);
+            for (int t = 0; t < tileCount; t++) {
+                regions.add(new RectF(tiles[t * 4], tiles[t * 4 + 1], tiles[t * 4 + 2], tiles[t * 4 + 3]));
+            }
+        }
+
+        List<YoloDetector.Result> all = batchTiles && regions.size() > 1
+                ? detectBatched(bitmap, regions, timeoutMs)
+                : detectParallel(bitmap, regions, timeoutMs);
+
+        List<YoloDetector.Result> merged = regions.size() == 1 ? all : merge(all);
+
+        lastTileCount = regions.size();
+        lastWallTimeMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, "TiledDetector: " + bitmap.getWidth() + "x" + bitmap.getHeight() + ", "
+                + lastTileCount + " tiles" + (batchTiles ? " (batched)" : "") + ", " + all.size() + " -> " + merged.size()
+                + " boxes, " + lastWallTimeMs + " ms");
+        return merged;
+    }
+
+    private List<YoloDetector.Result> detectParallel(Bitmap bitmap, List<RectF> regions, long timeoutMs)
+            throws InterruptedException, TimeoutException {
+        // 【并行】每块借一个检测器
+        List<Future<List<YoloDetector.Result>>> futures = new ArrayList<>(regions.size());
+        for (RectF region : regions) {
+            futures.add(tileExecutor.submit(() -> detectRegion(bitmap, region, timeoutMs)));
+        }
+        List<YoloDetector.Result> all = new ArrayList<>();
+        try {
+            for (Future<List<YoloDetector.Result>> future : futures) {
+                all.addAll(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                for (Future<?> future : futures) future.cancel(true);
+                throw (TimeoutException) e.getCause();
+            }
+            Log.e(TAG, "TiledDetector: tile failed", e.getCause());
+        } catch (InterruptedException e) {
+            for (Future<?> future : futures) future.cancel(true);
+            throw e;
+        }
+        return all;
+    }
+
+    /**
+     * 【批量】借一个检测器，全部块一次 (或按 maxBatchSize 分几次) 推理
+     */
+    private List<YoloDetector.Result> detectBatched(Bitmap bitmap, List<RectF> regions, long timeoutMs)
+            throws InterruptedException, TimeoutException {
+        YoloDetector detector = pool.acquireOrThrow(timeoutMs);
+        try {
+            DetectorPool.awaitReady(detector, timeoutMs);
+            List<YoloDetector.Result> all = new ArrayList<>();
+            for (List<YoloDetector.Result> tile : detector.detectBatch(Collections.nCopies(regions.size(), bitmap), regions)) {
+                all.addAll(tile);
+            }
+            return all;
+        } finally {
+            pool.release(detector);
+        }
+    }
+
+    private List<YoloDetector.Result> detectRegion(Bitmap bitmap, RectF region, long timeoutMs)
+            throws InterruptedException, TimeoutException {
+        YoloDetector detector = pool.acquireOrThrow(timeoutMs);
+        try {
+            DetectorPool.awaitReady(detector, timeoutMs);
+            detector.setRegionOfInterest(region);
+            return detector.detect(bitmap);
+        } finally {
+            detector.setRegionOfInterest(null);
+            pool.release(detector);
+        }
+    }
+
+    /**
+     * 跨块 NMS：重叠区域里同一物体会被相邻两块各检测一次
+     */
+    private synchronized List<YoloDetector.Result> merge(List<YoloDetector.Result> all) {
+        int n = all.size();
+        float[] boxes = new float[n * 4];
+        float[] scores = new float[n];
+        int[] classIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            YoloDetector.Result r = all.get(i);
+            RectF rect = r.getRect();
+            boxes[i * 4] = rect.left;
+            boxes[i * 4 + 1] = rect.top;
+            boxes[i * 4 + 2] = rect.right;
+            boxes[i * 4 + 3] = rect.bottom;
+            scores[i] = r.getScore();
+            classIds[i] = r.getClassIndex();
+        }
+        int keep = mergeNms.setIouThreshold(mergeIouThreshold).run(boxes, scores, classIds, n);
+        List<YoloDetector.Result> merged = new ArrayList<>(keep);
+        for (int k = 0; k < keep; k++) {
+            merged.add(all.get(mergeNms.getKeptIndex(k)));
+        }
+        return merged;
+    }
+
+    public void close() {
+        tileExecutor.shutdownNow();
+    }
+}
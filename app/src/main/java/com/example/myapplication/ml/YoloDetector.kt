@@ -11,16 +11,23 @@ import org.tensorflow.lite.Interpreter
 import java.io.FileInputStream
 import java.nio.ByteBuffer
 import java.nio.ByteOrder
+import java.nio.FloatBuffer
 import java.nio.channels.FileChannel
-import kotlin.math.max
-import kotlin.math.min
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 
-class YoloDetector(
+class YoloDetector @JvmOverloads constructor(
     private val context: Context,
     private val modelPath: String,
     private val labelsPath: String,
     private val inputSize: Int = 640,
-    private val numThreads: Int = 4
+    // AUTO_THREADS = 使用本机调优出的线程数 / XNNPACK 配置；还没调优时用默认配置，后台调优下次生效 (见 InterpreterProfiles)
+    private val numThreads: Int = AUTO_THREADS,
+    // true = 在后台线程加载模型，构造函数立即返回，通过 getReadiness() 得知何时可用
+    private val asyncInit: Boolean = false,
+    // 加载完成后用全零输入空跑几次推理，预热内核和内存分配
+    private val warmupRuns: Int = 1
 ) {
 
     private var interpreter: Interpreter? = null
@@ -33,21 +40,186 @@ class YoloDetector(
     private var isOutputTransposed = false
     private var isModelNCHW = false
     private var isInt8 = false
+    private var isInputSigned = false
+
+    // 全整型量化模型的输出：直接按量化值解码 (见 YoloOutputDecoder.decodeQuantized)
+    private var isOutputQuantized = false
+    private var isOutputUnsigned = false
+    private var outputScale = 1f
+    private var outputZeroPoint = 0
 
     // =========================================================================
     // 【关键优化】预分配内存区
     // 避免在 detect() 循环中重复创建对象，防止内存抖动(GC)导致的卡顿
     // =========================================================================
-    private lateinit var inputBuffer: ByteBuffer
+    private lateinit var defaultSlot: InputSlot
     private lateinit var outputBuffer: ByteBuffer
-    private lateinit var intValues: IntArray
+    private lateinit var outputFloats: FloatBuffer
+    private lateinit var decoder: YoloOutputDecoder
+    // 解码器按哪个输入边长归一化坐标
+    private var decoderInputSize = 0
 
     // 日志限流（避免 Logcat 刷屏）
     private var lastLogTime = 0L
 
+    // =========================================================================
+    // 【动态分辨率】
+    // targetInputSize：之后的预处理按这个边长写入 (由策略在推理线程更新)
+    // activeInputSize：解释器当前的输入边长，推理时如果 slot 的边长与之不同才 resizeInput
+    // =========================================================================
+    @Volatile
+    private var targetInputSize = inputSize
+    private var activeInputSize = inputSize
+    @Volatile
+    private var resolutionPolicy: ResolutionPolicy? = null
+
+    // =========================================================================
+    // 【ROI 模式】只把正向画面中的这个区域 [left, top, right, bottom] (0~1) 送进模型
+    // 为 null 时处理整帧；结果坐标始终映射回整帧的归一化坐标
+    // =========================================================================
+    @Volatile
+    private var regionOfInterest: FloatArray? = null
+
+    // =========================================================================
+    // 【课程类别】argmax 只扫描这些类别通道，其余类别不会被报出来
+    // 调用方给的是标签名 (模型可能还在后台加载)，推理线程上再按 labels 解析成下标；
+    // 切换只是换一个引用，不需要重新加载模型
+    // =========================================================================
+    @Volatile
+    private var activeClassNames: Set<String>? = null
+    private var resolvedClassNames: Set<String>? = null
+    private var activeClassIds: IntArray? = null
+
+    // =========================================================================
+    // 【并行解码】interpreter.run 返回后其它核空闲，8400 个 anchor 分段并行扫描
+    // 0 = 关闭；在推理线程上应用 (解码器随分辨率切换重建时也会带上)
+    // =========================================================================
+    @Volatile
+    private var requestedDecodeChunks = 0
+    private var parallelDecodeChunks = 0
+
+    // =========================================================================
+    // 【批量推理】一次 run() 处理 N 张图 (离线场景：相册导入、切片)
+    // 解释器输入临时切到 [N, H, W, 3]；infer() 发现批量维度不是 1 时再切回来
+    // 批量输入/输出区按最大张数分配一次，张数变化 (例如最后不满一批) 只换一个视图；
+    // 单张的输出区和解码器与批量维度无关，切换批量时不重建
+    // 模型批量维度固定 (resize 失败或输出批量不符) 时 batchSupported = false，之后逐张推理
+    // =========================================================================
+    private var activeBatchSize = 1
+    private var batchSupported = true
+    private var batchCapacity = 0
+    private var batchImageSize = 0
+    private var batchViewSize = 0
+    private var batchInputStorage: ByteBuffer? = null
+    private var batchOutputStorage: ByteBuffer? = null
+    private var batchInput: ByteBuffer? = null
+    private var batchOutput: ByteBuffer? = null
+    private var batchOutputFloats: FloatBuffer? = null
+    private var batchPreprocessors: Array<TensorPreprocessor> = emptyArray()
+    private val batchSource = BitmapRowSource()
+
+    /**
+     * 每次 run() 最多打包几张图 (640 输入时每张 float 张量约 4.9 MB)
+     */
+    @Volatile
+    var maxBatchSize = DEFAULT_MAX_BATCH
+
+    // =========================================================================
+    // 【异步初始化】就绪状态
+    // 未就绪前 detect() 直接返回空列表，相机帧被廉价地丢弃
+    // =========================================================================
+    @Volatile
+    var isReady = false
+        private set
+    @Volatile
+    private var closed = false
+    // 只保护 initializing / closed / isReady / interpreter 的交接，从不在持锁时加载模型
+    private val initLock = Any()
+    private var initializing = false
+    private val readiness = CompletableFuture<YoloDetector>()
+
     init {
+        if (asyncInit) {
+            initExecutor.execute { initialize() }
+        } else {
+            initialize()
+        }
+    }
+
+    /**
+     * 加载模型 + 预热；期间被 close() 时在这里收尾 (释放刚加载的解释器，以异常完成 readiness)
+     */
+    private fun initialize() {
+        synchronized(initLock) {
+            if (closed) {
+                readiness.completeExceptionally(IllegalStateException("检测器已关闭"))
+                return
+            }
+            initializing = true
+        }
+        val start = SystemClock.elapsedRealtime()
         initInterpreter()
         loadLabels()
+        val loaded = interpreter != null
+        if (loaded) {
+            warmUp()
+        }
+
+        var orphan: Interpreter? = null
+        var cancelled = false
+        synchronized(initLock) {
+            initializing = false
+            if (closed) {
+                cancelled = true
+                orphan = interpreter
+                interpreter = null
+            } else if (loaded) {
+                isReady = true
+            }
+        }
+        when {
+            cancelled -> {
+                orphan?.close()
+                Log.d(TAG, "检测器在加载期间被关闭，已释放")
+                readiness.completeExceptionally(IllegalStateException("检测器已关闭"))
+            }
+            loaded -> {
+                Log.d(TAG, "模型就绪，耗时 ${SystemClock.elapsedRealtime() - start} ms (含 $warmupRuns 次预热)")
+                readiness.complete(this)
+            }
+            else -> readiness.completeExceptionally(IllegalStateException("模型加载失败: $modelPath"))
+        }
+    }
+
+    /**
+     * 用全零输入空跑推理：首次 invoke 时的内核选择、内存分配都在这里完成，而不是落在第一帧上
+     */
+    private fun warmUp() {
+        for (i in 0 until warmupRuns) {
+            // 已被关闭就不必再预热
+            if (closed) return
+            infer(defaultSlot)
+        }
+    }
+
+    /**
+     * 就绪时完成；模型加载失败时以异常完成
+     */
+    fun getReadiness(): CompletableFuture<YoloDetector> = readiness
+
+    /**
+     * 阻塞等待就绪 (后台线程使用)
+     *
+     * @return 是否在超时前就绪
+     */
+    fun awaitReady(timeoutMs: Long): Boolean {
+        if (isReady) return true
+        return try {
+            readiness.get(timeoutMs, TimeUnit.MILLISECONDS)
+            isReady
+        } catch (e: Exception) {
+            false
+        }
     }
 
     private fun initInterpreter() {
@@ -60,7 +232,13 @@ class YoloDetector(
             val mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength)
 
             val options = Interpreter.Options()
-            options.setNumThreads(numThreads)
+            if (numThreads > 0) {
+                options.setNumThreads(numThreads)
+            } else {
+                val profile = InterpreterProfiles.resolve(context, modelPath, mappedByteBuffer, declaredLength)
+                InterpreterProfiles.apply(options, profile)
+                Log.d(TAG, "解释器配置: $profile")
+            }
             interpreter = Interpreter(mappedByteBuffer, options)
 
             // 1. 检查输入 Tensor 格式
@@ -77,6 +255,7 @@ class YoloDetector(
             }
             if (inputDataType == DataType.UINT8 || inputDataType == DataType.INT8) {
                 isInt8 = true
+                isInputSigned = inputDataType == DataType.INT8
                 Log.wtf(TAG, "检测到量化模型 (Int8/Uint8)")
             }
 
@@ -84,31 +263,21 @@ class YoloDetector(
             val outputTensor = interpreter?.getOutputTensor(0)
             val shape = outputTensor?.shape()
             Log.wtf(TAG, "!!! 模型输出详情 !!! Shape: ${shape?.contentToString()}, Type: ${outputTensor?.dataType()}")
-
-            if (shape != null && shape.size == 3) {
-                // 自动判断输出维度是 [1, 84, 8400] 还是 [1, 8400, 84]
-                if (shape[1] < shape[2]) {
-                    outputChannels = shape[1]
-                    outputAnchors = shape[2]
-                    isOutputTransposed = true // 需要转置读取
-                } else {
-                    outputAnchors = shape[1]
-                    outputChannels = shape[2]
-                    isOutputTransposed = false // 标准格式
-                }
+            val outputDataType = outputTensor?.dataType()
+            if (outputTensor != null && (outputDataType == DataType.UINT8 || outputDataType == DataType.INT8)) {
+                val params = outputTensor.quantizationParams()
+                isOutputQuantized = true
+                isOutputUnsigned = outputDataType == DataType.UINT8
+                outputScale = params.scale
+                outputZeroPoint = params.zeroPoint
+                Log.wtf(TAG, "检测到量化输出: scale=${params.scale}, zeroPoint=${params.zeroPoint}")
             }
 
             // =========================================================================
             // 【关键实现】一次性分配内存 (DirectBuffer 效率更高)
             // =========================================================================
-            val bytesPerChannel = if (isInt8) 1 else 4
-            inputBuffer = ByteBuffer.allocateDirect(1 * inputSize * inputSize * 3 * bytesPerChannel)
-            inputBuffer.order(ByteOrder.nativeOrder())
-
-            outputBuffer = ByteBuffer.allocateDirect(1 * outputChannels * outputAnchors * 4)
-            outputBuffer.order(ByteOrder.nativeOrder())
-
-            intValues = IntArray(inputSize * inputSize)
+            defaultSlot = InputSlot()
+            allocateOutput(shape, inputSize)
 
             fileInputStream.close()
             assetFileDescriptor.close()
@@ -119,6 +288,89 @@ class YoloDetector(
         }
     }
 
+    /**
+     * 按输出张量形状分配输出区和解码器 (初始化和切换输入分辨率时调用)
+     * 单张输出的形状和边长都没变 (例如只是批量维度变了) 时沿用现有的，不重新分配
+     */
+    private fun allocateOutput(shape: IntArray?, size: Int) {
+        var channels = outputChannels
+        var anchors = outputAnchors
+        var transposed = isOutputTransposed
+        if (shape != null && shape.size == 3) {
+            // 自动判断输出维度是 [1, 84, 8400] 还是 [1, 8400, 84]
+            if (shape[1] < shape[2]) {
+                channels = shape[1]
+                anchors = shape[2]
+                transposed = true // 需要转置读取
+            } else {
+                anchors = shape[1]
+                channels = shape[2]
+                transposed = false // 标准格式
+            }
+        }
+        if (::decoder.isInitialized && channels == outputChannels && anchors == outputAnchors
+            && transposed == isOutputTransposed && size == decoderInputSize
+        ) return
+        outputChannels = channels
+        outputAnchors = anchors
+        isOutputTransposed = transposed
+        decoderInputSize = size
+
+        outputBuffer = ByteBuffer.allocateDirect(1 * outputChannels * outputAnchors * outputBytesPerElement())
+        outputBuffer.order(ByteOrder.nativeOrder())
+        outputFloats = outputBuffer.asFloatBuffer()
+
+        // 解码器按当前边长归一化坐标，所以不论输入多大，Result 都是 0~1 的比例坐标，OverlayView 不受影响
+        // NMS 引擎沿用旧的，保留调用方设置过的策略
+        decoder = if (::decoder.isInitialized) {
+            YoloOutputDecoder(outputChannels, outputAnchors, size, isOutputTransposed, decoder.nmsEngine)
+        } else {
+            YoloOutputDecoder(outputChannels, outputAnchors, size, isOutputTransposed)
+        }
+        if (parallelDecodeChunks > 1) {
+            decoder.setParallelDecode(decodeExecutor, parallelDecodeChunks)
+        }
+    }
+
+    private fun inputFormat(): TensorPreprocessor.Format = when {
+        !isInt8 -> TensorPreprocessor.Format.FLOAT32
+        isInputSigned -> TensorPreprocessor.Format.INT8
+        else -> TensorPreprocessor.Format.UINT8
+    }
+
+    private fun outputBytesPerElement(): Int = if (isOutputQuantized) 1 else 4
+
+    /**
+     * 解码输出区中第 image 张图的结果 (单张推理时 image = 0)
+     */
+    private fun decodeOutput(buffer: ByteBuffer, floats: FloatBuffer, image: Int) {
+        applyActiveClasses()
+        val chunks = requestedDecodeChunks
+        if (chunks != parallelDecodeChunks) {
+            parallelDecodeChunks = chunks
+            decoder.setParallelDecode(if (chunks > 1) decodeExecutor else null, chunks)
+        }
+        val offset = image * decoder.outputLength
+        if (isOutputQuantized) {
+            decoder.decodeQuantized(buffer, offset, CONF_THRESHOLD, outputScale, outputZeroPoint, isOutputUnsigned)
+        } else {
+            decoder.decode(floats, offset, CONF_THRESHOLD)
+        }
+    }
+
+    /**
+     * 课程类别有变化时重新解析成下标并交给解码器 (解码器重建后也会在这里补上)
+     */
+    private fun applyActiveClasses() {
+        val names = activeClassNames
+        if (names !== resolvedClassNames) {
+            resolvedClassNames = names
+            activeClassIds = names?.let { wanted -> labels.indices.filter { labels[it] in wanted }.toIntArray() }
+            Log.d(TAG, "课程类别: ${activeClassIds?.size ?: labels.size} / ${labels.size}")
+        }
+        decoder.setActiveClasses(activeClassIds)
+    }
+
     private fun loadLabels() {
         try {
             labels = context.assets.open(labelsPath).bufferedReader().use { it.readLines() }
@@ -130,54 +382,81 @@ class YoloDetector(
     }
 
     fun detect(bitmap: Bitmap): List<Result> {
-        if (interpreter == null) return emptyList()
+        if (!isReady) return emptyList()
+        prepare(defaultSlot, bitmap)
+        return infer(defaultSlot)
+    }
+
+    /**
+     * 相机 YUV_420_888 帧直通版：颜色转换 + 旋转 + 下采样一遍写进输入张量，不产生任何 RGB 位图
+     * 参数直接取自 ImageProxy.getPlanes()，输出坐标与 detect(旋转后的 bitmap) 一致
+     */
+    fun detectYuv(
+        yPlane: ByteBuffer, uPlane: ByteBuffer, vPlane: ByteBuffer,
+        width: Int, height: Int,
+        yRowStride: Int, uvRowStride: Int, uvPixelStride: Int,
+        rotationDegrees: Int
+    ): List<Result> {
+        if (!isReady) return emptyList()
+        prepareYuv(defaultSlot, yPlane, uPlane, vPlane, width, height, yRowStride, uvRowStride, uvPixelStride, rotationDegrees)
+        return infer(defaultSlot)
+    }
+
+    // =========================================================================
+    // 【流水线接口】预处理和推理拆成两步，各自操作独立的 InputSlot
+    // 预处理只写 slot 自己的缓冲区，推理只读 slot + 使用解释器/输出区，
+    // 所以"帧 N+1 的预处理"和"帧 N 的推理"可以在两个线程上同时进行。
+    // 同一个 slot 不能同时被预处理和推理；infer() 本身不可重入。
+    // =========================================================================
+
+    /**
+     * 创建一份新的输入张量 (流水线双缓冲用)，模型尚未就绪时返回 null
+     */
+    fun createInputSlot(): InputSlot? = if (!isReady) null else InputSlot()
 
+    fun prepare(slot: InputSlot, bitmap: Bitmap) {
+        prepareBitmap(slot, bitmap, regionOfInterest)
+    }
+
+    private fun prepareBitmap(slot: InputSlot, bitmap: Bitmap, region: FloatArray?) {
+        slot.ensureSize(targetInputSize)
+        slot.applyRegion(region)
         // =========================================================================
         // 【关键实现 1】预处理：直接拉伸 (Stretch) 到 640x640
         // 移除了复杂的 Letterbox (黑边) 逻辑。
         // 虽然图像会变形，但 YOLO 鲁棒性很强，且这样可以利用全屏像素，实现“沉浸式”识别。
+        // 缩放 + 归一化 + 打包在 TensorPreprocessor 里一遍完成，不再创建中间位图
         // =========================================================================
-        val resizedBitmap = Bitmap.createScaledBitmap(bitmap, inputSize, inputSize, true)
-
-        // 重置指针，准备写入数据
-        inputBuffer.rewind()
-
-        // 获取像素数据 (复用 intValues 数组)
-        resizedBitmap.getPixels(intValues, 0, inputSize, 0, 0, inputSize, inputSize)
-
-        // 将像素填入 inputBuffer
-        if (isModelNCHW) {
-            // NCHW (R排完排G排B)
-            for (c in 0 until 3) {
-                for (i in 0 until inputSize * inputSize) {
-                    val pix = intValues[i]
-                    val channelValue = when(c) {
-                        0 -> (pix shr 16 and 0xFF)
-                        1 -> (pix shr 8 and 0xFF)
-                        else -> (pix and 0xFF)
-                    }
-                    if (isInt8) inputBuffer.put(channelValue.toByte())
-                    else inputBuffer.putFloat(channelValue / 255.0f)
-                }
-            }
-        } else {
-            // NHWC (RGB RGB RGB)
-            for (pix in intValues) {
-                val r = (pix shr 16 and 0xFF)
-                val g = (pix shr 8 and 0xFF)
-                val b = (pix and 0xFF)
-                if (isInt8) {
-                    inputBuffer.put(r.toByte()); inputBuffer.put(g.toByte()); inputBuffer.put(b.toByte())
-                } else {
-                    inputBuffer.putFloat(r / 255.0f); inputBuffer.putFloat(g / 255.0f); inputBuffer.putFloat(b / 255.0f)
-                }
-            }
-        }
+        slot.bitmapSource.bitmap = bitmap
+        slot.preprocessor.process(slot.bitmapSource, bitmap.width, bitmap.height)
+        slot.bitmapSource.bitmap = null
+    }
+
+    fun prepareYuv(
+        slot: InputSlot,
+        yPlane: ByteBuffer, uPlane: ByteBuffer, vPlane: ByteBuffer,
+        width: Int, height: Int,
+        yRowStride: Int, uvRowStride: Int, uvPixelStride: Int,
+        rotationDegrees: Int
+    ) {
+        slot.ensureSize(targetInputSize)
+        slot.applyRegion(regionOfInterest)
+        slot.yuvConverter.convert(
+            yPlane, uPlane, vPlane, width, height,
+            yRowStride, uvRowStride, uvPixelStride, rotationDegrees
+        )
+    }
+
+    fun infer(slot: InputSlot): List<Result> {
+        if (interpreter == null) return emptyList()
+        // 该 slot 按另一个分辨率预处理过 (或刚跑完批量推理)：先把解释器切到同样的输入尺寸
+        if ((slot.size != activeInputSize || activeBatchSize != 1) && !applyInputSize(slot.size)) return emptyList()
+        val startNanos = System.nanoTime()
 
         // 执行推理
         outputBuffer.rewind()
         try {
-            interpreter?.run(inputBuffer, outputBuffer)
+            interpreter?.run(slot.buffer, outputBuffer)
         } catch (e: Exception) {
             Log.e(TAG, "推理错误", e)
             return emptyList()
@@ -185,72 +464,22 @@ class YoloDetector(
         outputBuffer.rewind()
 
         // 4. 后处理 (Post-processing)
-        val results = ArrayList<Result>()
-        val confThreshold = 0.50f // 只显示置信度 > 50% 的结果
-        val iouThreshold = 0.45f
-
-        for (i in 0 until outputAnchors) {
-            var maxScore = 0f
-            var maxClassIndex = -1
-
-            // 寻找当前 Anchor 中得分最高的类别
-            for (j in 4 until outputChannels) {
-                val index = if (isOutputTransposed) (j * outputAnchors + i) else (i * outputChannels + j)
-                val score = outputBuffer.getFloat(index * 4)
-                if (score > maxScore) {
-                    maxScore = score
-                    maxClassIndex = j - 4
-                }
-            }
-
-            if (maxScore > confThreshold) {
-                // 读取坐标数据
-                val cxIndex = if (isOutputTransposed) (0 * outputAnchors + i) else (i * outputChannels + 0)
-                val cyIndex = if (isOutputTransposed) (1 * outputAnchors + i) else (i * outputChannels + 1)
-                val wIndex = if (isOutputTransposed) (2 * outputAnchors + i) else (i * outputChannels + 2)
-                val hIndex = if (isOutputTransposed) (3 * outputAnchors + i) else (i * outputChannels + 3)
-
-                val rawCx = outputBuffer.getFloat(cxIndex * 4)
-                val rawCy = outputBuffer.getFloat(cyIndex * 4)
-                val rawW = outputBuffer.getFloat(wIndex * 4)
-                val rawH = outputBuffer.getFloat(hIndex * 4)
-
-                // =========================================================================
-                // 【关键实现 2】坐标统一还原
-                // 无论模型输出是归一化(0~1)还是像素级(0~640)，这里统一转回像素级，方便后续处理
-                // =========================================================================
-                val cx = if (rawW <= 1.0f) rawCx * inputSize else rawCx
-                val cy = if (rawH <= 1.0f) rawCy * inputSize else rawCy
-                val w = if (rawW <= 1.0f) rawW * inputSize else rawW
-                val h = if (rawH <= 1.0f) rawH * inputSize else rawH
-
-                // =========================================================================
-                // 【关键实现 3】极简坐标映射 (全屏拉伸版)
-                // 因为图片是直接拉伸的，没有黑边。
-                // 所以：模型坐标(0~640) / inputSize(640) = 归一化坐标(0~1)
-                // 这个 0~1 的坐标，直接对应手机屏幕的 0%~100% 位置。
-                // =========================================================================
-                val rect = RectF(
-                    (cx - w / 2f) / inputSize,
-                    (cy - h / 2f) / inputSize,
-                    (cx + w / 2f) / inputSize,
-                    (cy + h / 2f) / inputSize
-                )
-
-                // 边界限制，防止画出屏幕外
-                rect.left = max(0f, min(1f, rect.left))
-                rect.top = max(0f, min(1f, rect.top))
-                rect.right = max(0f, min(1f, rect.right))
-                rect.bottom = max(0f, min(1f, rect.bottom))
-
-                if (rect.width() > 0 && rect.height() > 0) {
-                    results.add(Result(rect, maxClassIndex, labels.getOrElse(maxClassIndex) { "Unknown" }, maxScore))
-                }
-            }
+        // =========================================================================
+        // 【关键优化】解码与 NMS 全部在预分配的原始数组上完成
+        // 只有通过 NMS 的框才会创建 RectF / Result 对象
+        // =========================================================================
+        decodeOutput(outputBuffer, outputFloats, 0)
+        val keepCount = decoder.nms(IOU_THRESHOLD)
+        val nmsResults = collectResults(keepCount, slot.regionLeft, slot.regionTop, slot.regionRight, slot.regionBottom)
+        var topScore = 0f
+        for (r in nmsResults) {
+            if (r.score > topScore) topScore = r.score
         }
 
-        // NMS 非极大值抑制 (去除重叠框)
-        val nmsResults = nms(results, iouThreshold)
+        // 动态分辨率：按本帧耗时和置信度决定下一帧的输入边长
+        resolutionPolicy?.let {
+            targetInputSize = it.onFrame((System.nanoTime() - startNanos) / 1e6, topScore)
+        }
 
         // 简单的心跳日志 (每3秒打印一次，证明活着)
         if (nmsResults.isNotEmpty()) {
@@ -266,43 +495,402 @@ class YoloDetector(
         return nmsResults
     }
 
-    private fun nms(boxes: ArrayList<Result>, threshold: Float): List<Result> {
-        if (boxes.isEmpty()) return emptyList()
-        boxes.sortWith { o1, o2 -> o2.score.compareTo(o1.score) }
-        val selectedBoxes = ArrayList<Result>()
-        val isSuppressed = BooleanArray(boxes.size)
-        for (i in boxes.indices) {
-            if (isSuppressed[i]) continue
-            val boxA = boxes[i]
-            selectedBoxes.add(boxA)
-            for (j in i + 1 until boxes.size) {
-                if (isSuppressed[j]) continue
-                val boxB = boxes[j]
-                if (calculateIoU(boxA.rect, boxB.rect) > threshold) {
-                    isSuppressed[j] = true
+    /**
+     * 把解码器里幸存的框包装成 Result
+     * ROI 模式：模型看到的是裁剪区域，把 0~1 的区域内坐标映射回整帧
+     */
+    private fun collectResults(
+        keepCount: Int,
+        roiLeft: Float, roiTop: Float, roiRight: Float, roiBottom: Float
+    ): ArrayList<Result> {
+        val roiWidth = roiRight - roiLeft
+        val roiHeight = roiBottom - roiTop
+        val results = ArrayList<Result>(keepCount)
+        for (k in 0 until keepCount) {
+            val i = decoder.getKeptIndex(k)
+            val classIndex = decoder.getClassId(i)
+            val rect = RectF(
+                roiLeft + decoder.getLeft(i) * roiWidth,
+                roiTop + decoder.getTop(i) * roiHeight,
+                roiLeft + decoder.getRight(i) * roiWidth,
+                roiTop + decoder.getBottom(i) * roiHeight
+            )
+            results.add(Result(rect, classIndex, labels.getOrElse(classIndex) { "Unknown" }, decoder.getKeptScore(k)))
+        }
+        return results
+    }
+
+    // =========================================================================
+    // 【批量推理】
+    // =========================================================================
+
+    /**
+     * 批量检测：每 maxBatchSize 张图打包成一次 [N, H, W, 3] 推理，分摊每次 run() 的调度开销
+     * 固定使用构造时的 inputSize (离线场景不走动态分辨率)；模型不支持批量时自动退回逐张推理
+     *
+     * @param regions 与 bitmaps 一一对应的 ROI (0~1 归一化，元素为 null = 整张图)；为 null 时全部处理整张图
+     * @return 与 bitmaps 同序的结果列表，坐标含义与 detect() 相同
+     */
+    @JvmOverloads
+    fun detectBatch(bitmaps: List<Bitmap>, regions: List<RectF?>? = null): List<List<Result>> {
+        if (!isReady) return bitmaps.map { emptyList<Result>() }
+        val results = ArrayList<List<Result>>(bitmaps.size)
+        var start = 0
+        while (start < bitmaps.size) {
+            val n = minOf(maxBatchSize.coerceAtLeast(1), bitmaps.size - start)
+            val chunk = if (n > 1 && batchSupported) runBatch(bitmaps, regions, start, n) else null
+            if (chunk != null) {
+                results.addAll(chunk)
+            } else {
+                for (i in start until start + n) {
+                    prepareBitmap(defaultSlot, bitmaps[i], toRegionArray(regions?.get(i)))
+                    results.add(infer(defaultSlot))
                 }
             }
+            start += n
+        }
+        return results
+    }
+
+    /**
+     * @return 这 n 张图的结果；模型不支持批量时返回 null (调用方逐张推理)
+     */
+    private fun runBatch(bitmaps: List<Bitmap>, regions: List<RectF?>?, start: Int, n: Int): List<List<Result>>? {
+        val interp = interpreter ?: return null
+        if (n != activeBatchSize || activeInputSize != inputSize) {
+            try {
+                resizeInterpreter(interp, inputSize, n)
+                activeInputSize = inputSize
+                Log.d(TAG, "批量推理: 输入切换为 $n x $inputSize")
+            } catch (e: Exception) {
+                disableBatch(interp, e)
+                return null
+            }
+        }
+        ensureBatchBuffers(n)
+
+        // 每张图写进批量张量中属于自己的那一段
+        for (k in 0 until n) {
+            val bitmap = bitmaps[start + k]
+            val region = regions?.get(start + k)
+            val pre = batchPreprocessors[k]
+            if (region != null) pre.setRegion(region.left, region.top, region.right, region.bottom)
+            else pre.setRegion(0f, 0f, 1f, 1f)
+            batchSource.bitmap = bitmap
+            pre.process(batchSource, bitmap.width, bitmap.height)
+        }
+        batchSource.bitmap = null
+
+        val output = batchOutput!!
+        output.rewind()
+        try {
+            interp.run(batchInput, output)
+        } catch (e: Exception) {
+            disableBatch(interp, e)
+            return null
+        }
+
+        val floats = batchOutputFloats!!
+        val results = ArrayList<List<Result>>(n)
+        for (k in 0 until n) {
+            decodeOutput(output, floats, k)
+            val keepCount = decoder.nms(IOU_THRESHOLD)
+            val region = toRegionArray(regions?.get(start + k))
+            results.add(
+                if (region != null) collectResults(keepCount, region[0], region[1], region[2], region[3])
+                else collectResults(keepCount, 0f, 0f, 1f, 1f)
+            )
+        }
+        return results
+    }
+
+    /**
+     * 模型批量维度固定：记下来，之后逐张推理，并把解释器恢复到单张输入
+     */
+    private fun disableBatch(interp: Interpreter, cause: Exception) {
+        Log.w(TAG, "模型不支持批量推理 (输入形状签名 ${interp.getInputTensor(0).shapeSignature().contentToString()})，退回逐张推理", cause)
+        batchSupported = false
+        batchInputStorage = null
+        batchOutputStorage = null
+        batchInput = null
+        batchOutput = null
+        batchOutputFloats = null
+        batchPreprocessors = emptyArray()
+        batchCapacity = 0
+        batchViewSize = 0
+        try {
+            resizeInterpreter(interp, activeInputSize, 1)
+        } catch (restoreError: Exception) {
+            Log.wtf(TAG, "!!! 无法恢复单张输入 !!!", restoreError)
+        }
+    }
+
+    /**
+     * 批量输入/输出区按 max(n, maxBatchSize) 张一次分配，每张图一个写入自己那一段的预处理器
+     * 解释器要求缓冲区容量与张量大小完全一致，所以本次的 n 张用前 n 段的切片视图
+     */
+    private fun ensureBatchBuffers(n: Int) {
+        val imageBytes = inputSize * inputSize * 3 * (if (isInt8) 1 else 4)
+        val outputBytes = decoder.outputLength * outputBytesPerElement()
+        if (n > batchCapacity || inputSize != batchImageSize) {
+            val capacity = maxOf(n, maxBatchSize)
+            val input = ByteBuffer.allocateDirect(capacity * imageBytes).order(ByteOrder.nativeOrder())
+            batchPreprocessors = Array(capacity) { k ->
+                TensorPreprocessor(
+                    sliceOf(input, k * imageBytes, imageBytes), inputSize, inputSize,
+                    if (isModelNCHW) TensorPreprocessor.Layout.NCHW else TensorPreprocessor.Layout.NHWC,
+                    inputFormat(),
+                    TensorPreprocessor.Sampling.BILINEAR
+                )
+            }
+            batchInputStorage = input
+            batchOutputStorage = ByteBuffer.allocateDirect(capacity * outputBytes).order(ByteOrder.nativeOrder())
+            batchCapacity = capacity
+            batchImageSize = inputSize
+            batchViewSize = 0
+        }
+        if (n != batchViewSize) {
+            batchInput = sliceOf(batchInputStorage!!, 0, n * imageBytes)
+            val output = sliceOf(batchOutputStorage!!, 0, n * outputBytes)
+            batchOutput = output
+            batchOutputFloats = output.asFloatBuffer()
+            batchViewSize = n
+        }
+    }
+
+    private fun sliceOf(buffer: ByteBuffer, offset: Int, length: Int): ByteBuffer {
+        val view = buffer.duplicate()
+        view.position(offset)
+        view.limit(offset + length)
+        return view.slice().order(ByteOrder.nativeOrder())
+    }
+
+    // =========================================================================
+    // 【动态分辨率】运行时调整解释器输入尺寸
+    // =========================================================================
+
+    /**
+     * 开启 (传入策略) 或关闭 (传 null，恢复构造时的 inputSize) 动态分辨率
+     * 策略的各档边长都应能被模型接受 (YOLOv8 要求是 32 的倍数)
+     */
+    fun setAdaptiveResolution(policy: ResolutionPolicy?) {
+        resolutionPolicy = policy
+        targetInputSize = policy?.currentSize ?: inputSize
+    }
+
+    /**
+     * 开启 ROI 模式：之后的帧只处理正向画面中的 region (0~1 归一化坐标)，小物体被放大到整个输入张量
+     * 传 null 恢复整帧。结果坐标始终是整帧的归一化坐标，OverlayView 无需改动
+     */
+    fun setRegionOfInterest(region: RectF?) {
+        regionOfInterest = toRegionArray(region)
+    }
+
+    private fun toRegionArray(region: RectF?): FloatArray? = region?.let {
+        floatArrayOf(
+            it.left.coerceIn(0f, 1f), it.top.coerceIn(0f, 1f),
+            it.right.coerceIn(0f, 1f), it.bottom.coerceIn(0f, 1f)
+        )
+    }
+
+    /**
+     * 只识别这些类别 (labels.txt 中的名称)，例如厨房课只保留餐具和食物
+     * 传 null 恢复全部类别；之后的帧立即生效，不重新加载模型
+     */
+    fun setActiveClasses(classLabels: Collection<String>?) {
+        activeClassNames = classLabels?.toHashSet()
+    }
+
+    /**
+     * 开启 / 关闭并行解码 (只对浮点输出生效)
+     * 开启时按核数把 anchor 切成几段，扫描量太小 (例如只剩几个课程类别) 时解码器自动走串行
+     * 解码器先实测串行 / 并行的耗时，并行没有明显更快就一直走串行 (见 YoloOutputDecoder.ParallelVerdict)
+     * 并行与串行的输出完全一致
+     */
+    fun setParallelDecode(enabled: Boolean) {
+        requestedDecodeChunks = if (enabled) DECODE_WORKERS + 1 else 0
+    }
+
+    /**
+     * 之后的帧使用的输入边长
+     */
+    val currentInputSize: Int
+        get() = targetInputSize
+
+    /**
+     * 把解释器输入切换为 size x size，并按新的输出形状重新分配输出区和解码器
+     * 只在分辨率真正变化时调用；模型不支持时关闭动态分辨率并恢复原尺寸
+     */
+    private fun applyInputSize(size: Int): Boolean {
+        val interp = interpreter ?: return false
+        return try {
+            resizeInterpreter(interp, size)
+            Log.d(TAG, "输入分辨率切换: ${activeInputSize} -> $size")
+            activeInputSize = size
+            true
+        } catch (e: Exception) {
+            Log.e(TAG, "模型不支持输入尺寸 $size，关闭动态分辨率", e)
+            resolutionPolicy = null
+            targetInputSize = inputSize
+            try {
+                resizeInterpreter(interp, activeInputSize)
+            } catch (restoreError: Exception) {
+                Log.wtf(TAG, "!!! 无法恢复输入尺寸 !!!", restoreError)
+            }
+            false
         }
-        return selectedBoxes
     }
 
-    private fun calculateIoU(a: RectF, b: RectF): Float {
-        val intersectionLeft = max(a.left, b.left)
-        val intersectionTop = max(a.top, b.top)
-        val intersectionRight = min(a.right, b.right)
-        val intersectionBottom = min(a.bottom, b.bottom)
-        val intersectionArea = max(0f, intersectionRight - intersectionLeft) * max(0f, intersectionBottom - intersectionTop)
-        val areaA = (a.right - a.left) * (a.bottom - a.top)
-        val areaB = (b.right - b.left) * (b.bottom - b.top)
-        val unionArea = areaA + areaB - intersectionArea
-        return if (unionArea <= 0) 0f else intersectionArea / unionArea
+    private fun resizeInterpreter(interp: Interpreter, size: Int, batch: Int = 1) {
+        interp.resizeInput(0, if (isModelNCHW) intArrayOf(batch, 3, size, size) else intArrayOf(batch, size, size, 3))
+        interp.allocateTensors()
+        val shape = interp.getOutputTensor(0).shape()
+        // 有的导出模型内部写死了 reshape 形状：输入能 resize，输出批量维度却还是 1
+        if (shape.isEmpty() || shape[0] != batch) {
+            throw IllegalStateException("输出形状 ${shape.contentToString()} 与批量 $batch 不符")
+        }
+        allocateOutput(shape, size)
+        activeBatchSize = batch
     }
 
+    /**
+     * NMS 策略 (GRID 邻域搜索 / Top-K / 按类别 / Soft-NMS)，模型加载失败时为 null
+     */
+    val nmsEngine: NmsEngine?
+        get() = if (::decoder.isInitialized) decoder.nmsEngine else null
+
+    /**
+     * 释放解释器，从不阻塞 (ModelRegistry.onTrimMemory 会在主线程上调用)：
+     * 后台加载 / 预热还在进行时只做标记，由 initialize() 结束时释放
+     */
     fun close() {
-        interpreter?.close()
-        interpreter = null
+        var toClose: Interpreter? = null
+        synchronized(initLock) {
+            closed = true
+            isReady = false
+            if (!initializing) {
+                toClose = interpreter
+                interpreter = null
+            }
+        }
+        toClose?.close()
+    }
+
+
+    /**
+     * 一份独立的模型输入张量，连同写入它的预处理器
+     */
+    inner class InputSlot internal constructor() {
+        internal var size = 0
+            private set
+        internal lateinit var buffer: ByteBuffer
+            private set
+        internal lateinit var preprocessor: TensorPreprocessor
+            private set
+        private var converter: YuvTensorConverter? = null
+
+        internal val bitmapSource = BitmapRowSource()
+
+        internal val yuvConverter: YuvTensorConverter
+            get() = converter ?: YuvTensorConverter(preprocessor).also {
+                it.setRegion(regionLeft, regionTop, regionRight, regionBottom)
+                converter = it
+            }
+
+        // 写入这份张量时使用的区域 (推理时据此把坐标映射回整帧)
+        internal var regionLeft = 0f
+            private set
+        internal var regionTop = 0f
+            private set
+        internal var regionRight = 1f
+            private set
+        internal var regionBottom = 1f
+            private set
+
+        init {
+            ensureSize(targetInputSize)
+        }
+
+        /**
+         * 边长变化时才重新分配缓冲区 (动态分辨率)
+         */
+        internal fun ensureSize(newSize: Int) {
+            if (newSize == size) return
+            size = newSize
+            // 【关键实现】一次性分配内存 (DirectBuffer 效率更高)
+            buffer = ByteBuffer.allocateDirect(1 * newSize * newSize * 3 * (if (isInt8) 1 else 4))
+                .order(ByteOrder.nativeOrder())
+            preprocessor = TensorPreprocessor(
+                buffer, newSize, newSize,
+                if (isModelNCHW) TensorPreprocessor.Layout.NCHW else TensorPreprocessor.Layout.NHWC,
+                inputFormat(),
+                TensorPreprocessor.Sampling.BILINEAR
+            )
+            preprocessor.setRegion(regionLeft, regionTop, regionRight, regionBottom)
+            converter = null
+        }
+
+        internal fun applyRegion(region: FloatArray?) {
+            regionLeft = region?.get(0) ?: 0f
+            regionTop = region?.get(1) ?: 0f
+            regionRight = region?.get(2) ?: 1f
+            regionBottom = region?.get(3) ?: 1f
+            preprocessor.setRegion(regionLeft, regionTop, regionRight, regionBottom)
+            converter?.setRegion(regionLeft, regionTop, regionRight, regionBottom)
+        }
+    }
+
+    /**
+     * 按行从 Bitmap 读取像素 (只读取采样用到的源图行，不复制整张图)
+     */
+    internal class BitmapRowSource : TensorPreprocessor.RowSource {
+        var bitmap: Bitmap? = null
+
+        override fun readRow(y: Int, out: IntArray) {
+            val bmp = bitmap ?: return
+            bmp.getPixels(out, 0, bmp.width, 0, y, bmp.width, 1)
+        }
     }
 
+    companion object {
+        // numThreads 传这个值表示自动调优
+        const val AUTO_THREADS = 0
+
+        // Result.trackId：未经跟踪
+        const val NO_TRACK = -1
+
+        // 批量推理默认每次最多打包的张数
+        const val DEFAULT_MAX_BATCH = 4
+
+        // 只显示置信度 > 50% 的结果
+        private const val CONF_THRESHOLD = 0.50f
+        private const val IOU_THRESHOLD = 0.45f
+
+        // 并行解码的工作线程数 (调用线程自己也处理一段)，单核设备上为 0 = 不并行
+        private val DECODE_WORKERS = minOf(3, Runtime.getRuntime().availableProcessors() - 1).coerceAtLeast(0)
+
+        // 所有检测器共用的解码工作线程 (守护线程，首次开启并行解码时才创建)
+        private val decodeExecutor by lazy {
+            Executors.newFixedThreadPool(DECODE_WORKERS.coerceAtLeast(1)) { r ->
+                Thread(r, "YoloDecode").apply { isDaemon = true }
+            }
+        }
+
+        // 所有检测器共用的后台初始化线程 (模型依次加载，避免同时争抢 IO)
+        // 守护线程：不会因为还有模型在加载而拖住进程退出
+        private val initExecutor = Executors.newSingleThreadExecutor { r ->
+            Thread(r, "YoloInit").apply { isDaemon = true }
+        }
+    }
 
-    data class Result(val rect: RectF, val classIndex: Int, val label: String, val score: Float)
+    /**
+     * @param trackId 跟踪器分配的稳定 ID (见 DetectionTracker)，未经跟踪的检测结果为 NO_TRACK
+     */
+    data class Result @JvmOverloads constructor(
+        val rect: RectF,
+        val classIndex: Int,
+        val label: String,
+        val score: Float,
+        val trackId: Int = NO_TRACK
+    )
 }
\ No newline at end of file
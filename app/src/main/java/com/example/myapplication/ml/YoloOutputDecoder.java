@@ -0,0 +1,631 @@
+package com.example.myapplication.ml;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * YOLOv8 输出解码引擎 (零分配版)
+ *
+ * 1. 一次性把 [84 x 8400] 输出整块拷贝到复用的 float[]，不再逐个 getFloat(index * 4)
+ * 2. 候选框按"结构体数组"(SoA) 存放在预分配的原始类型数组里 (boxes / scores / classIds)
+ * 3. NMS 由 NmsEngine 直接在原始数组上完成，只有幸存的框才由调用方包装成 Result 对象
+ * 4. 全整型量化模型 (int8 / uint8 输出) 直接在原始量化值上做 argmax，阈值预先量化，
+ *    只有过阈值的候选才反量化框坐标 (见 {@link #decodeQuantized})
+ * 5. 可以只扫描一部分类别通道 (课程用到的类别，见 {@link #setActiveClasses})
+ * 6. 多核设备上可以把 anchor 范围切段并行扫描，结果与串行完全一致；先在本机实测，更快才保留 (见 {@link #setParallelDecode})
+ *
+ * 该类不依赖 android.* ，可以直接在桌面 JVM 上做单元测试和基准测试。
+ * 非线程安全：每个 YoloDetector 持有自己的一份实例 (并行解码的工作线程只在 decode 调用期间使用)。
+ */
+public class YoloOutputDecoder {
+
+    private final int numChannels;
+    private final int numAnchors;
+    private final int inputSize;
+    private final boolean transposed;
+
+    // 复用的输出拷贝区
+    private final float[] output;
+
+    // =========================================================================
+    // 【SoA】候选框存储区，容量 = anchor 数量 (最坏情况每个 anchor 都过阈值)
+    // boxes 按 [left, top, right, bottom] 四个一组排列，坐标已归一化到 0~1
+    // =========================================================================
+    private final float[] boxes;
+    private final float[] scores;
+    private final int[] classIds;
+    private final CandidateSink main;
+    private int candidateCount;
+
+    // 通道优先路径的逐 anchor 运行最大值 / argmax (仅转置布局分配)
+    private final float[] anchorMaxScore;
+    private final int[] anchorArgMax;
+
+    // 量化输出的拷贝区和逐 anchor 最大量化值 (首次 decodeQuantized 时分配)
+    private byte[] quantizedOutput;
+    private int[] anchorMaxQuantized;
+    private int[] anchorArgMaxQuantized;
+
+    private final NmsEngine nmsEngine;
+
+    // 参与 argmax 的类别下标 (升序，去重)；null = 全部类别
+    private int[] activeClasses;
+    private int[] activeClassesSource;
+
+    public YoloOutputDecoder(int numChannels, int numAnchors, int inputSize, boolean transposed) {
+        this(numChannels, numAnchors, inputSize, transposed, new NmsEngine(numAnchors));
+    }
+
+    /**
+     * 复用已有的 NmsEngine (及其策略配置)，例如输入分辨率切换后重建解码器时
+     */
+    public YoloOutputDecoder(int numChannels, int numAnchors, int inputSize, boolean transposed,
+                             NmsEngine nmsEngine) {
+        this.numChannels = numChannels;
+        this.numAnchors = numAnchors;
+        this.inputSize = inputSize;
+        this.transposed = transposed;
+
+        output = new float[numChannels * numAnchors];
+        boxes = new float[numAnchors * 4];
+        scores = new float[numAnchors];
+        classIds = new int[numAnchors];
+        main = new CandidateSink(boxes, scores, classIds);
+        anchorMaxScore = transposed ? new float[numAnchors] : null;
+        anchorArgMax = transposed ? new int[numAnchors] : null;
+        this.nmsEngine = nmsEngine;
+    }
+
+    /**
+     * 只让这些类别参与 argmax，其余通道完全不读 (80 类中只保留 10 类时扫描量约为 1/8)
+     * 不在列表里的物体不会被当成"得分最高的类别"报出来，也不会挤掉列表里的类别
+     *
+     * @param classIds 类别下标 (对应 labels.txt 的行号)，越界的忽略；null 恢复全部类别
+     */
+    public void setActiveClasses(int[] classIds) {
+        if (classIds == activeClassesSource) return;
+        activeClassesSource = classIds;
+        if (classIds == null) {
+            activeClasses = null;
+            return;
+        }
+        // 升序去重：保持"通道升序、严格大于"的并列规则与全量扫描一致
+        final int numClasses = numChannels - 4;
+        boolean[] seen = new boolean[numClasses];
+        int count = 0;
+        for (int c : classIds) {
+            if (c >= 0 && c < numClasses && !seen[c]) {
+                seen[c] = true;
+                count++;
+            }
+        }
+        int[] sorted = new int[count];
+        for (int c = 0, n = 0; c < numClasses; c++) {
+            if (seen[c]) sorted[n++] = c;
+        }
+        activeClasses = sorted;
+    }
+
+    /** 当前参与 argmax 的类别 (升序)；null = 全部 */
+    public int[] getActiveClasses() {
+        return activeClasses == null ? null : activeClasses.clone();
+    }
+
+    /**
+     * 从模型输出中解码候选框
+     *
+     * @param source        输出张量的 FloatBuffer 视图 (会被 rewind 后整块读取)
+     * @param confThreshold 置信度阈值，严格大于才保留
+     * @return 候选框数量
+     */
+    public int decode(FloatBuffer source, float confThreshold) {
+        return decode(source, 0, confThreshold);
+    }
+
+    /**
+     * 从批量输出 [N, 84, 8400] 中解码第 offset / (84 * 8400) 张图
+     *
+     * @param offset 该图输出在 source 中的起始下标 (以 float 计)
+     */
+    public int decode(FloatBuffer source, int offset, float confThreshold) {
+        source.position(offset);
+        source.get(output, 0, output.length);
+        source.rewind();
+        return decode(output, confThreshold);
+    }
+
+    /**
+     * 量化输出 (int8 / uint8) 解码：按原始量化值比较，不反量化整张输出
+     *
+     * 反量化公式 real = (q - zeroPoint) * scale 在 scale > 0 时单调，所以
+     * real > confThreshold  等价于  q > qThreshold，argmax 也可以直接比较 q。
+     * 比较规则 (严格大于、通道升序、初始值 0) 与浮点路径一致，结果等同于先反量化再 decode()。
+     *
+     * @param source   输出张量 (单张图或批量输出)
+     * @param offset   该图输出在 source 中的起始字节
+     * @param unsigned true = uint8，false = int8
+     */
+    public int decodeQuantized(ByteBuffer source, int offset, float confThreshold,
+                               float scale, int zeroPoint, boolean unsigned) {
+        final int length = output.length;
+        if (quantizedOutput == null) {
+            quantizedOutput = new byte[length];
+            anchorMaxQuantized = new int[numAnchors];
+            anchorArgMaxQuantized = new int[numAnchors];
+        }
+        ByteBuffer view = source.duplicate();
+        view.position(offset);
+        view.get(quantizedOutput, 0, length);
+
+        main.count = 0;
+        final byte[] data = quantizedOutput;
+        final int mask = unsigned ? 0xFF : -1;
+        final int qThreshold = quantizeThreshold(confThreshold, scale, zeroPoint);
+        final int[] best = anchorMaxQuantized;
+        final int[] bestClass = anchorArgMaxQuantized;
+        // 初始值 = 0 分对应的量化值，与浮点路径的 maxScore = 0 一致
+        Arrays.fill(best, zeroPoint);
+        Arrays.fill(bestClass, -1);
+
+        final int[] active = activeClasses;
+        final int classCount = active != null ? active.length : numChannels - 4;
+        if (transposed) {
+            for (int c = 0; c < classCount; c++) {
+                final int classIndex = active != null ? active[c] : c;
+                final int rowOffset = (classIndex + 4) * numAnchors;
+                for (int i = 0; i < numAnchors; i++) {
+                    int q = data[rowOffset + i] & mask;
+                    if (q > best[i]) {
+                        best[i] = q;
+                        bestClass[i] = classIndex;
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < numAnchors; i++) {
+                final int base = i * numChannels + 4;
+                for (int c = 0; c < classCount; c++) {
+                    final int classIndex = active != null ? active[c] : c;
+                    int q = data[base + classIndex] & mask;
+                    if (q > best[i]) {
+                        best[i] = q;
+                        bestClass[i] = classIndex;
+                    }
+                }
+            }
+        }
+
+        // 只有幸存的候选才反量化
+        for (int i = 0; i < numAnchors; i++) {
+            if (best[i] > qThreshold) {
+                addCandidate(
+                        (((data[index(i, 0)] & mask) - zeroPoint) * scale),
+                        (((data[index(i, 1)] & mask) - zeroPoint) * scale),
+                        (((data[index(i, 2)] & mask) - zeroPoint) * scale),
+                        (((data[index(i, 3)] & mask) - zeroPoint) * scale),
+                        (best[i] - zeroPoint) * scale, bestClass[i], main);
+            }
+        }
+        return candidateCount = main.count;
+    }
+
+    /**
+     * 最大的 q，使 (q - zeroPoint) * scale <= confThreshold (与反量化后的浮点比较完全一致)
+     */
+    static int quantizeThreshold(float confThreshold, float scale, int zeroPoint) {
+        int q = (int) Math.floor(confThreshold / scale) + zeroPoint;
+        while ((q + 1 - zeroPoint) * scale <= confThreshold) q++;
+        while ((q - zeroPoint) * scale > confThreshold) q--;
+        return q;
+    }
+
+    /** 单张图的输出长度 (float 个数) */
+    public int getOutputLength() { return output.length; }
+
+    /**
+     * 直接从 float[] 解码 (布局与模型输出一致)，主要给测试和基准用
+     * [1, 84, 8400] 转置布局走通道优先路径，[1, 8400, 84] 标准布局走 anchor 优先路径
+     * 开启并行解码且扫描量足够大时，anchor 范围切成几段并行扫描 (见 {@link #setParallelDecode})
+     */
+    public int decode(float[] data, float confThreshold) {
+        if (chunks != null && parallelVerdict != ParallelVerdict.SERIAL
+                && (long) numAnchors * activeClassCount() >= minParallelWork) {
+            if (parallelVerdict == ParallelVerdict.CALIBRATING) {
+                return decodeCalibrating(data, confThreshold);
+            }
+            lastDecodeParallel = true;
+            return decodeParallel(data, confThreshold);
+        }
+        lastDecodeParallel = false;
+        return decodeSerial(data, confThreshold);
+    }
+
+    private int decodeSerial(float[] data, float confThreshold) {
+        return transposed ? decodeChannelMajor(data, confThreshold) : decodeAnchorMajor(data, confThreshold);
+    }
+
+    private int activeClassCount() {
+        return activeClasses != null ? activeClasses.length : numChannels - 4;
+    }
+
+    /**
+     * Anchor 优先路径：逐个 anchor 扫描它的全部类别通道
+     * 对标准布局是顺序访问；对转置布局每次读取都跨 8400 个 float，基准测试中作对照组
+     */
+    int decodeAnchorMajor(float[] data, float confThreshold) {
+        main.count = 0;
+        scanAnchorMajor(data, confThreshold, 0, numAnchors, main);
+        return candidateCount = main.count;
+    }
+
+    /**
+     * 通道优先路径 (仅限转置布局 [1, 84, 8400])
+     * 按行顺序扫过每个类别通道，同时维护每个 anchor 的当前最高分 / argmax，
+     * 内存访问完全连续，对缓存友好。比较规则 (严格大于、通道升序) 与 anchor 优先路径一致，结果完全相同。
+     */
+    int decodeChannelMajor(float[] data, float confThreshold) {
+        main.count = 0;
+        scanChannelMajor(data, confThreshold, 0, numAnchors, main);
+        return candidateCount = main.count;
+    }
+
+    private void scanAnchorMajor(float[] data, float confThreshold, int from, int to, CandidateSink sink) {
+        final int[] active = activeClasses;
+        final int classCount = active != null ? active.length : numChannels - 4;
+
+        for (int i = from; i < to; i++) {
+            float maxScore = 0f;
+            int maxClassIndex = -1;
+
+            // 寻找当前 Anchor 中得分最高的类别
+            for (int c = 0; c < classCount; c++) {
+                int classIndex = active != null ? active[c] : c;
+                float score = data[index(i, classIndex + 4)];
+                if (score > maxScore) {
+                    maxScore = score;
+                    maxClassIndex = classIndex;
+                }
+            }
+
+            if (maxScore > confThreshold) {
+                addCandidate(data, i, maxScore, maxClassIndex, sink);
+            }
+        }
+    }
+
+    /**
+     * 只处理 [from, to) 范围内的 anchor：各段写 anchorMaxScore / anchorArgMax 中互不重叠的部分，可以并行
+     */
+    private void scanChannelMajor(float[] data, float confThreshold, int from, int to, CandidateSink sink) {
+        final int anchors = numAnchors;
+        final float[] best = anchorMaxScore;
+        final int[] bestClass = anchorArgMax;
+        Arrays.fill(best, from, to, 0f);
+        Arrays.fill(bestClass, from, to, -1);
+
+        final int[] active = activeClasses;
+        final int classCount = active != null ? active.length : numChannels - 4;
+        for (int c = 0; c < classCount; c++) {
+            final int classIndex = active != null ? active[c] : c;
+            final int rowOffset = (classIndex + 4) * anchors;
+            for (int i = from; i < to; i++) {
+                float score = data[rowOffset + i];
+                if (score > best[i]) {
+                    best[i] = score;
+                    bestClass[i] = classIndex;
+                }
+            }
+        }
+
+        for (int i = from; i < to; i++) {
+            if (best[i] > confThreshold) {
+                addCandidate(data, i, best[i], bestClass[i], sink);
+            }
+        }
+    }
+
+    // =========================================================================
+    // 【并行解码】anchor 范围切成几段，调用线程处理第 0 段，其余段交给工作线程
+    // 每段写自己的候选缓冲区，最后按段的顺序拼接：候选顺序与串行完全一致，NMS 结果也就完全相同
+    // 扫描量 (anchor 数 x 参与的类别数) 小于 minParallelWork 时任务调度开销不划算，仍走串行
+    // 是否真的更快只能在本机上测：开启后先串行 / 并行交替解码各 calibrationSamples 次 (结果相同)，
+    // 并行的中位耗时至少快 10% 才保留并行，否则之后一直走串行。开发机单核上并行慢 3~10%
+    // (见 YoloOutputDecoderBenchmark.parallelDecode)，门槛必须是实测结果而不是固定的核数或 anchor 数
+    // =========================================================================
+
+    /** 实测结论 */
+    public enum ParallelVerdict {
+        /** 还在交替测量 */
+        CALIBRATING,
+        /** 并行更快，之后一直并行 */
+        PARALLEL,
+        /** 并行没有明显收益，之后一直串行 */
+        SERIAL
+    }
+
+    /** 默认每条路径测几次 */
+    public static final int DEFAULT_CALIBRATION_SAMPLES = 8;
+
+    /** 默认的并行门槛：约 8400 anchor x 24 类 */
+    public static final int DEFAULT_MIN_PARALLEL_WORK = 200_000;
+
+    private ExecutorService parallelExecutor;
+    private DecodeChunk[] chunks;
+    private Future<?>[] chunkFutures;
+    private int minParallelWork = DEFAULT_MIN_PARALLEL_WORK;
+    private boolean lastDecodeParallel;
+    private ParallelVerdict parallelVerdict = ParallelVerdict.SERIAL;
+    private int calibrationSamples = DEFAULT_CALIBRATION_SAMPLES;
+    private long[] serialNanos;
+    private long[] parallelNanos;
+    private int calibrationRuns;
+    private LongSupplier clock = System::nanoTime;
+
+    /**
+     * 开启 / 关闭并行解码
+     *
+     * @param executor   工作线程 (通常在 interpreter.run 返回后空闲的核上)；null 关闭并行
+     * @param chunkCount 切成几段 (含调用线程自己处理的一段)，小于 2 时关闭并行
+     */
+    public void setParallelDecode(ExecutorService executor, int chunkCount) {
+        if (executor == null || chunkCount < 2) {
+            parallelExecutor = null;
+            chunks = null;
+            chunkFutures = null;
+            parallelVerdict = ParallelVerdict.SERIAL;
+            return;
+        }
+        resetCalibration();
+        parallelExecutor = executor;
+        chunks = new DecodeChunk[chunkCount];
+        chunkFutures = new Future<?>[chunkCount];
+        for (int k = 0; k < chunkCount; k++) {
+            int from = (int) ((long) numAnchors * k / chunkCount);
+            int to = (int) ((long) numAnchors * (k + 1) / chunkCount);
+            chunks[k] = new DecodeChunk(from, to);
+        }
+    }
+
+    /** 扫描量 (anchor 数 x 参与的类别数) 至少多大才并行 */
+    public void setMinParallelWork(int minParallelWork) {
+        this.minParallelWork = minParallelWork;
+    }
+
+    /**
+     * 开启并行后每条路径实测几次再下结论；0 = 不测，直接并行 (测试用)
+     * 在 setParallelDecode 之前调用
+     */
+    public void setCalibrationSamples(int samples) {
+        this.calibrationSamples = Math.max(0, samples);
+    }
+
+    /** 测试可注入假时钟 (纳秒) */
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /** 并行解码的实测结论；没开启并行时为 SERIAL */
+    public ParallelVerdict getParallelVerdict() { return parallelVerdict; }
+
+    private void resetCalibration() {
+        calibrationRuns = 0;
+        if (calibrationSamples == 0) {
+            parallelVerdict = ParallelVerdict.PARALLEL;
+            serialNanos = null;
+            parallelNanos = null;
+            return;
+        }
+        parallelVerdict = ParallelVerdict.CALIBRATING;
+        serialNanos = new long[calibrationSamples];
+        parallelNanos = new long[calibrationSamples];
+    }
+
+    /**
+     * 测量阶段：偶数次串行、奇数次并行，两边都测满后比较中位数
+     */
+    private int decodeCalibrating(float[] data, float confThreshold) {
+        int run = calibrationRuns++;
+        boolean parallel = (run & 1) == 1;
+        long t0 = clock.getAsLong();
+        int count = parallel ? decodeParallel(data, confThreshold) : decodeSerial(data, confThreshold);
+        long elapsed = clock.getAsLong() - t0;
+        lastDecodeParallel = parallel;
+        (parallel ? parallelNanos : serialNanos)[run >> 1] = elapsed;
+
+        if (calibrationRuns == calibrationSamples * 2) {
+            long serial = median(serialNanos);
+            long par = median(parallelNanos);
+            parallelVerdict = par * 10 <= serial * 9 ? ParallelVerdict.PARALLEL : ParallelVerdict.SERIAL;
+            serialNanos = null;
+            parallelNanos = null;
+        }
+        return count;
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /** 最近一次 decode 是否走了并行路径 */
+    public boolean isLastDecodeParallel() { return lastDecodeParallel; }
+
+    private int decodeParallel(float[] data, float confThreshold) {
+        final DecodeChunk[] parts = chunks;
+        final Future<?>[] futures = chunkFutures;
+        for (int k = 1; k < parts.length; k++) {
+            parts[k].prepare(data, confThreshold);
+            try {
+                futures[k] = parallelExecutor.submit(parts[k]);
+            } catch (RejectedExecutionException e) {
+                // 线程池已关闭：这一段在调用线程上做
+                futures[k] = null;
+                parts[k].run();
+            }
+        }
+        parts[0].prepare(data, confThreshold);
+        parts[0].run();
+
+        boolean interrupted = false;
+        for (int k = 1; k < parts.length; k++) {
+            Future<?> future = futures[k];
+            futures[k] = null;
+            while (future != null) {
+                try {
+                    future.get();
+                    future = null;
+                } catch (InterruptedException e) {
+                    // 各段共享 anchorMaxScore，必须等所有段结束才能返回
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("并行解码失败", e.getCause());
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+
+        // 按段的顺序拼接
+        int n = 0;
+        for (DecodeChunk part : parts) {
+            CandidateSink sink = part.sink;
+            System.arraycopy(sink.boxes, 0, boxes, n * 4, sink.count * 4);
+            System.arraycopy(sink.scores, 0, scores, n, sink.count);
+            System.arraycopy(sink.classIds, 0, classIds, n, sink.count);
+            n += sink.count;
+        }
+        main.count = n;
+        return candidateCount = n;
+    }
+
+    private final class DecodeChunk implements Runnable {
+        final int from;
+        final int to;
+        final CandidateSink sink;
+        private float[] data;
+        private float confThreshold;
+
+        DecodeChunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+            this.sink = new CandidateSink(to - from);
+        }
+
+        void prepare(float[] data, float confThreshold) {
+            this.data = data;
+            this.confThreshold = confThreshold;
+        }
+
+        @Override
+        public void run() {
+            sink.count = 0;
+            if (transposed) {
+                scanChannelMajor(data, confThreshold, from, to, sink);
+            } else {
+                scanAnchorMajor(data, confThreshold, from, to, sink);
+            }
+            data = null;
+        }
+    }
+
+    /**
+     * 候选框的 SoA 缓冲区：主缓冲区就是 boxes / scores / classIds，并行时每段另有一份
+     */
+    private static final class CandidateSink {
+        final float[] boxes;
+        final float[] scores;
+        final int[] classIds;
+        int count;
+
+        CandidateSink(int capacity) {
+            this(new float[capacity * 4], new float[capacity], new int[capacity]);
+        }
+
+        CandidateSink(float[] boxes, float[] scores, int[] classIds) {
+            this.boxes = boxes;
+            this.scores = scores;
+            this.classIds = classIds;
+        }
+    }
+
+    private int index(int anchor, int channel) {
+        return transposed ? (channel * numAnchors + anchor) : (anchor * numChannels + channel);
+    }
+
+    private void addCandidate(float[] data, int anchor, float score, int classIndex, CandidateSink sink) {
+        addCandidate(data[index(anchor, 0)], data[index(anchor, 1)],
+                data[index(anchor, 2)], data[index(anchor, 3)], score, classIndex, sink);
+    }
+
+    private void addCandidate(float rawCx, float rawCy, float rawW, float rawH, float score, int classIndex,
+                              CandidateSink sink) {
+        // 无论模型输出是归一化(0~1)还是像素级(0~640)，这里统一转回像素级
+        float cx = rawW <= 1.0f ? rawCx * inputSize : rawCx;
+        float cy = rawH <= 1.0f ? rawCy * inputSize : rawCy;
+        float w = rawW <= 1.0f ? rawW * inputSize : rawW;
+        float h = rawH <= 1.0f ? rawH * inputSize : rawH;
+
+        // 全屏拉伸版：模型坐标 / inputSize = 归一化坐标，并做边界限制
+        float left = clamp01((cx - w / 2f) / inputSize);
+        float top = clamp01((cy - h / 2f) / inputSize);
+        float right = clamp01((cx + w / 2f) / inputSize);
+        float bottom = clamp01((cy + h / 2f) / inputSize);
+
+        if (right - left > 0 && bottom - top > 0) {
+            int n = sink.count;
+            sink.boxes[n * 4] = left;
+            sink.boxes[n * 4 + 1] = top;
+            sink.boxes[n * 4 + 2] = right;
+            sink.boxes[n * 4 + 3] = bottom;
+            sink.scores[n] = score;
+            sink.classIds[n] = classIndex;
+            sink.count++;
+        }
+    }
+
+    private static float clamp01(float v) {
+        return Math.max(0f, Math.min(1f, v));
+    }
+
+    /**
+     * NMS 非极大值抑制 (去除重叠框)，具体策略由 {@link #getNmsEngine()} 配置
+     *
+     * @return 保留下来的框数量，按分数从高到低排列
+     */
+    public int nms(float iouThreshold) {
+        nmsEngine.setIouThreshold(iouThreshold);
+        return nmsEngine.run(boxes, scores, classIds, candidateCount);
+    }
+
+    public NmsEngine getNmsEngine() { return nmsEngine; }
+
+    // ========================== 结果访问 ==========================
+
+    public int getCandidateCount() { return candidateCount; }
+
+    public int getKeepCount() { return nmsEngine.getKeepCount(); }
+
+    /** 第 k 个幸存框在候选数组中的下标 */
+    public int getKeptIndex(int k) { return nmsEngine.getKeptIndex(k); }
+
+    /** 第 k 个幸存框的分数 (Soft-NMS 下为衰减后的分数) */
+    public float getKeptScore(int k) { return nmsEngine.getKeptScore(k); }
+
+    public float getLeft(int i) { return boxes[i * 4]; }
+
+    public float getTop(int i) { return boxes[i * 4 + 1]; }
+
+    public float getRight(int i) { return boxes[i * 4 + 2]; }
+
+    public float getBottom(int i) { return boxes[i * 4 + 3]; }
+
+    public float getScore(int i) { return scores[i]; }
+
+    public int getClassId(int i) { return classIds[i]; }
+}
@@ -0,0 +1,252 @@
+package com.example.myapplication.ml;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV_420_888 -> 模型输入张量 的直通转换 (相机分析器专用)
+ *
+ * 旧流程：imageProxy.toBitmap() (整帧 RGBA 位图) -> createBitmap(matrix) 旋转 (再来一张) -> 缩放
+ * 新流程：直接读取 Y / U / V 三个平面，一遍完成 颜色转换 + 旋转 + 最近邻下采样，
+ *        按行交给 {@link TensorPreprocessor#writeRow} 打包进输入张量，全程不产生 RGB 位图
+ *
+ * 1. 旋转通过坐标映射实现：预先算好每个输出行 / 列对应的源平面偏移
+ * 2. 颜色转换使用 BT.601 全范围 (JFIF) 公式，系数预先做成 256 项查表
+ * 3. 同时支持 I420 (uvPixelStride = 1) 和 NV12 / NV21 (uvPixelStride = 2) 两种平面排布
+ * 4. 可以只转换正向画面中的一个区域 (ROI，见 {@link #setRegion})：只拷贝覆盖该区域的平面数据，
+ *    采样点全部落在区域内，相当于把区域放大到整个输入张量
+ *
+ * 纯 Java 实现，不依赖 android.* ，可以在桌面 JVM 上对照参考图做单元测试和基准测试。
+ * 非线程安全：每个 TensorPreprocessor 对应一个实例。
+ */
+public class YuvTensorConverter {
+
+    // 色度分量查表 (已减去 128 偏移)
+    private static final int[] R_V = new int[256];
+    private static final int[] G_U = new int[256];
+    private static final int[] G_V = new int[256];
+    private static final int[] B_U = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int c = i - 128;
+            R_V[i] = Math.round(1.402f * c);
+            G_U[i] = Math.round(0.344136f * c);
+            G_V[i] = Math.round(0.714136f * c);
+            B_U[i] = Math.round(1.772f * c);
+        }
+    }
+
+    private final TensorPreprocessor sink;
+    private final int dstWidth;
+    private final int dstHeight;
+    private final int[] dstRow;
+
+    // 平面拷贝区 (整块 get 一次，比逐个 ByteBuffer.get 快得多)
+    // 只存采样范围 [start, end)，下标 0 对应平面偏移 start
+    private byte[] yBytes = new byte[0];
+    private byte[] uBytes = new byte[0];
+    private byte[] vBytes = new byte[0];
+
+    // =========================================================================
+    // 【预计算】输出列 / 输出行 -> 源平面偏移
+    // 最终偏移 = colOffset[dx] + rowOffset[dy]，旋转 90/270 时行列的角色互换
+    // =========================================================================
+    private final int[] colYOffset;
+    private final int[] colUvOffset;
+    private final int[] rowYOffset;
+    private final int[] rowUvOffset;
+    private int tableWidth = -1;
+    private int tableHeight = -1;
+    private int tableYRowStride;
+    private int tableUvRowStride;
+    private int tableUvPixelStride;
+    private int tableRotation;
+    private float tableLeft, tableTop, tableRight, tableBottom;
+
+    // 采样会用到的平面字节范围 [start, end)，只拷贝这一段
+    private int yStart, yEnd, uvStart, uvEnd;
+
+    // 正向画面中要转换的区域 (0~1 归一化坐标)，默认整帧
+    private float regionLeft = 0f;
+    private float regionTop = 0f;
+    private float regionRight = 1f;
+    private float regionBottom = 1f;
+
+    public YuvTensorConverter(TensorPreprocessor sink) {
+        this.sink = sink;
+        this.dstWidth = sink.getDstWidth();
+        this.dstHeight = sink.getDstHeight();
+        dstRow = new int[dstWidth];
+        colYOffset = new int[dstWidth];
+        colUvOffset = new int[dstWidth];
+        rowYOffset = new int[dstHeight];
+        rowUvOffset = new int[dstHeight];
+    }
+
+    /**
+     * 只转换正向 (已旋转) 画面中的 [left, right] x [top, bottom] 区域 (0~1 归一化坐标)
+     * 传 (0, 0, 1, 1) 恢复整帧
+     */
+    public void setRegion(float left, float top, float right, float bottom) {
+        regionLeft = clamp01(Math.min(left, right));
+        regionTop = clamp01(Math.min(top, bottom));
+        regionRight = clamp01(Math.max(left, right));
+        regionBottom = clamp01(Math.max(top, bottom));
+    }
+
+    private static float clamp01(float v) {
+        return v < 0f ? 0f : (v > 1f ? 1f : v);
+    }
+
+    /**
+     * 转换一帧 (ImageProxy.getPlanes() 的三个平面)
+     *
+     * @param width           传感器方向下的帧宽
+     * @param height          传感器方向下的帧高
+     * @param rotationDegrees 需要顺时针旋转多少度才是正向画面 (0 / 90 / 180 / 270)
+     */
+    public void convert(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                        int width, int height, int yRowStride, int uvRowStride, int uvPixelStride,
+                        int rotationDegrees) {
+        prepareTables(width, height, yRowStride, uvRowStride, uvPixelStride, rotationDegrees);
+        // 只拷贝采样会用到的那一段 (ROI 模式下远小于整个平面)，拷贝区和读取量都按这一段计
+        yBytes = copyPlane(yPlane, yBytes, yStart, yEnd);
+        uBytes = copyPlane(uPlane, uBytes, uvStart, uvEnd);
+        vBytes = copyPlane(vPlane, vBytes, uvStart, uvEnd);
+        convertRows(yBytes, yStart, uBytes, vBytes, uvStart);
+    }
+
+    /**
+     * 数组版本 (平面数据已经在 byte[] 里)，主要给测试和基准用
+     */
+    public void convert(byte[] y, byte[] u, byte[] v,
+                        int width, int height, int yRowStride, int uvRowStride, int uvPixelStride,
+                        int rotationDegrees) {
+        prepareTables(width, height, yRowStride, uvRowStride, uvPixelStride, rotationDegrees);
+        convertRows(y, 0, u, v, 0);
+    }
+
+    /** 拷贝区中下标 0 对应的平面偏移，整个平面 = 0 */
+    private void convertRows(byte[] y, int yBase, byte[] u, byte[] v, int uvBase) {
+        for (int dy = 0; dy < dstHeight; dy++) {
+            final int rowY = rowYOffset[dy] - yBase;
+            final int rowUv = rowUvOffset[dy] - uvBase;
+            for (int dx = 0; dx < dstWidth; dx++) {
+                int luma = y[rowY + colYOffset[dx]] & 0xFF;
+                int uvIndex = rowUv + colUvOffset[dx];
+                dstRow[dx] = yuvToArgb(luma, u[uvIndex] & 0xFF, v[uvIndex] & 0xFF);
+            }
+            sink.writeRow(dy, dstRow);
+        }
+    }
+
+    /**
+     * BT.601 全范围 YUV -> ARGB
+     */
+    public static int yuvToArgb(int y, int u, int v) {
+        int r = clamp(y + R_V[v]);
+        int g = clamp(y - G_U[u] - G_V[v]);
+        int b = clamp(y + B_U[u]);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int c) {
+        return c < 0 ? 0 : (c > 255 ? 255 : c);
+    }
+
+    /**
+     * 把平面的 [start, end) 拷到拷贝区开头，拷贝区只按这一段的长度分配
+     */
+    private static byte[] copyPlane(ByteBuffer plane, byte[] reuse, int start, int end) {
+        end = Math.min(end, plane.limit());
+        int length = end - start;
+        byte[] out = reuse.length >= length ? reuse : new byte[length];
+        plane.position(start);
+        plane.get(out, 0, length);
+        plane.rewind();
+        return out;
+    }
+
+    /** 三个拷贝区当前占用的字节数 (测试用) */
+    int getCopyBufferBytes() {
+        return yBytes.length + uBytes.length + vBytes.length;
+    }
+
+    private void prepareTables(int width, int height, int yRowStride, int uvRowStride, int uvPixelStride,
+                               int rotationDegrees) {
+        int rotation = ((rotationDegrees % 360) + 360) % 360;
+        if (width == tableWidth && height == tableHeight && yRowStride == tableYRowStride
+                && uvRowStride == tableUvRowStride && uvPixelStride == tableUvPixelStride
+                && rotation == tableRotation && regionLeft == tableLeft && regionTop == tableTop
+                && regionRight == tableRight && regionBottom == tableBottom) return;
+
+        // 正向画面中的归一化坐标 (u, v) -> 传感器坐标 (sx, sy)
+        //   0°: sx = u * W,        sy = v * H
+        //  90°: sx = v * W,        sy = (1 - u) * H
+        // 180°: sx = (1 - u) * W,  sy = (1 - v) * H
+        // 270°: sx = (1 - v) * W,  sy = u * H
+        boolean swap = rotation == 90 || rotation == 270;
+        boolean flipX = rotation == 180 || rotation == 270;  // sx 取反
+        boolean flipY = rotation == 90 || rotation == 180;   // sy 取反
+
+        // 输出列沿正向画面的水平方向 [left, right]，输出行沿竖直方向 [top, bottom]
+        for (int dx = 0; dx < dstWidth; dx++) {
+            if (swap) {
+                int sy = sample(dx, dstWidth, height, flipY, regionLeft, regionRight);
+                colYOffset[dx] = sy * yRowStride;
+                colUvOffset[dx] = (sy >> 1) * uvRowStride;
+            } else {
+                int sx = sample(dx, dstWidth, width, flipX, regionLeft, regionRight);
+                colYOffset[dx] = sx;
+                colUvOffset[dx] = (sx >> 1) * uvPixelStride;
+            }
+        }
+        for (int dy = 0; dy < dstHeight; dy++) {
+            if (swap) {
+                int sx = sample(dy, dstHeight, width, flipX, regionTop, regionBottom);
+                rowYOffset[dy] = sx;
+                rowUvOffset[dy] = (sx >> 1) * uvPixelStride;
+            } else {
+                int sy = sample(dy, dstHeight, height, flipY, regionTop, regionBottom);
+                rowYOffset[dy] = sy * yRowStride;
+                rowUvOffset[dy] = (sy >> 1) * uvRowStride;
+            }
+        }
+        tableWidth = width;
+        tableHeight = height;
+        tableYRowStride = yRowStride;
+        tableUvRowStride = uvRowStride;
+        tableUvPixelStride = uvPixelStride;
+        tableRotation = rotation;
+        tableLeft = regionLeft;
+        tableTop = regionTop;
+        tableRight = regionRight;
+        tableBottom = regionBottom;
+
+        yStart = min(rowYOffset) + min(colYOffset);
+        yEnd = max(rowYOffset) + max(colYOffset) + 1;
+        uvStart = min(rowUvOffset) + min(colUvOffset);
+        uvEnd = max(rowUvOffset) + max(colUvOffset) + 1;
+    }
+
+    private static int min(int[] a) {
+        int m = Integer.MAX_VALUE;
+        for (int v : a) if (v < m) m = v;
+        return m;
+    }
+
+    private static int max(int[] a) {
+        int m = Integer.MIN_VALUE;
+        for (int v : a) if (v > m) m = v;
+        return m;
+    }
+
+    /**
+     * 最近邻采样：第 d 个输出像素 (共 dstLen 个，均匀分布在正向画面的 [lo, hi] 区间) 对应的源坐标
+     */
+    private static int sample(int d, int dstLen, int srcLen, boolean flip, float lo, float hi) {
+        float u = lo + (d + 0.5f) * (hi - lo) / dstLen;
+        int s = Math.min(srcLen - 1, (int) (u * srcLen));
+        return flip ? srcLen - 1 - s : s;
+    }
+}
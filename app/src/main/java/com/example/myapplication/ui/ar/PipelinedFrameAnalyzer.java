@@ -0,0 +1,278 @@
+package com.example.myapplication.ui.ar;
+
+import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import com.example.myapplication.ml.DetectionStream;
+import com.example.myapplication.ml.YoloDetector;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两级流水线分析器：预处理 (相机线程) 与推理 (推理线程) 重叠执行
+ *
+ * 旧流程在同一个线程上串行：转换 -> 旋转 -> detect() -> 发 UI，解释器运行时 CPU 空等下一帧。
+ * 新流程：
+ * 1. 相机线程把帧 N+1 预处理进一个空闲的输入张量 (双缓冲)，随即关闭 ImageProxy 归还相机缓冲
+ * 2. 推理线程同时对帧 N 执行推理 + 解码
+ * 3. "最新帧优先"：推理线程还没取走的待处理帧会被更新的帧直接覆盖 (计入丢帧)，
+ *    与 STRATEGY_KEEP_ONLY_LATEST 的语义一致
+ *
+ * 推理阶段是一个 DetectionStream (推理线程是它的 worker，listener 是它的 sink)：
+ * 覆盖、取消都走流的语义。getInferenceStream() 交给 DetectionStreams.bindTo，
+ * 页面销毁时立即取消：丢弃等待中的帧、不再回调结果，正在进行的那次推理由 close() 等它结束。
+ *
+ * 提供吞吐量 (推理 FPS) 和端到端延迟 (收到帧 -> 推理完成) 统计，用于确认 FPS 提升。
+ */
+public class PipelinedFrameAnalyzer implements ImageAnalysis.Analyzer {
+
+    private static final String TAG = "VISION_DEBUG";
+
+    public interface OnResultsListener {
+        /** 在推理线程上回调 */
+        void onResults(List<YoloDetector.Result> results);
+    }
+
+    private static final int STATE_FREE = 0;
+    private static final int STATE_WRITING = 1;
+    private static final int STATE_PENDING = 2;
+    private static final int STATE_INFERRING = 3;
+
+    private static class Slot {
+        final YoloDetector.InputSlot input;
+        int state = STATE_FREE;
+        long frameStartNanos;
+
+        Slot(YoloDetector.InputSlot input) {
+            this.input = input;
+        }
+    }
+
+    private final YoloDetector detector;
+    private final OnResultsListener listener;
+    private final RgbaFrameConverter rgbaConverter;
+    private final ExecutorService inferenceExecutor;
+    private final DetectionStream<Slot, List<YoloDetector.Result>> inferenceStream;
+    private final Slot[] slots;
+
+    // 槽位状态和统计由 lock 保护 (需要时先拿 lock 再调用 inferenceStream，反过来不会发生)
+    private final Object lock = new Object();
+
+    // ========================== 统计 ==========================
+    private long framesReceived;
+    private long framesInferred;
+    private long framesSkipped;       // 没有可写的槽位 / 已关闭，直接丢掉的帧
+    private double avgLatencyMs;      // 端到端延迟的指数滑动平均
+    private double inferredFps;       // 推理吞吐量 (按统计窗口计算)
+    private long windowStartMs = SystemClock.elapsedRealtime();
+    private long windowFrames;
+    private long lastLogTime;
+
+    /**
+     * @param rgbaConverter RGBA 兼容模式下的取帧器 (位图来自共享池)
+     */
+    PipelinedFrameAnalyzer(YoloDetector detector, OnResultsListener listener, RgbaFrameConverter rgbaConverter) {
+        this.detector = detector;
+        this.listener = listener;
+        this.rgbaConverter = rgbaConverter;
+        this.inferenceExecutor = Executors.newSingleThreadExecutor();
+        // 结果直接在推理线程上回调 (Runnable::run)，与原来一样
+        this.inferenceStream = new DetectionStream<>(inferenceExecutor, Runnable::run, this::inferSlot,
+                new DetectionStream.Sink<List<YoloDetector.Result>>() {
+                    @Override
+                    public void onResult(List<YoloDetector.Result> results) {
+                        listener.onResults(results);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        Log.e(TAG, "Pipeline inference error", error);
+                    }
+                }, this::freeSlot);
+
+        YoloDetector.InputSlot first = detector.createInputSlot();
+        YoloDetector.InputSlot second = detector.createInputSlot();
+        slots = (first != null && second != null)
+                ? new Slot[]{new Slot(first), new Slot(second)}
+                : new Slot[0];
+    }
+
+    @Override
+    public void analyze(@NonNull ImageProxy imageProxy) {
+        long startNanos = System.nanoTime();
+        Slot slot;
+        synchronized (lock) {
+            framesReceived++;
+            slot = inferenceStream.isCancelled() ? null : acquireWritableSlot();
+            if (slot == null) framesSkipped++;
+        }
+        if (slot == null) {
+            imageProxy.close();
+            return;
+        }
+
+        try {
+            // 【阶段 1】预处理进空闲张量
+            if (imageProxy.getFormat() == ImageFormat.YUV_420_888) {
+                ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
+                detector.prepareYuv(slot.input,
+                        planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                        imageProxy.getWidth(), imageProxy.getHeight(),
+                        planes[0].getRowStride(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                        imageProxy.getImageInfo().getRotationDegrees());
+            } else {
+                // 预处理是同步读取位图，写完张量就可以把位图还给池
+                Bitmap bitmap = rgbaConverter.toUprightBitmap(imageProxy);
+                try {
+                    detector.prepare(slot.input, bitmap);
+                } finally {
+                    rgbaConverter.release(bitmap);
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Pipeline preprocess error", e);
+            freeSlot(slot);
+            return;
+        } finally {
+            // 预处理一结束就归还相机缓冲，不必等推理完成
+            imageProxy.close();
+        }
+
+        // 【交接】交给推理流；流已取消时它会立即通过 freeSlot 归还槽位
+        synchronized (lock) {
+            slot.frameStartNanos = startNanos;
+            slot.state = STATE_PENDING;
+        }
+        inferenceStream.submit(slot);
+    }
+
+    /**
+     * 选一个空闲张量写入；都不空闲时把推理流里还没被取走的旧帧拿回来覆盖 (最新帧优先，计入流的 dropped)
+     * 两个都拿不到 (一个在推理、另一个刚被推理线程取走) 时返回 null，这一帧丢掉
+     */
+    private Slot acquireWritableSlot() {
+        Slot candidate = findFreeSlot();
+        if (candidate == null) {
+            candidate = inferenceStream.takePending();
+            // 等待位已空：可能刚被取消回收成空闲，再找一次
+            if (candidate == null) candidate = findFreeSlot();
+        }
+        if (candidate != null) candidate.state = STATE_WRITING;
+        return candidate;
+    }
+
+    private Slot findFreeSlot() {
+        for (Slot s : slots) {
+            if (s.state == STATE_FREE) return s;
+        }
+        return null;
+    }
+
+    /** 被覆盖 / 取消 / 预处理失败的帧：槽位直接空出来 */
+    private void freeSlot(Slot slot) {
+        synchronized (lock) {
+            slot.state = STATE_FREE;
+        }
+    }
+
+    /**
+     * 【阶段 2】推理线程 (推理流的 processor)：对最新的待处理帧执行推理 + 解码
+     */
+    private List<YoloDetector.Result> inferSlot(Slot slot) {
+        long frameStartNanos;
+        synchronized (lock) {
+            slot.state = STATE_INFERRING;
+            frameStartNanos = slot.frameStartNanos;
+        }
+        List<YoloDetector.Result> results;
+        try {
+            results = detector.infer(slot.input);
+        } finally {
+            freeSlot(slot);
+        }
+        recordFrame(frameStartNanos);
+        return results;
+    }
+
+    private void recordFrame(long frameStartNanos) {
+        double latencyMs = (System.nanoTime() - frameStartNanos) / 1e6;
+        long now = SystemClock.elapsedRealtime();
+        synchronized (lock) {
+            framesInferred++;
+            avgLatencyMs = framesInferred == 1 ? latencyMs : avgLatencyMs * 0.9 + latencyMs * 0.1;
+            windowFrames++;
+            long elapsed = now - windowStartMs;
+            if (elapsed >= 1000) {
+                inferredFps = windowFrames * 1000.0 / elapsed;
+                windowFrames = 0;
+                windowStartMs = now;
+            }
+            // 每 3 秒打印一次统计
+            if (now - lastLogTime > 3000) {
+                Log.d(TAG, String.format("Pipeline: %.1f fps, latency %.1f ms, received %d, inferred %d, dropped %d",
+                        inferredFps, avgLatencyMs, framesReceived, framesInferred,
+                        framesSkipped + inferenceStream.getDropped()));
+                lastLogTime = now;
+            }
+        }
+    }
+
+    // ========================== 统计读取 ==========================
+
+    public double getInferredFps() {
+        synchronized (lock) { return inferredFps; }
+    }
+
+    public double getAverageLatencyMs() {
+        synchronized (lock) { return avgLatencyMs; }
+    }
+
+    public long getFramesReceived() {
+        synchronized (lock) { return framesReceived; }
+    }
+
+    public long getFramesInferred() {
+        synchronized (lock) { return framesInferred; }
+    }
+
+    /** 没来得及推理就被更新的帧覆盖或直接丢掉的帧数 */
+    public long getFramesDropped() {
+        synchronized (lock) { return framesSkipped + inferenceStream.getDropped(); }
+    }
+
+    /**
+     * 推理阶段的流，交给 DetectionStreams.bindTo 在页面销毁时取消
+     */
+    public DetectionStream<?, List<YoloDetector.Result>> getInferenceStream() {
+        return inferenceStream;
+    }
+
+    /**
+     * 取消推理流 (可能已被生命周期绑定取消过)，并等待正在进行的推理真正结束 (之后才能重置并归还检测器)
+     * 会一直阻塞到推理线程退出，不要在主线程调用
+     */
+    public void close() {
+        inferenceStream.cancel();
+        inferenceExecutor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (inferenceExecutor.awaitTermination(1, TimeUnit.SECONDS)) break;
+                Log.w(TAG, "Pipeline: still waiting for inference to finish");
+            } catch (InterruptedException e) {
+                // 推理还在用检测器，不能提前返回
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -1,13 +1,14 @@
 package com.example.myapplication.ui.ar;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.Matrix;
+import android.graphics.RectF;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.TextView;
@@ -17,6 +18,7 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
 import androidx.camera.core.resolutionselector.AspectRatioStrategy;
 import androidx.camera.core.resolutionselector.ResolutionSelector;
@@ -26,12 +28,23 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.myapplication.R;
+import com.example.myapplication.ml.BitmapPool;
+import com.example.myapplication.ml.DetectionStream;
+import com.example.myapplication.ml.DetectionStreams;
+import com.example.myapplication.ml.DetectionTracker;
+import com.example.myapplication.ml.ModelRegistry;
+import com.example.myapplication.ml.ObjectTracker;
+import com.example.myapplication.ml.ResultMailbox;
+import com.example.myapplication.ml.SceneChangeGate;
+import com.example.myapplication.ml.ResolutionPolicy;
 import com.example.myapplication.ml.YoloDetector;
 import com.example.myapplication.ui.practice.PracticeActivity;
+import com.example.myapplication.view.FocusBoxView;
 import com.example.myapplication.view.OverlayView;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -41,17 +54,106 @@ public class RealtimeActivity extends AppCompatActivity {
     private static final int CAMERA_PERMISSION_REQUEST_CODE = 101;
     private static final String TAG = "VISION_DEBUG";
 
+    // 可选：本次课程要识别的类别 (labels.txt 中的名称)，不传则识别全部类别
+    public static final String EXTRA_ACTIVE_CLASSES = "extra_active_classes";
+
+    // true = 分析器输出 YUV_420_888 并直接写入模型输入；false = 旧的 RGBA + toBitmap 路径
+    private static final boolean USE_YUV_PIPELINE = true;
+
+    // true = 两级流水线 (预处理与推理重叠执行)；false = 单线程串行分析
+    private static final boolean USE_PIPELINED_ANALYZER = true;
+
+    // 检测器都被占用 (例如拍照页正在批量识别) 时，隔多久再试着借一次
+    private static final long DETECTOR_RETRY_MS = 1000;
+
+    // true = 按延迟预算在 320 / 480 / 640 之间动态切换输入分辨率
+    private static final boolean USE_ADAPTIVE_RESOLUTION = true;
+    private static final int[] ADAPTIVE_SIZES = {320, 480, 640};
+    private static final double LATENCY_BUDGET_MS = 60;
+
+    // true = 只识别对焦框 (四周外扩 ROI_MARGIN 倍框边长) 内的画面，小物体被放大到整个模型输入
+    // 默认关闭：打开后框外的物体不再被识别，只适合"对准再识别"的交互
+    private static final boolean USE_ROI_MODE = false;
+    private static final float ROI_MARGIN = 0.25f;
+
+    // true = 画面与上次推理的帧几乎相同时跳过推理，复用上次的结果
+    private static final boolean USE_SCENE_GATE = true;
+
+    // true = 只在关键帧运行检测器，中间帧由跟踪器预测框的位置 (间隔按画面运动自适应)
+    private static final boolean USE_TRACKING = true;
+
+    // true = 推理结束后把 8400 个 anchor 的解码分段交给其它核并行处理
+    // 解码器先在本机上串行 / 并行交替测 8 次，并行快 10% 以上才保留，否则自动退回串行；单核设备上不会开启
+    private static final boolean USE_PARALLEL_DECODE = true;
+
+    // true = 框按屏幕刷新率向最新位置插值 (Choreographer 驱动)，只重绘框变化的区域
+    private static final boolean USE_SMOOTH_OVERLAY = true;
+
+    // RGBA 兼容模式的位图池：每帧只在用一两张，留几帧的余量
+    private static final long FRAME_POOL_BYTES = 16L * 1024 * 1024;
+
     private PreviewView previewView;
     private TextView resultTextView;
     // private ExtendedFloatingActionButton confirmButton; // 已移除：点击框直接跳转，不再需要确认按钮
     private OverlayView overlayView;
-    private ExecutorService cameraExecutor;
 
-    private YoloDetector yoloDetector;
+    // RGBA 兼容模式的取帧器 (分析器线程使用)，位图来自共享池
+    private final BitmapPool framePool = new BitmapPool(FRAME_POOL_BYTES);
+    private final RgbaFrameConverter rgbaConverter = new RgbaFrameConverter(framePool);
+    private FocusBoxView focusBoxView;
+    // 对焦框区域 (View 归一化坐标，主线程写入)；相机线程按帧尺寸换算后交给检测器
+    private volatile RectF focusRegionInView;
+    private volatile int focusViewWidth;
+    private volatile int focusViewHeight;
+    // 相机线程：上次换算所用的区域 / 帧尺寸 / 检测器，都没变就不重复设置
+    private RectF mappedFocusRegion;
+    private int mappedFrameWidth;
+    private int mappedFrameHeight;
+    private YoloDetector mappedDetector;
+    private ExecutorService cameraExecutor;
+    // 相机帧 -> 检测结果：在相机线程上串行处理，来不及处理的帧合并掉 (关闭)，页面销毁时取消
+    // 流水线模式下它只负责门控和预处理，推理在 PipelinedFrameAnalyzer 的推理流上 (同样绑定生命周期)
+    private DetectionStream<ImageProxy, List<YoloDetector.Result>> frameStream;
+
+    // 共享模型句柄 (进程级缓存，不再每次打开页面都重建解释器)
+    private ModelRegistry.Handle modelHandle;
+    // 主线程借出，相机线程读取
+    private volatile YoloDetector yoloDetector;
+    private final Runnable acquireRetry = this::acquireDetector;
+    // 检测器就绪后在主线程创建，相机线程读取
+    private volatile PipelinedFrameAnalyzer pipelinedAnalyzer;
 
     // 控制扫描状态：true=暂停扫描，false=正在扫描
     private boolean isResultLocked = false;
 
+    // 多目标跟踪：稳定的 trackId + 关键帧之间的位置预测
+    private final DetectionTracker tracker = new DetectionTracker(new ObjectTracker());
+    // 场景变化门控 (只在相机线程使用) 与最近一次展示的结果
+    private final SceneChangeGate sceneGate = new SceneChangeGate(16, 4f);
+    private volatile List<YoloDetector.Result> lastResults;
+    private long lastGateLogTime;
+
+    // 当前展示的目标 (只在主线程读写)，它仍在画面中时优先继续展示它，避免点击目标来回跳
+    private int shownTrackId = YoloDetector.NO_TRACK;
+
+    // =========================================================
+    // 【结果信箱】分析线程只往单槽信箱里覆盖最新结果，主线程每个 vsync 取一次：
+    // 主线程忙时旧结果直接被覆盖 (计数)，不会在 Looper 队列里排队后迟到地画出来
+    // =========================================================
+    private final ResultMailbox<List<YoloDetector.Result>> resultMailbox = new ResultMailbox<>();
+    private final Choreographer.FrameCallback resultFrameCallback = this::onResultFrame;
+    private boolean resultLoopRunning = false;
+    private long lastMailboxLogTime;
+
+    // 以下只在主线程使用：复用的单元素列表，以及底部文字对应的 类别/百分比 (没变就不重设文字)
+    private final List<YoloDetector.Result> topOneList = new ArrayList<>(1);
+    private static final int TEXT_UNKNOWN = -1;
+    private static final int TEXT_SCANNING = -2;
+    private static final int TEXT_BUSY = -3;
+    private static final int TEXT_ERROR = -4;
+    private int shownTextClass = TEXT_UNKNOWN;
+    private int shownTextPercent = -1;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -65,6 +167,10 @@ public class RealtimeActivity extends AppCompatActivity {
         resultTextView = findViewById(R.id.result_text_view);
         // confirmButton = findViewById(R.id.btn_confirm); // 已移除
         overlayView = findViewById(R.id.overlayView);
+        focusBoxView = findViewById(R.id.focusBoxView);
+        if (!USE_ROI_MODE && focusBoxView != null) {
+            focusBoxView.setVisibility(View.GONE);
+        }
 
         // 2. 检查 OverlayView 是否正常加载
         if (overlayView == null) {
@@ -72,14 +178,30 @@ public class RealtimeActivity extends AppCompatActivity {
         } else {
             overlayView.setVisibility(View.VISIBLE);
             overlayView.bringToFront(); // 确保它在最上层
+            overlayView.setSmoothRendering(USE_SMOOTH_OVERLAY);
         }
 
         ImageButton btnClose = findViewById(R.id.btnClose);
         cameraExecutor = Executors.newSingleThreadExecutor();
+        // 结果直接在相机线程上交给 showResults (它只写信箱，由主线程按 vsync 取)
+        frameStream = DetectionStreams.bindTo(this, new DetectionStream<ImageProxy, List<YoloDetector.Result>>(
+                cameraExecutor, Runnable::run, this::analyzeFrame,
+                new DetectionStream.Sink<List<YoloDetector.Result>>() {
+                    @Override
+                    public void onResult(List<YoloDetector.Result> results) {
+                        showResults(results);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        Log.e(TAG, "Analysis error", error);
+                    }
+                }, ImageProxy::close));
 
         // 3. 初始化 YOLO
         // 请确保 assets 目录下有 yolov8n.tflite 和 labels.txt
-        yoloDetector = new YoloDetector(this, "yolov8n.tflite", "labels.txt", 640, 4);
+        // 共享模型句柄在这里取；检测器在 onResume 里不等待地借出 (见 acquireDetector)
+        modelHandle = ModelRegistry.getInstance(this).acquire("yolov8n.tflite", "labels.txt", 640);
 
         // 4. 【核心交互】设置点击绿框的回调
         // 当用户点击屏幕上的绿框时，会执行这里的代码
@@ -121,8 +243,101 @@ public class RealtimeActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         isResultLocked = false; // 解锁，继续识别
-        if (resultTextView != null) {
-            resultTextView.setText("Scanning...");
+        tracker.reset(); // 离开期间的跟踪状态已过时
+        if (cameraExecutor != null) {
+            cameraExecutor.execute(sceneGate::invalidate);
+        }
+        showScanningText();
+        acquireDetector();
+        resultMailbox.clear();
+        if (!resultLoopRunning) {
+            resultLoopRunning = true;
+            Choreographer.getInstance().postFrameCallback(resultFrameCallback);
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // 页面不可见时不消费结果；回来后先清掉信箱里的旧结果
+        Choreographer.getInstance().removeFrameCallback(resultFrameCallback);
+        resultLoopRunning = false;
+        previewView.removeCallbacks(acquireRetry);
+    }
+
+    /**
+     * 从共享池借出一个检测器，整个页面生命周期内独占使用 (主线程)
+     *
+     * 绝不在主线程上等待：池里的实例都被占用时显示忙碌状态，页面可见期间每隔 DETECTOR_RETRY_MS 再试一次。
+     * 借到的实例可能还在后台加载，就绪后再在主线程上配置它并搭建流水线。
+     */
+    private void acquireDetector() {
+        if (yoloDetector != null || modelHandle == null || isDestroyed()) return;
+        YoloDetector detector = modelHandle.getPool().tryAcquire();
+        if (detector == null) {
+            Log.w(TAG, "检测器都在使用中，" + DETECTOR_RETRY_MS + " ms 后重试");
+            showBusyText();
+            previewView.removeCallbacks(acquireRetry);
+            previewView.postDelayed(acquireRetry, DETECTOR_RETRY_MS);
+            return;
+        }
+        yoloDetector = detector;
+        showScanningText();
+        detector.getReadiness().whenCompleteAsync((ready, error) -> {
+            if (error != null) {
+                onDetectorFailed(detector, error);
+            } else {
+                onDetectorReady(detector);
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    /**
+     * 检测器加载或预热失败 (主线程)：提示错误，把实例还给池 (池会丢弃它)，不再停留在 "Scanning..."
+     * 下次 onResume 会重新借一个新实例再试
+     */
+    private void onDetectorFailed(YoloDetector detector, Throwable error) {
+        Log.e(TAG, "检测器加载失败", error);
+        // 页面已销毁时由 releaseDetector 归还
+        if (isDestroyed() || yoloDetector != detector) return;
+        yoloDetector = null;
+        modelHandle.getPool().release(detector);
+        showErrorText();
+        Toast.makeText(this, "Failed to load the detection model", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * 检测器加载 + 预热完成 (主线程)：设置课程类别、ROI、解码和分辨率策略，搭建流水线
+     */
+    private void onDetectorReady(YoloDetector detector) {
+        if (isDestroyed()) return;
+        ArrayList<String> lessonClasses = getIntent().getStringArrayListExtra(EXTRA_ACTIVE_CLASSES);
+        if (lessonClasses != null) {
+            detector.setActiveClasses(lessonClasses);
+        }
+        if (USE_ROI_MODE && focusBoxView != null) {
+            // 等对焦框完成布局后再取区域；帧尺寸要等相机线程拿到帧才知道，换算见 updateRegionOfInterest
+            focusBoxView.post(() -> {
+                RectF region = focusBoxView.getNormalizedRegion(ROI_MARGIN);
+                if (region != null && !isDestroyed()) {
+                    focusViewWidth = focusBoxView.getWidth();
+                    focusViewHeight = focusBoxView.getHeight();
+                    focusRegionInView = region;
+                }
+            });
+        }
+        if (USE_PARALLEL_DECODE) {
+            detector.setParallelDecode(true);
+        }
+        if (USE_ADAPTIVE_RESOLUTION) {
+            detector.setAdaptiveResolution(
+                    new ResolutionPolicy(ADAPTIVE_SIZES, 640, LATENCY_BUDGET_MS));
+        }
+        if (USE_PIPELINED_ANALYZER && pipelinedAnalyzer == null) {
+            PipelinedFrameAnalyzer pipeline = new PipelinedFrameAnalyzer(detector, this::onDetections, rgbaConverter);
+            // 推理阶段也是一个检测流：页面销毁时立即取消，不再推理等待中的帧、不再回调结果
+            DetectionStreams.bindTo(this, pipeline.getInferenceStream());
+            pipelinedAnalyzer = pipeline;
         }
     }
 
@@ -148,68 +363,16 @@ public class RealtimeActivity extends AppCompatActivity {
                 preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
                 // 2. 分析器配置
+                // YUV 直通模式下不再让 CameraX 转 RGBA，由 YoloDetector 直接读取 YUV 平面
                 ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
                         .setResolutionSelector(resolutionSelector)
                         .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                        .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888)
+                        .setOutputImageFormat(USE_YUV_PIPELINE
+                                ? ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888
+                                : ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888)
                         .build();
 
-                imageAnalysis.setAnalyzer(cameraExecutor, imageProxy -> {
-                    // 如果被锁定（正在跳转中），直接忽略这一帧
-                    if (isResultLocked) {
-                        imageProxy.close();
-                        return;
-                    }
-
-                    try {
-                        @SuppressLint("UnsafeOptInUsageError")
-                        Bitmap bitmap = imageProxy.toBitmap();
-                        int rotation = imageProxy.getImageInfo().getRotationDegrees();
-
-                        // 【旋转修正】
-                        if (rotation != 0) {
-                            Matrix matrix = new Matrix();
-                            matrix.postRotate(rotation);
-                            bitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-                        }
-
-                        // 【YOLO 识别】
-                        List<YoloDetector.Result> results = yoloDetector.detect(bitmap);
-
-                        // 【UI 更新】
-                        runOnUiThread(() -> {
-                            if (results != null && !results.isEmpty()) {
-                                // 只取第一名 (Top 1)
-                                YoloDetector.Result best = results.get(0);
-
-                                // 构造单元素列表传给 OverlayView
-                                List<YoloDetector.Result> topOneList = new ArrayList<>();
-                                topOneList.add(best);
-
-                                if (overlayView != null) {
-                                    overlayView.setResults(topOneList);
-                                }
-
-                                // 更新底部文字
-                                String labelText = best.getLabel() + String.format(" %.0f%%", best.getScore() * 100);
-                                resultTextView.setText(labelText);
-
-                            } else {
-                                // 没有识别到物体
-                                if (overlayView != null) {
-                                    overlayView.setResults(new ArrayList<>());
-                                }
-                                resultTextView.setText("Scanning...");
-                            }
-                        });
-
-                    } catch (Exception e) {
-                        Log.e(TAG, "Analysis error", e);
-                    } finally {
-                        // 必须关闭，否则相机卡死
-                        imageProxy.close();
-                    }
-                });
+                imageAnalysis.setAnalyzer(cameraExecutor, frameStream::submit);
 
                 CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
                 cameraProvider.unbindAll();
@@ -221,6 +384,231 @@ public class RealtimeActivity extends AppCompatActivity {
         }, ContextCompat.getMainExecutor(this));
     }
 
+    /**
+     * 场景变化门控 (相机线程)：plane[0] 在 YUV 模式下是亮度平面，RGBA 模式下按像素跨度读取 R 通道
+     */
+    private boolean isStaticScene(ImageProxy imageProxy) {
+        ImageProxy.PlaneProxy plane = imageProxy.getPlanes()[0];
+        boolean skip = sceneGate.shouldSkip(plane.getBuffer(), imageProxy.getWidth(), imageProxy.getHeight(),
+                plane.getRowStride(), plane.getPixelStride());
+        PipelinedFrameAnalyzer pipeline = pipelinedAnalyzer;
+        if (!skip && pipeline != null) {
+            sceneGate.recordInferenceMs(pipeline.getAverageLatencyMs());
+        }
+
+        // 每 3 秒打印一次统计
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastGateLogTime > 3000) {
+            Log.d(TAG, String.format("SceneGate: hit rate %.0f%%, saved %.0f ms, cost %.2f ms/frame",
+                    sceneGate.getHitRate() * 100, sceneGate.getSavedMs(), sceneGate.getGateCostMs()));
+            lastGateLogTime = now;
+        }
+        return skip;
+    }
+
+    /**
+     * ROI 模式 (相机线程)：把对焦框从 View 坐标换算到正向分析帧坐标后交给检测器
+     * 预览是 fillStart 裁剪显示的，直接用 View 归一化坐标会偏到框的右下方
+     */
+    private void updateRegionOfInterest(ImageProxy imageProxy) {
+        RectF viewRegion = focusRegionInView;
+        YoloDetector detector = yoloDetector;
+        if (viewRegion == null || detector == null) return;
+        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        boolean swap = rotation == 90 || rotation == 270;
+        int frameWidth = swap ? imageProxy.getHeight() : imageProxy.getWidth();
+        int frameHeight = swap ? imageProxy.getWidth() : imageProxy.getHeight();
+        if (viewRegion == mappedFocusRegion && detector == mappedDetector
+                && frameWidth == mappedFrameWidth && frameHeight == mappedFrameHeight) {
+            return;
+        }
+        detector.setRegionOfInterest(FocusBoxView.toFrameRegion(
+                viewRegion, focusViewWidth, focusViewHeight, frameWidth, frameHeight));
+        mappedFocusRegion = viewRegion;
+        mappedDetector = detector;
+        mappedFrameWidth = frameWidth;
+        mappedFrameHeight = frameHeight;
+    }
+
+    /**
+     * YUV 直通模式：颜色转换、旋转、下采样一遍写进模型输入，不产生任何 RGB 位图
+     */
+    private List<YoloDetector.Result> detectYuv(ImageProxy imageProxy) {
+        ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
+        return yoloDetector.detectYuv(
+                planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                imageProxy.getWidth(), imageProxy.getHeight(),
+                planes[0].getRowStride(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                imageProxy.getImageInfo().getRotationDegrees());
+    }
+
+    /**
+     * RGBA 兼容模式：toBitmap + 旋转后再交给检测器
+     */
+    private List<YoloDetector.Result> detectRgba(ImageProxy imageProxy) {
+        // 取帧 + 旋转都复用池里的位图，detect() 同步读完后立即归还
+        Bitmap bitmap = rgbaConverter.toUprightBitmap(imageProxy);
+        try {
+            return yoloDetector.detect(bitmap);
+        } finally {
+            rgbaConverter.release(bitmap);
+        }
+    }
+
+    /**
+     * 处理一帧 (相机线程，frameStream 调用)
+     *
+     * @return 要展示的结果；null = 这一帧没有要展示的 (被忽略，或交给了流水线异步回调)
+     */
+    private List<YoloDetector.Result> analyzeFrame(ImageProxy imageProxy) {
+        // 如果被锁定（正在跳转中）或检测器不可用 / 尚未就绪，直接忽略这一帧
+        if (isResultLocked || yoloDetector == null || !yoloDetector.isReady()) {
+            imageProxy.close();
+            return null;
+        }
+
+        // 非关键帧：不跑检测器，直接用跟踪器预测的位置
+        if (USE_TRACKING && !tracker.needsDetection()) {
+            imageProxy.close();
+            return tracker.predict(System.nanoTime());
+        }
+
+        // 关键帧遇上静止画面：直接在亮度平面上比较缩略图，几乎没变就复用上次的结果
+        if (USE_SCENE_GATE && isStaticScene(imageProxy)) {
+            imageProxy.close();
+            return lastResults;
+        }
+
+        if (USE_ROI_MODE) {
+            updateRegionOfInterest(imageProxy);
+        }
+
+        // 流水线模式：在这里预处理并关闭 imageProxy，推理交给流水线自己的推理流，
+        // 结果经 onDetections 从推理线程回来，所以这里返回 null
+        PipelinedFrameAnalyzer pipeline = pipelinedAnalyzer;
+        if (pipeline != null) {
+            pipeline.analyze(imageProxy);
+            return null;
+        }
+        if (USE_PIPELINED_ANALYZER) {
+            // 流水线还没在主线程搭好 (这一帧没有推理，不能作为门控的参考帧)
+            sceneGate.invalidate();
+            imageProxy.close();
+            return null;
+        }
+
+        try {
+            // 【YOLO 识别】
+            long start = System.nanoTime();
+            List<YoloDetector.Result> results = USE_YUV_PIPELINE
+                    ? detectYuv(imageProxy)
+                    : detectRgba(imageProxy);
+            sceneGate.recordInferenceMs((System.nanoTime() - start) / 1e6);
+            return track(results);
+        } finally {
+            // 必须关闭，否则相机卡死
+            imageProxy.close();
+        }
+    }
+
+    /**
+     * 流水线模式下关键帧的检测结果 (推理线程回调)
+     */
+    private void onDetections(List<YoloDetector.Result> results) {
+        showResults(track(results));
+    }
+
+    private List<YoloDetector.Result> track(List<YoloDetector.Result> results) {
+        return USE_TRACKING ? tracker.update(results, System.nanoTime()) : results;
+    }
+
+    /**
+     * 任意线程调用：只把结果放进信箱，由主线程在下一个 vsync 取走
+     */
+    private void showResults(List<YoloDetector.Result> results) {
+        lastResults = results;
+        resultMailbox.publish(results != null ? results : Collections.emptyList());
+    }
+
+    /**
+     * 主线程每个 vsync 一次：有新结果才刷新界面
+     */
+    private void onResultFrame(long frameTimeNanos) {
+        if (!resultLoopRunning) return;
+        Choreographer.getInstance().postFrameCallback(resultFrameCallback);
+
+        List<YoloDetector.Result> results = resultMailbox.take();
+        if (results != null) renderResults(results);
+
+        // 每 3 秒打印一次统计
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastMailboxLogTime > 3000) {
+            Log.d(TAG, "结果信箱: " + resultMailbox + ", 帧流: " + frameStream);
+            lastMailboxLogTime = now;
+        }
+    }
+
+    private void renderResults(List<YoloDetector.Result> results) {
+        if (!results.isEmpty()) {
+            // 只取第一名 (Top 1)；正在展示的目标还在时继续展示它
+            YoloDetector.Result best = results.get(0);
+            for (YoloDetector.Result r : results) {
+                if (r.getTrackId() != YoloDetector.NO_TRACK && r.getTrackId() == shownTrackId) {
+                    best = r;
+                    break;
+                }
+            }
+            shownTrackId = best.getTrackId();
+
+            // 复用单元素列表传给 OverlayView (OverlayView 只在主线程读它)
+            topOneList.clear();
+            topOneList.add(best);
+
+            if (overlayView != null) {
+                overlayView.setResults(topOneList);
+            }
+
+            // 更新底部文字：类别和百分比都没变就不重设 (setText 会触发重新布局)
+            int percent = Math.round(best.getScore() * 100);
+            if (best.getClassIndex() != shownTextClass || percent != shownTextPercent) {
+                shownTextClass = best.getClassIndex();
+                shownTextPercent = percent;
+                resultTextView.setText(best.getLabel() + " " + percent + "%");
+            }
+
+        } else {
+            // 没有识别到物体 (空列表不会被 OverlayView 持有，共用不可变的空列表即可)
+            if (overlayView != null) {
+                overlayView.setResults(Collections.emptyList());
+            }
+            showScanningText();
+        }
+    }
+
+    private void showBusyText() {
+        if (resultTextView != null && shownTextClass != TEXT_BUSY) {
+            resultTextView.setText("Detector busy, please wait...");
+        }
+        shownTextClass = TEXT_BUSY;
+        shownTextPercent = -1;
+    }
+
+    private void showErrorText() {
+        if (resultTextView != null && shownTextClass != TEXT_ERROR) {
+            resultTextView.setText("Model failed to load.");
+        }
+        shownTextClass = TEXT_ERROR;
+        shownTextPercent = -1;
+    }
+
+    private void showScanningText() {
+        if (resultTextView != null && shownTextClass != TEXT_SCANNING) {
+            resultTextView.setText("Scanning...");
+        }
+        shownTextClass = TEXT_SCANNING;
+        shownTextPercent = -1;
+    }
+
     private boolean allPermissionsGranted() {
         return ContextCompat.checkSelfPermission(
                 this, Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED;
@@ -242,11 +630,37 @@ public class RealtimeActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        previewView.removeCallbacks(acquireRetry);
         if (cameraExecutor != null) {
+            // 检测器必须等它上面的工作全部结束才能归还 (拍照页可能马上借走同一个实例)：
+            // 收尾任务排在相机线程最后，当前帧处理完、流水线推理线程退出后才重置并归还，主线程不等待
+            cameraExecutor.execute(this::releaseDetector);
             cameraExecutor.shutdown();
+        } else {
+            releaseDetector();
+        }
+    }
+
+    /**
+     * 相机线程上的最后一个任务：停掉流水线 (等推理结束)，恢复检测器的默认设置后还给池
+     */
+    private void releaseDetector() {
+        PipelinedFrameAnalyzer pipeline = pipelinedAnalyzer;
+        if (pipeline != null) {
+            pipeline.close();
         }
-        if (yoloDetector != null) {
-            yoloDetector.close();
+        framePool.clear();
+        if (modelHandle != null) {
+            // 归还检测器，模型本身由注册表按空闲超时 / 内存压力回收
+            // 池里的实例会被拍照识别复用，先恢复固定分辨率、整帧识别和全部类别
+            if (yoloDetector != null) {
+                yoloDetector.setAdaptiveResolution(null);
+                yoloDetector.setRegionOfInterest(null);
+                yoloDetector.setActiveClasses(null);
+                yoloDetector.setParallelDecode(false);
+            }
+            modelHandle.getPool().release(yoloDetector);
+            modelHandle.release();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package com.example.myapplication.ui.ar;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.camera.core.ImageProxy;
+
+import com.example.myapplication.ml.BitmapPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * RGBA 兼容模式的零分配取帧：相机 RGBA_8888 帧 -> 转正的位图
+ *
+ * 旧做法每帧 imageProxy.toBitmap() 新建一张位图，旋转时 Bitmap.createBitmap 再建一张。这里：
+ * 1. 相机缓冲 (行尾可能有填充) 按行拷进复用的暂存区，再 copyPixelsFromBuffer 进池里的位图
+ * 2. 旋转用复用的 Matrix + Canvas 画进池里另一张 (宽高对调的) 位图
+ * 3. 调用方用完后 release()，两张位图都回到池里，稳态下每帧不分配任何位图
+ *
+ * 只在相机分析线程上使用 (非线程安全)；BitmapPool 本身可以跨线程共享。
+ */
+class RgbaFrameConverter {
+
+    private static final String TAG = "VISION_DEBUG";
+    private static final long STATS_LOG_INTERVAL_MS = 10_000;
+
+    private final BitmapPool pool;
+    private final Matrix matrix = new Matrix();
+    private final Canvas canvas = new Canvas();
+    private ByteBuffer staging;
+    private long lastStatsLogTime;
+
+    RgbaFrameConverter(BitmapPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return 转正后的位图 (来自池)，用完必须 release()
+     */
+    Bitmap toUprightBitmap(ImageProxy imageProxy) {
+        int width = imageProxy.getWidth();
+        int height = imageProxy.getHeight();
+        ImageProxy.PlaneProxy plane = imageProxy.getPlanes()[0];
+
+        Bitmap raw = pool.acquire(width, height);
+        raw.copyPixelsFromBuffer(packRows(plane.getBuffer(), plane.getRowStride(), width, height));
+
+        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        if (rotation == 0) {
+            logStats();
+            return raw;
+        }
+
+        // 【旋转修正】旋转后平移回正象限
+        boolean swap = rotation == 90 || rotation == 270;
+        Bitmap upright = pool.acquire(swap ? height : width, swap ? width : height);
+        matrix.setRotate(rotation);
+        switch (rotation) {
+            case 90: matrix.postTranslate(height, 0); break;
+            case 180: matrix.postTranslate(width, height); break;
+            case 270: matrix.postTranslate(0, width); break;
+            default: break;
+        }
+        canvas.setBitmap(upright);
+        canvas.drawBitmap(raw, matrix, null);
+        canvas.setBitmap(null);
+        pool.release(raw);
+        logStats();
+        return upright;
+    }
+
+    void release(Bitmap bitmap) {
+        pool.release(bitmap);
+    }
+
+    /**
+     * 去掉行尾填充：行紧密排列时直接用相机缓冲，否则逐行拷进暂存区
+     */
+    private ByteBuffer packRows(ByteBuffer src, int rowStride, int width, int height) {
+        int rowBytes = width * 4;
+        src.rewind();
+        if (rowStride == rowBytes && src.remaining() >= rowBytes * height) {
+            return src;
+        }
+        int needed = rowBytes * height;
+        if (staging == null || staging.capacity() < needed) {
+            staging = ByteBuffer.allocateDirect(needed).order(ByteOrder.nativeOrder());
+        }
+        staging.clear();
+        int limit = src.limit();
+        for (int y = 0; y < height; y++) {
+            int start = y * rowStride;
+            src.limit(start + rowBytes);
+            src.position(start);
+            staging.put(src);
+            src.limit(limit);
+        }
+        staging.flip();
+        return staging;
+    }
+
+    private void logStats() {
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastStatsLogTime > STATS_LOG_INTERVAL_MS) {
+            Log.d(TAG, "RGBA 取帧: " + pool);
+            lastStatsLogTime = now;
+        }
+    }
+}
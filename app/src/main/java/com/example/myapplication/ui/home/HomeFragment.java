@@ -11,6 +11,7 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.myapplication.R;
+import com.example.myapplication.ml.ModelRegistry;
 import com.example.myapplication.ui.ar.RealtimeActivity;
 import com.example.myapplication.ui.photo.PhotoRecognitionActivity;
 
@@ -38,4 +39,11 @@ public class HomeFragment extends Fragment {
 
         return view;
     }
-}
\ No newline at end of file
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        // 停留在首页时就在后台加载并预热模型，进入扫描页后第一帧即可推理
+        ModelRegistry.getInstance(requireContext()).prewarm("yolov8n.tflite", "labels.txt", 640);
+    }
+}
@@ -1,11 +1,14 @@
 package com.example.myapplication.ui.photo;
 
 import android.app.Activity;
+import android.content.ClipData;
+import android.content.ContentResolver;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.text.TextUtils;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.View;
 import android.widget.ImageButton;
@@ -17,28 +20,76 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 
 import com.example.myapplication.R;
+import com.example.myapplication.ml.BatchRunner;
+import com.example.myapplication.ml.BitmapPool;
+import com.example.myapplication.ml.DetectionStream;
+import com.example.myapplication.ml.DetectionStreams;
+import com.example.myapplication.ml.DetectorPool;
+import com.example.myapplication.ml.ModelRegistry;
+import com.example.myapplication.ml.TiledDetector;
 import com.example.myapplication.ml.YoloDetector;
 import com.example.myapplication.ui.practice.PracticeActivity;
 import com.example.myapplication.view.OverlayView;
 import com.google.android.material.floatingactionbutton.ExtendedFloatingActionButton;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PhotoRecognitionActivity extends AppCompatActivity {
 
     private static final String TAG = "VISION_DEBUG";
+    private static final long DETECT_TIMEOUT_MS = 5000;
+    // 模型还在加载 (首次打开) 时，隔这么久用同一张图再识别一次
+    private static final long MODEL_RETRY_MS = 1000;
+
+    // true = 大图切成重叠的 640 像素方块并行推理 (小物体不再被整体缩放抹掉)
+    private static final boolean USE_TILED_INFERENCE = true;
+    private static final int TILE_PARALLELISM = 2;
+    private static final int TILE_SIZE = 640;
+    private static final float TILE_OVERLAP = 0.2f;
+    private static final int MAX_TILES_PER_SIDE = 3;
+
+    // 多选批量导入：并发数 = 检测器池大小，另外最多预取几张 (每张解码后几 MB)
+    private static final int BATCH_QUEUE_CAPACITY = 4;
+    // 带 EXIF 旋转的照片解码时的中间位图池 (约一张屏幕长边大小的 4:3 照片 + 几张检测尺寸的)
+    private static final long DECODE_SCRATCH_BYTES = 20L * 1024 * 1024;
 
     private ImageView ivSelectedImage;
     private TextView tvPhotoRecognitionResult;
     private ExtendedFloatingActionButton btnConfirmPhotoRecognition;
     private OverlayView overlayView;
 
-    private YoloDetector yoloDetector;
+    // 共享检测器池 + 识别线程：连续选图时排队执行，不会两次推理同时使用同一份缓冲区
+    private ModelRegistry.Handle modelHandle;
+    private ExecutorService recognitionExecutor;
+    // 单张识别：解码流 -> 检测流，都跑在识别线程上；选了新图片时旧的工作直接作废，页面销毁时取消
+    private DetectionStream<Uri, Bitmap> decodeStream;
+    private DetectionStream<Bitmap, List<YoloDetector.Result>> detectStream;
+    private TiledDetector tiledDetector;
+    private final BitmapPool decodeScratch = new BitmapPool(DECODE_SCRATCH_BYTES);
+    private BatchRunner<Uri, PhotoResult> batchRunner;
+    private BatchRunner<Uri, PhotoResult>.Batch currentBatch;
+    // 批量导入时累计的单词 -> 出现次数 (只在主线程读写)
+    private final Map<String, Integer> batchWordCounts = new LinkedHashMap<>();
+    // 只显示最后一次批量导入的结果
+    private final AtomicInteger recognitionSeq = new AtomicInteger();
 
     private String currentRecognitionResult = null;
+    // 正在识别的单张图片 (主线程)，模型还没加载好时用它重试
+    private Bitmap currentBitmap;
+    private final Runnable recognizeRetry = this::retryRecognition;
 
     private ActivityResultLauncher<Intent> pickImageLauncher;
 
@@ -58,23 +109,26 @@ public class PhotoRecognitionActivity extends AppCompatActivity {
             overlayView.bringToFront();
         }
 
-        // Initialize the recognition helper with model input size
-        yoloDetector = new YoloDetector(this, "yolov8n.tflite", "labels.txt", 640, 4);
+        // Acquire the shared detector pool (cached across activities by ModelRegistry)
+        modelHandle = ModelRegistry.getInstance(this).acquire("yolov8n.tflite", "labels.txt", 640);
+        recognitionExecutor = Executors.newSingleThreadExecutor();
+        if (USE_TILED_INFERENCE) {
+            tiledDetector = new TiledDetector(modelHandle.getPool(), TILE_PARALLELISM)
+                    .setTileSize(TILE_SIZE)
+                    .setOverlap(TILE_OVERLAP)
+                    .setMaxTilesPerSide(MAX_TILES_PER_SIDE);
+        }
+        createStreams();
 
         pickImageLauncher = registerForActivityResult(
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                        Uri imageUri = result.getData().getData();
-                        try {
-                            Bitmap bitmap = MediaStore.Images.Media.getBitmap(this.getContentResolver(), imageUri);
-                            ivSelectedImage.setImageBitmap(bitmap);
-                            recognizeImage(bitmap);
-                        } catch (IOException e) {
-                            Log.wtf(TAG, "!!! 加载图片失败 !!!", e);
-                            Toast.makeText(this, "Failed to load image", Toast.LENGTH_SHORT).show();
-                            tvPhotoRecognitionResult.setText("Failed to load image.");
-                            btnConfirmPhotoRecognition.setVisibility(View.GONE);
+                        List<Uri> uris = pickedUris(result.getData());
+                        if (uris.size() > 1) {
+                            startBatch(uris);
+                        } else if (!uris.isEmpty()) {
+                            loadAndRecognize(uris.get(0));
                         }
                     } else {
                         finish();
@@ -95,47 +149,261 @@ public class PhotoRecognitionActivity extends AppCompatActivity {
         btnClosePhoto.setOnClickListener(v -> finish());
     }
 
+    /**
+     * EXTRA_ALLOW_MULTIPLE 只对 ACTION_GET_CONTENT / ACTION_OPEN_DOCUMENT 有定义，
+     * 很多相册应用在 ACTION_PICK 下会忽略它 (多选静默退化成单选)；多选结果从 getClipData() 读取
+     */
     private void openImagePicker() {
-        Intent galleryIntent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
+        Intent galleryIntent = new Intent(Intent.ACTION_GET_CONTENT);
+        galleryIntent.setType("image/*");
+        galleryIntent.addCategory(Intent.CATEGORY_OPENABLE);
+        galleryIntent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
         pickImageLauncher.launch(galleryIntent);
     }
 
-    private void recognizeImage(Bitmap bitmap) {
-        new Thread(() -> {
-            try {
-                List<YoloDetector.Result> results = yoloDetector.detect(bitmap);
+    private static List<Uri> pickedUris(Intent data) {
+        List<Uri> uris = new ArrayList<>();
+        ClipData clip = data.getClipData();
+        if (clip != null) {
+            for (int i = 0; i < clip.getItemCount(); i++) {
+                Uri uri = clip.getItemAt(i).getUri();
+                if (uri != null) uris.add(uri);
+            }
+        }
+        if (uris.isEmpty() && data.getData() != null) {
+            uris.add(data.getData());
+        }
+        return uris;
+    }
+
+    // ==========================================
+    // 批量导入 (相册多选)
+    // ==========================================
+
+    /** 批量任务的单项输出：缩小后的图 (用于预览) + 检测结果 */
+    private static final class PhotoResult {
+        final Bitmap bitmap;
+        final List<YoloDetector.Result> results;
+
+        PhotoResult(Bitmap bitmap, List<YoloDetector.Result> results) {
+            this.bitmap = bitmap;
+            this.results = results;
+        }
+    }
+
+    private void startBatch(List<Uri> uris) {
+        cancelBatch();
+        cancelRetry();
+        final int seq = recognitionSeq.incrementAndGet();
+        // 还在跑的单张识别作废
+        decodeStream.supersede();
+        detectStream.supersede();
+        batchWordCounts.clear();
+        currentRecognitionResult = null;
+        btnConfirmPhotoRecognition.setVisibility(View.GONE);
+        tvPhotoRecognitionResult.setText(String.format("Scanning 0/%d...", uris.size()));
+
+        DetectorPool pool = modelHandle.getPool();
+        if (batchRunner == null) {
+            batchRunner = new BatchRunner<>(pool.getPoolSize(), BATCH_QUEUE_CAPACITY);
+        }
+        // 批量模式追求吞吐：按检测器输入尺寸解码，不切片
+        final ContentResolver resolver = getContentResolver();
+        currentBatch = batchRunner.submit(uris, uri -> {
+            Bitmap bitmap = SampledImageLoader.decode(resolver, uri, TILE_SIZE, decodeScratch);
+            return new PhotoResult(bitmap, pool.detect(bitmap, DETECT_TIMEOUT_MS));
+        }, new BatchRunner.Listener<Uri, PhotoResult>() {
+            @Override
+            public void onItem(int index, Uri input, PhotoResult output, Throwable error, long latencyMs,
+                               BatchRunner.Progress progress) {
+                if (error != null) {
+                    Log.e(TAG, "批量识别失败: " + input, error);
+                }
                 runOnUiThread(() -> {
-                    if (overlayView != null) {
-                        overlayView.setResults(results);
-                    }
-                    if (results.isEmpty()) {
-                        currentRecognitionResult = null;
-                        tvPhotoRecognitionResult.setText("No object detected.");
-                        btnConfirmPhotoRecognition.setVisibility(View.GONE);
-                    } else {
-                        YoloDetector.Result best = results.get(0);
-                        currentRecognitionResult = best.getLabel();
-                        String displayResult = String.format("%s (%.0f%%)", best.getLabel(), best.getScore() * 100);
-                        tvPhotoRecognitionResult.setText(displayResult);
-                        btnConfirmPhotoRecognition.setVisibility(View.VISIBLE);
-                    }
+                    if (seq != recognitionSeq.get()) return;
+                    onBatchItem(output, progress);
                 });
-            } catch (Exception e) {
-                Log.wtf(TAG, "!!! 识别过程出错 !!!", e);
+            }
+
+            @Override
+            public void onFinished(BatchRunner.Summary summary) {
+                Log.d(TAG, "批量识别: " + summary);
                 runOnUiThread(() -> {
-                    tvPhotoRecognitionResult.setText("Error: " + e.getMessage());
-                    btnConfirmPhotoRecognition.setVisibility(View.GONE);
+                    if (seq != recognitionSeq.get()) return;
+                    currentBatch = null;
+                    onBatchFinished(summary);
                 });
-                currentRecognitionResult = null;
             }
-        }).start();
+        });
+    }
+
+    private void onBatchItem(@Nullable PhotoResult output, BatchRunner.Progress progress) {
+        String labels = "";
+        if (output != null) {
+            ivSelectedImage.setImageBitmap(output.bitmap);
+            if (overlayView != null) {
+                overlayView.setResults(output.results);
+            }
+            Set<String> seen = new LinkedHashSet<>();
+            for (YoloDetector.Result r : output.results) seen.add(r.getLabel());
+            for (String label : seen) {
+                Integer count = batchWordCounts.get(label);
+                batchWordCounts.put(label, count == null ? 1 : count + 1);
+            }
+            labels = TextUtils.join(", ", seen);
+        }
+        int done = progress.completed + progress.failed;
+        tvPhotoRecognitionResult.setText(String.format("Scanning %d/%d  %s", done, progress.total, labels));
+    }
+
+    private void onBatchFinished(BatchRunner.Summary summary) {
+        // 出现次数最多的单词作为练习目标
+        String best = null;
+        int bestCount = 0;
+        for (Map.Entry<String, Integer> e : batchWordCounts.entrySet()) {
+            if (e.getValue() > bestCount) {
+                best = e.getKey();
+                bestCount = e.getValue();
+            }
+        }
+        currentRecognitionResult = best;
+        // 失败的 (例如模型还没加载好而超时) 单独列出，不算作"没有物体"
+        tvPhotoRecognitionResult.setText(String.format("%d photos%s, %d words%s\n%.1f img/s  p50 %d ms  p95 %d ms",
+                summary.completed, summary.failed > 0 ? " (" + summary.failed + " failed)" : "",
+                batchWordCounts.size(), best != null ? " (top: " + best + ")" : "",
+                summary.imagesPerSecond, summary.p50LatencyMs, summary.p95LatencyMs));
+        btnConfirmPhotoRecognition.setVisibility(best != null ? View.VISIBLE : View.GONE);
+    }
+
+    private void cancelBatch() {
+        if (currentBatch != null) {
+            currentBatch.cancel();
+            currentBatch = null;
+        }
+    }
+
+    /**
+     * 解码目标：长边同时满足屏幕显示和检测器 (切片模式下要覆盖整张块网格)
+     */
+    private int decodeTargetLongSide() {
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        int viewLong = Math.max(metrics.widthPixels, metrics.heightPixels);
+        int detectorLong = TILE_SIZE;
+        if (tiledDetector != null) {
+            int step = TILE_SIZE - Math.round(TILE_SIZE * TILE_OVERLAP);
+            detectorLong = TILE_SIZE + (MAX_TILES_PER_SIDE - 1) * step;
+        }
+        return Math.max(viewLong, detectorLong);
+    }
+
+    private void createStreams() {
+        Executor mainExecutor = ContextCompat.getMainExecutor(this);
+        decodeStream = DetectionStreams.bindTo(this, new DetectionStream<Uri, Bitmap>(
+                recognitionExecutor, mainExecutor,
+                uri -> SampledImageLoader.decode(getContentResolver(), uri, decodeTargetLongSide(),
+                        decodeScratch),
+                new DetectionStream.Sink<Bitmap>() {
+                    @Override
+                    public void onResult(Bitmap bitmap) {
+                        ivSelectedImage.setImageBitmap(bitmap);
+                        currentBitmap = bitmap;
+                        detectStream.submitLatest(bitmap);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        Log.wtf(TAG, "!!! 加载图片失败 !!!", error);
+                        Toast.makeText(PhotoRecognitionActivity.this, "Failed to load image", Toast.LENGTH_SHORT).show();
+                        tvPhotoRecognitionResult.setText("Failed to load image.");
+                        btnConfirmPhotoRecognition.setVisibility(View.GONE);
+                    }
+                }, null));
+
+        detectStream = DetectionStreams.bindTo(this, new DetectionStream<Bitmap, List<YoloDetector.Result>>(
+                recognitionExecutor, mainExecutor,
+                bitmap -> tiledDetector != null
+                        ? tiledDetector.detect(bitmap, DETECT_TIMEOUT_MS)
+                        : modelHandle.getPool().detect(bitmap, DETECT_TIMEOUT_MS),
+                new DetectionStream.Sink<List<YoloDetector.Result>>() {
+                    @Override
+                    public void onResult(List<YoloDetector.Result> results) {
+                        showRecognition(results);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        if (error instanceof TimeoutException) {
+                            // 不是"没有物体"：模型还在加载或检测器都在忙，稍后用同一张图重试
+                            Log.w(TAG, "检测器尚未就绪，" + MODEL_RETRY_MS + " ms 后重试: " + error.getMessage());
+                            tvPhotoRecognitionResult.setText("Model still loading, please wait...");
+                            btnConfirmPhotoRecognition.setVisibility(View.GONE);
+                            currentRecognitionResult = null;
+                            ivSelectedImage.removeCallbacks(recognizeRetry);
+                            ivSelectedImage.postDelayed(recognizeRetry, MODEL_RETRY_MS);
+                            return;
+                        }
+                        Log.wtf(TAG, "!!! 识别过程出错 !!!", error);
+                        tvPhotoRecognitionResult.setText("Error: " + error.getMessage());
+                        btnConfirmPhotoRecognition.setVisibility(View.GONE);
+                        currentRecognitionResult = null;
+                    }
+                }, null));
+    }
+
+    private void retryRecognition() {
+        if (currentBitmap != null && !isDestroyed()) {
+            detectStream.submitLatest(currentBitmap);
+        }
+    }
+
+    private void cancelRetry() {
+        ivSelectedImage.removeCallbacks(recognizeRetry);
+        currentBitmap = null;
+    }
+
+    private void loadAndRecognize(Uri imageUri) {
+        cancelBatch();
+        cancelRetry();
+        recognitionSeq.incrementAndGet(); // 让还在回调的批量结果作废
+        tvPhotoRecognitionResult.setText("Loading...");
+        // 解码和识别都在识别线程上，主线程只负责显示；上一张图片还没完成的工作全部作废
+        detectStream.supersede();
+        decodeStream.submitLatest(imageUri);
+    }
+
+    private void showRecognition(List<YoloDetector.Result> results) {
+        if (overlayView != null) {
+            overlayView.setResults(results);
+        }
+        if (results.isEmpty()) {
+            currentRecognitionResult = null;
+            tvPhotoRecognitionResult.setText("No object detected.");
+            btnConfirmPhotoRecognition.setVisibility(View.GONE);
+        } else {
+            YoloDetector.Result best = results.get(0);
+            currentRecognitionResult = best.getLabel();
+            String displayResult = String.format("%s (%.0f%%)", best.getLabel(), best.getScore() * 100);
+            tvPhotoRecognitionResult.setText(displayResult);
+            btnConfirmPhotoRecognition.setVisibility(View.VISIBLE);
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (yoloDetector != null) {
-            yoloDetector.close();
+        cancelRetry();
+        if (recognitionExecutor != null) {
+            recognitionExecutor.shutdownNow();
+        }
+        if (tiledDetector != null) {
+            tiledDetector.close();
+        }
+        if (batchRunner != null) {
+            batchRunner.close();
+        }
+        if (modelHandle != null) {
+            modelHandle.release();
         }
+        decodeScratch.clear();
     }
 }
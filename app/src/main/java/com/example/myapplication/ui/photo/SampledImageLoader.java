@@ -0,0 +1,195 @@
+package com.example.myapplication.ui.photo;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.myapplication.ml.BitmapPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 相册图片的降采样解码
+ *
+ * MediaStore.Images.Media.getBitmap 会把 1200 万像素的照片完整解码成 ARGB (约 48 MB)，
+ * 随后检测器又立刻把它缩到 640。这里分三步：
+ * 1. inJustDecodeBounds 只读尺寸 (不分配像素)
+ * 2. 读 EXIF 方向
+ * 3. 按目标长边算 inSampleSize (2 的幂，解码器直接跳采样)，剩余倍数用 inDensity/inTargetDensity
+ *    在解码时一并缩放，最后只对已经缩小的图做一次旋转
+ *
+ * 需要旋转时，解码结果只是中间缓冲：传入 scratch 池的话解码直接写进池里借出的位图 (inBitmap)，
+ * 用 Canvas 转正画到返回的位图上后立即归还，连续导入多张照片时不再每张多分配一张整图。
+ * 返回的位图交给 ImageView 显示、生命周期由页面决定，所以它本身不从池里借。
+ *
+ * 会阻塞 (读文件)，必须在后台线程调用。
+ */
+public final class SampledImageLoader {
+
+    private static final String TAG = "VISION_DEBUG";
+
+    private SampledImageLoader() {
+    }
+
+    /**
+     * @param targetLongSide 解码后长边的最小像素数 (取 ImageView 和检测器需求中较大的一个)
+     * @return 已按 EXIF 转正、长边约等于 targetLongSide 的位图 (原图更小时保持原尺寸)
+     */
+    public static Bitmap decode(ContentResolver resolver, Uri uri, int targetLongSide) throws IOException {
+        return decode(resolver, uri, targetLongSide, null);
+    }
+
+    /**
+     * @param scratch 旋转前的中间位图从这里借、用完归还；null 时每次新建
+     */
+    public static Bitmap decode(ContentResolver resolver, Uri uri, int targetLongSide,
+                                @Nullable BitmapPool scratch) throws IOException {
+        // 【第 1 步】只读尺寸
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open(resolver, uri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Cannot read image bounds: " + uri);
+        }
+
+        // 【第 2 步】EXIF 方向 (读不到就当作正向)
+        int orientation = ExifInterface.ORIENTATION_NORMAL;
+        try (InputStream in = open(resolver, uri)) {
+            orientation = new ExifInterface(in).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            Log.w(TAG, "SampledImageLoader: no EXIF for " + uri, e);
+        }
+
+        // 【第 3 步】降采样解码
+        int srcLong = Math.max(bounds.outWidth, bounds.outHeight);
+        int sampleSize = computeSampleSize(srcLong, targetLongSide);
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inSampleSize = sampleSize;
+        opts.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        int sampledLong = srcLong / sampleSize;
+        if (targetLongSide > 0 && sampledLong > targetLongSide * 5 / 4) {
+            // 2 的幂之后还大 25% 以上：让解码器顺便缩到目标尺寸，省掉一次 createScaledBitmap
+            opts.inScaled = true;
+            opts.inDensity = sampledLong;
+            opts.inTargetDensity = targetLongSide;
+        }
+        boolean pooled = scratch != null && needsTransform(orientation);
+        if (pooled) {
+            // 按上界估算解码尺寸借一张位图，解码器会把它 reconfigure 成实际尺寸
+            int w = ceilDiv(bounds.outWidth, sampleSize);
+            int h = ceilDiv(bounds.outHeight, sampleSize);
+            if (opts.inScaled) {
+                float scale = (float) opts.inTargetDensity / opts.inDensity;
+                w = (int) (w * scale + 0.5f);
+                h = (int) (h * scale + 0.5f);
+            }
+            opts.inMutable = true;
+            opts.inBitmap = scratch.acquire(w, h);
+        }
+        Bitmap decoded;
+        try (InputStream in = open(resolver, uri)) {
+            decoded = BitmapFactory.decodeStream(in, null, opts);
+        } catch (IllegalArgumentException e) {
+            if (!pooled) throw e;
+            // 借到的位图复用不了 (尺寸估小了 / 格式不支持)：退回普通解码
+            Log.w(TAG, "SampledImageLoader: inBitmap rejected for " + uri, e);
+            scratch.release(opts.inBitmap);
+            opts.inBitmap = null;
+            pooled = false;
+            try (InputStream in = open(resolver, uri)) {
+                decoded = BitmapFactory.decodeStream(in, null, opts);
+            }
+        }
+        if (decoded == null) {
+            if (pooled) scratch.release(opts.inBitmap);
+            throw new IOException("Cannot decode image: " + uri);
+        }
+        Log.d(TAG, "SampledImageLoader: " + bounds.outWidth + "x" + bounds.outHeight
+                + " -> " + decoded.getWidth() + "x" + decoded.getHeight()
+                + " (inSampleSize=" + sampleSize + ", exif=" + orientation + ")");
+
+        if (!needsTransform(orientation)) return decoded;
+        Bitmap upright = applyOrientation(decoded, orientation);
+        if (pooled) {
+            scratch.release(decoded);
+        } else {
+            decoded.recycle();
+        }
+        return upright;
+    }
+
+    /**
+     * 最大的 2 的幂采样率，保证采样后长边仍不小于 targetLongSide
+     */
+    static int computeSampleSize(int srcLongSide, int targetLongSide) {
+        int sampleSize = 1;
+        if (targetLongSide <= 0) return sampleSize;
+        while (srcLongSide / (sampleSize * 2) >= targetLongSide) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static boolean needsTransform(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_ROTATE_180:
+            case ExifInterface.ORIENTATION_ROTATE_270:
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * 把 bitmap 按 EXIF 方向转正画到一张新位图上；不回收 bitmap (由调用方归还或回收)
+     */
+    private static Bitmap applyOrientation(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90: matrix.setRotate(90); break;
+            case ExifInterface.ORIENTATION_ROTATE_180: matrix.setRotate(180); break;
+            case ExifInterface.ORIENTATION_ROTATE_270: matrix.setRotate(270); break;
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL: matrix.setScale(-1, 1); break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL: matrix.setScale(1, -1); break;
+            case ExifInterface.ORIENTATION_TRANSPOSE: matrix.setRotate(90); matrix.postScale(-1, 1); break;
+            case ExifInterface.ORIENTATION_TRANSVERSE: matrix.setRotate(270); matrix.postScale(-1, 1); break;
+            default: return bitmap;
+        }
+        // 变换后的包围盒平移回原点
+        RectF bounds = new RectF(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        Bitmap upright = Bitmap.createBitmap(Math.round(bounds.width()), Math.round(bounds.height()),
+                Bitmap.Config.ARGB_8888);
+        new Canvas(upright).drawBitmap(bitmap, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return upright;
+    }
+
+    private static InputStream open(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new IOException("Cannot open " + uri);
+        return in;
+    }
+}
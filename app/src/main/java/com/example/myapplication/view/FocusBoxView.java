@@ -5,6 +5,7 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.view.View;
 
@@ -63,6 +64,42 @@ public class FocusBoxView extends View {
         }
     }
 
+    /**
+     * 对焦框在本 View 中的归一化区域 (0~1)，四周各向外扩 margin 倍的框边长，超出部分截掉
+     * 这是 View 坐标，不是分析帧坐标：交给检测器前要经 {@link #toFrameRegion} 按预览的缩放方式换算
+     *
+     * @return 尚未完成布局时返回 null
+     */
+    public RectF getNormalizedRegion(float margin) {
+        int w = getWidth();
+        int h = getHeight();
+        if (focusRect == null || w == 0 || h == 0) return null;
+        float extra = focusRect.width() * margin;
+        return new RectF(
+                Math.max(0f, (focusRect.left - extra) / w),
+                Math.max(0f, (focusRect.top - extra) / h),
+                Math.min(1f, (focusRect.right + extra) / w),
+                Math.min(1f, (focusRect.bottom + extra) / h));
+    }
+
+    /**
+     * 把 View 归一化区域换算成分析帧 (正向) 的归一化区域
+     * 预览使用 fillStart：画面等比放大到铺满 View，左上角对齐，超出 View 的右侧 / 底部被裁掉
+     *
+     * @param frameWidth  旋转到正向后的分析帧宽 (预览和分析使用相同宽高比)
+     */
+    public static RectF toFrameRegion(RectF viewRegion, int viewWidth, int viewHeight,
+                                      int frameWidth, int frameHeight) {
+        float scale = Math.max((float) viewWidth / frameWidth, (float) viewHeight / frameHeight);
+        float shownWidth = frameWidth * scale;
+        float shownHeight = frameHeight * scale;
+        return new RectF(
+                Math.min(1f, viewRegion.left * viewWidth / shownWidth),
+                Math.min(1f, viewRegion.top * viewHeight / shownHeight),
+                Math.min(1f, viewRegion.right * viewWidth / shownWidth),
+                Math.min(1f, viewRegion.bottom * viewHeight / shownHeight));
+    }
+
     private int dpToPx(int dp) {
         return (int) (dp * getResources().getDisplayMetrics().density + 0.5f);
     }
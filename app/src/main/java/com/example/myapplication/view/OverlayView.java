@@ -5,7 +5,10 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.RectF;
+import android.os.Looper;
 import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
 
@@ -30,6 +33,74 @@ public class OverlayView extends View {
     // 复用对象（性能优化，避免在 onDraw 中重复创建）
     private final RectF boxRect = new RectF();
 
+    // 标签文字尺寸
+    private static final float TEXT_HEIGHT = 60f;
+    private static final float TEXT_PADDING = 10f;
+
+    // 【标签缓存】"类别 + 百分比" -> 拼好的文字和测好的宽度，onDraw 里不再 String.format / measureText
+    private final SparseArray<LabelText> labelCache = new SparseArray<>();
+
+    private static final class LabelText {
+        final String label;
+        final String text;
+        final float width;
+
+        LabelText(String label, String text, float width) {
+            this.label = label;
+            this.text = text;
+            this.width = width;
+        }
+    }
+
+    // =========================================================
+    // 【平滑渲染】推理只有 8~12 fps，框按推理频率跳变。开启后：
+    // 1. setResults 只更新每个框的目标位置
+    // 2. Choreographer 每个 vsync 让框按指数趋近目标 (与帧间隔无关的时间常数)
+    // 3. 有框在动的 vsync 才重绘，框都到位后停止回调
+    //    (不算局部脏区：硬件加速下 invalidate(Rect) 的区域被忽略，整个 View 照样重绘)
+    // 只在主线程上访问
+    // =========================================================
+    private static final float SMOOTHING_TAU_MS = 60f;
+    private static final float SETTLE_PX = 0.5f;
+    // 没有 trackId 时，同类且 IoU 超过该值视为同一个框
+    private static final float MATCH_IOU = 0.1f;
+
+    private boolean smoothRendering = false;
+    private final ArrayList<AnimatedBox> animatedBoxes = new ArrayList<>();
+    private final ArrayList<AnimatedBox> spareBoxes = new ArrayList<>();
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Choreographer.FrameCallback frameCallback = this::onVsync;
+    private boolean frameScheduled = false;
+    private long lastFrameNanos = 0;
+
+    private static final class AnimatedBox {
+        final RectF current = new RectF();
+        final RectF target = new RectF();
+        YoloDetector.Result result;
+        LabelText label;
+        boolean matched;
+        boolean moving;
+
+        /**
+         * 向目标走一步
+         *
+         * @return 是否还在移动
+         */
+        boolean step(float alpha, float width, float height) {
+            current.left += (target.left - current.left) * alpha;
+            current.top += (target.top - current.top) * alpha;
+            current.right += (target.right - current.right) * alpha;
+            current.bottom += (target.bottom - current.bottom) * alpha;
+            float dx = Math.max(Math.abs(target.left - current.left), Math.abs(target.right - current.right)) * width;
+            float dy = Math.max(Math.abs(target.top - current.top), Math.abs(target.bottom - current.bottom)) * height;
+            if (dx < SETTLE_PX && dy < SETTLE_PX) {
+                current.set(target);
+                moving = false;
+            }
+            return moving;
+        }
+    }
+
     // =========================================================
     // 【核心新增】点击事件监听器接口
     // =========================================================
@@ -81,16 +152,186 @@ public class OverlayView extends View {
             // 1. 如果有数据：立刻更新，并更新时间戳
             this.results = detectionResults;
             this.lastDetectionTime = currentTime;
-            postInvalidate(); // 刷新界面
+            onResultsChanged(); // 刷新界面
         } else {
             // 2. 如果是空数据：检查距离上次识别过了多久
             // 只有超过 200ms 没有识别到物体，才清空屏幕
             // 这样可以防止因为偶尔丢帧导致的框闪烁
-            if (currentTime - lastDetectionTime > 200) {
+            // 经过跟踪器的结果 (带 trackId) 已经在跟踪器里扛过了漏检，目标消失就立即清空
+            if (isTracked(this.results) || currentTime - lastDetectionTime > 200) {
                 this.results.clear();
-                postInvalidate();
+                onResultsChanged();
+            }
+        }
+    }
+
+    /**
+     * 开关平滑渲染模式 (主线程调用)
+     */
+    public void setSmoothRendering(boolean enabled) {
+        if (smoothRendering == enabled) return;
+        smoothRendering = enabled;
+        if (enabled) {
+            syncTargets();
+        } else {
+            cancelFrame();
+            spareBoxes.addAll(animatedBoxes);
+            animatedBoxes.clear();
+        }
+        invalidate();
+    }
+
+    private void onResultsChanged() {
+        if (!smoothRendering) {
+            postInvalidate();
+        } else if (Looper.myLooper() == Looper.getMainLooper()) {
+            syncTargets();
+        } else {
+            post(() -> {
+                if (smoothRendering) syncTargets();
+            });
+        }
+    }
+
+    /**
+     * 把最新结果对应到正在显示的框上：按 trackId 匹配，没有 trackId 时按同类最大 IoU 匹配。
+     * 匹配到的框换目标，新框直接出现在目标位置，没匹配到的旧框移除。
+     */
+    private void syncTargets() {
+        for (AnimatedBox box : animatedBoxes) box.matched = false;
+
+        List<YoloDetector.Result> list = results;
+        for (int i = 0; i < list.size(); i++) {
+            YoloDetector.Result result = list.get(i);
+            AnimatedBox box = findMatch(result);
+            LabelText label = labelFor(result);
+            if (box == null) {
+                box = spareBoxes.isEmpty() ? new AnimatedBox() : spareBoxes.remove(spareBoxes.size() - 1);
+                box.current.set(result.getRect());
+                box.moving = false;
+                animatedBoxes.add(box);
+            } else {
+                box.moving = true;
             }
+            box.target.set(result.getRect());
+            box.result = result;
+            box.label = label;
+            box.matched = true;
+        }
+
+        for (int i = animatedBoxes.size() - 1; i >= 0; i--) {
+            AnimatedBox box = animatedBoxes.get(i);
+            if (!box.matched) {
+                box.result = null;
+                spareBoxes.add(animatedBoxes.remove(i));
+            }
+        }
+        // 新框、消失的框、标签变化都要立即重绘一次；还在移动的框由 onVsync 接着重绘
+        invalidate();
+        scheduleFrame();
+    }
+
+    private AnimatedBox findMatch(YoloDetector.Result result) {
+        AnimatedBox best = null;
+        float bestIou = MATCH_IOU;
+        for (AnimatedBox box : animatedBoxes) {
+            if (box.matched) continue;
+            YoloDetector.Result shown = box.result;
+            if (result.getTrackId() != YoloDetector.NO_TRACK) {
+                if (shown.getTrackId() == result.getTrackId()) return box;
+                continue;
+            }
+            if (shown.getClassIndex() != result.getClassIndex()) continue;
+            float iou = iou(box.target, result.getRect());
+            if (iou > bestIou) {
+                bestIou = iou;
+                best = box;
+            }
+        }
+        return best;
+    }
+
+    private static float iou(RectF a, RectF b) {
+        float w = Math.min(a.right, b.right) - Math.max(a.left, b.left);
+        float h = Math.min(a.bottom, b.bottom) - Math.max(a.top, b.top);
+        if (w <= 0 || h <= 0) return 0f;
+        float inter = w * h;
+        float union = a.width() * a.height() + b.width() * b.height() - inter;
+        return union > 0 ? inter / union : 0f;
+    }
+
+    private void onVsync(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!smoothRendering) return;
+        float width = getWidth();
+        float height = getHeight();
+
+        // 第一帧按 16ms 算；掉帧时最多按 100ms 走一步，避免框直接瞬移
+        float dtMs = lastFrameNanos == 0 ? 16f : Math.min(100f, (frameTimeNanos - lastFrameNanos) / 1e6f);
+        lastFrameNanos = frameTimeNanos;
+        float alpha = 1f - (float) Math.exp(-dtMs / SMOOTHING_TAU_MS);
+
+        boolean stepped = false;
+        boolean moving = false;
+        for (AnimatedBox box : animatedBoxes) {
+            if (!box.moving) continue;
+            stepped = true;
+            if (box.step(alpha, width, height)) moving = true;
+        }
+
+        if (stepped) {
+            invalidate();
+        }
+        if (moving) {
+            scheduleFrame();
+        } else {
+            lastFrameNanos = 0;
+        }
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled || !isAttachedToWindow()) return;
+        frameScheduled = true;
+        choreographer.postFrameCallback(frameCallback);
+    }
+
+    private void cancelFrame() {
+        if (!frameScheduled) return;
+        choreographer.removeFrameCallback(frameCallback);
+        frameScheduled = false;
+        lastFrameNanos = 0;
+    }
+
+    /**
+     * 取缓存的标签文字；百分比取整后相同就复用
+     */
+    private LabelText labelFor(YoloDetector.Result result) {
+        int percent = Math.max(0, Math.min(100, Math.round(result.getScore() * 100)));
+        int key = result.getClassIndex() * 101 + percent;
+        LabelText cached = labelCache.get(key);
+        // 切换模型后同一个类别序号可能是另一个名字
+        if (cached == null || !cached.label.equals(result.getLabel())) {
+            String text = result.getLabel() + " " + percent + "%";
+            cached = new LabelText(result.getLabel(), text, textPaint.measureText(text));
+            labelCache.put(key, cached);
         }
+        return cached;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (smoothRendering && !animatedBoxes.isEmpty()) scheduleFrame();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        cancelFrame();
+        super.onDetachedFromWindow();
+    }
+
+    private static boolean isTracked(List<YoloDetector.Result> list) {
+        return !list.isEmpty() && list.get(0).getTrackId() != YoloDetector.NO_TRACK;
     }
 
     /**
@@ -137,56 +378,57 @@ public class OverlayView extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        if (results == null || results.isEmpty()) return;
-
         // 获取当前屏幕的实际宽高
         float width = getWidth();
         float height = getHeight();
 
-        for (YoloDetector.Result result : results) {
-            // 获取归一化坐标 (0.0 ~ 1.0)
-            RectF normalizedRect = result.getRect();
-
-            // =========================================================
-            // 【核心坐标映射】 0~1 小数 --> 屏幕像素坐标
-            // =========================================================
-            float left = normalizedRect.left * width;
-            float top = normalizedRect.top * height;
-            float right = normalizedRect.right * width;
-            float bottom = normalizedRect.bottom * height;
-
-            // 简单的边界保护
-            if (left < 0) left = 0;
-            if (top < 0) top = 0;
-            if (right > width) right = width;
-            if (bottom > height) bottom = height;
-
-            // 使用复用的对象，避免内存抖动
-            boxRect.set(left, top, right, bottom);
-
-            // 1. 画绿框
-            canvas.drawRect(boxRect, boxPaint);
-
-            // 2. 准备文字
-            String labelText = result.getLabel() + String.format(" %.0f%%", result.getScore() * 100);
-
-            // 3. 计算文字位置 (防止画出屏幕外)
-            float textWidth = textPaint.measureText(labelText);
-            float textHeight = 60f;
-            float padding = 10f;
-
-            float bgTop = top - textHeight;
-            float bgBottom = top;
-
-            // 如果文字超出屏幕顶部，就画在框的内部
-            if (bgTop < 0) {
-                bgTop = top;
-                bgBottom = top + textHeight;
+        if (smoothRendering) {
+            for (AnimatedBox box : animatedBoxes) {
+                drawBox(canvas, box.current, box.label, width, height);
             }
+            return;
+        }
 
-            // 4. 画背景和文字
-            canvas.drawRect(left, bgTop, left + textWidth + 2 * padding, bgBottom, textBgPaint);
-            canvas.drawText(labelText, left + padding, bgBottom - 15f, textPaint);
+        if (results == null || results.isEmpty()) return;
+
+        for (YoloDetector.Result result : results) {
+            drawBox(canvas, result.getRect(), labelFor(result), width, height);
         }
     }
-}
\ No newline at end of file
+
+    private void drawBox(Canvas canvas, RectF normalizedRect, LabelText label, float width, float height) {
+        // =========================================================
+        // 【核心坐标映射】 0~1 小数 --> 屏幕像素坐标
+        // =========================================================
+        float left = normalizedRect.left * width;
+        float top = normalizedRect.top * height;
+        float right = normalizedRect.right * width;
+        float bottom = normalizedRect.bottom * height;
+
+        // 简单的边界保护
+        if (left < 0) left = 0;
+        if (top < 0) top = 0;
+        if (right > width) right = width;
+        if (bottom > height) bottom = height;
+
+        // 使用复用的对象，避免内存抖动
+        boxRect.set(left, top, right, bottom);
+
+        // 1. 画绿框
+        canvas.drawRect(boxRect, boxPaint);
+
+        // 2. 计算文字位置 (防止画出屏幕外)
+        float bgTop = top - TEXT_HEIGHT;
+        float bgBottom = top;
+
+        // 如果文字超出屏幕顶部，就画在框的内部
+        if (bgTop < 0) {
+            bgTop = top;
+            bgBottom = top + TEXT_HEIGHT;
+        }
+
+        // 3. 画背景和文字
+        canvas.drawRect(left, bgTop, left + label.width + 2 * TEXT_PADDING, bgBottom, textBgPaint);
+        canvas.drawText(label.text, left + TEXT_PADDING, bgBottom - 15f, textPaint);
+    }
+}
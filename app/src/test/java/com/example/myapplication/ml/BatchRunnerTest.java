@@ -0,0 +1,117 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * BatchRunner 测试：并发上限、失败隔离、取消、分位数
+ */
+public class BatchRunnerTest {
+
+    @Test
+    public void processesAllItemsWithBoundedConcurrency() throws Exception {
+        BatchRunner<Integer, Integer> runner = new BatchRunner<>(3, 2);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Recorder recorder = new Recorder();
+
+        runner.submit(range(40), input -> {
+            int now = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(now, Math::max);
+            Thread.sleep(2);
+            inFlight.decrementAndGet();
+            return input * 2;
+        }, recorder);
+
+        BatchRunner.Summary summary = recorder.await();
+        assertEquals(40, summary.total);
+        assertEquals(40, summary.completed);
+        assertEquals(0, summary.failed);
+        assertFalse(summary.cancelled);
+        assertEquals(40, recorder.items.get());
+        assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= 3);
+        assertTrue(summary.p95LatencyMs >= summary.p50LatencyMs);
+        runner.close();
+    }
+
+    @Test
+    public void failuresDoNotStopTheBatch() throws Exception {
+        BatchRunner<Integer, Integer> runner = new BatchRunner<>(2, 4);
+        Recorder recorder = new Recorder();
+        runner.submit(range(10), input -> {
+            if (input % 3 == 0) throw new IllegalStateException("bad " + input);
+            return input;
+        }, recorder);
+
+        BatchRunner.Summary summary = recorder.await();
+        assertEquals(6, summary.completed);
+        assertEquals(4, summary.failed);
+        runner.close();
+    }
+
+    @Test
+    public void cancelStopsFeedingAndInterruptsWork() throws Exception {
+        BatchRunner<Integer, Integer> runner = new BatchRunner<>(2, 1);
+        Recorder recorder = new Recorder();
+        CountDownLatch started = new CountDownLatch(2);
+        BatchRunner<Integer, Integer>.Batch batch = runner.submit(range(100), input -> {
+            started.countDown();
+            Thread.sleep(10_000);
+            return input;
+        }, recorder);
+
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        batch.cancel();
+        BatchRunner.Summary summary = recorder.await();
+        assertTrue(summary.cancelled);
+        assertEquals(0, summary.completed);
+        assertEquals(0, summary.failed);
+        assertTrue(summary.wallTimeMs < 5_000);
+        runner.close();
+    }
+
+    @Test
+    public void nearestRankPercentile() {
+        long[] sorted = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+        assertEquals(50, BatchRunner.percentile(sorted, 50));
+        assertEquals(100, BatchRunner.percentile(sorted, 95));
+        assertEquals(0, BatchRunner.percentile(new long[0], 50));
+    }
+
+    private static List<Integer> range(int n) {
+        List<Integer> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) list.add(i);
+        return list;
+    }
+
+    private static class Recorder implements BatchRunner.Listener<Integer, Integer> {
+        final AtomicInteger items = new AtomicInteger();
+        final AtomicReference<BatchRunner.Summary> summary = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onItem(int index, Integer input, Integer output, Throwable error, long latencyMs,
+                           BatchRunner.Progress progress) {
+            items.incrementAndGet();
+        }
+
+        @Override
+        public void onFinished(BatchRunner.Summary s) {
+            summary.set(s);
+            done.countDown();
+        }
+
+        BatchRunner.Summary await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            return summary.get();
+        }
+    }
+}
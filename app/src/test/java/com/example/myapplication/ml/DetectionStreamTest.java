@@ -0,0 +1,210 @@
+package com.example.myapplication.ml;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * DetectionStream 测试：背压合并、作废、取消后释放输入且不再发出结果
+ */
+public class DetectionStreamTest {
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final ExecutorService delivery = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        worker.shutdownNow();
+        delivery.shutdownNow();
+    }
+
+    @Test
+    public void pendingInputIsConflatedWhileBusy() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Collector<Integer> sink = new Collector<>();
+        List<Integer> recycled = Collections.synchronizedList(new ArrayList<>());
+
+        DetectionStream<Integer, Integer> stream = new DetectionStream<>(worker, delivery, input -> {
+            if (input == 0) {
+                started.countDown();
+                release.await();
+            }
+            return input * 10;
+        }, sink, recycled::add);
+
+        stream.submit(0);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        // 第 0 项还在处理：1、2、3 依次覆盖等待位，只有 3 会被处理
+        assertTrue(stream.submit(1));
+        assertTrue(stream.submit(2));
+        assertTrue(stream.submit(3));
+        release.countDown();
+
+        sink.awaitValue(30);
+        assertEquals(Arrays.asList(1, 2), recycled);
+        assertEquals(4, stream.getSubmitted());
+        assertEquals(2, stream.getProcessed());
+        assertEquals(2, stream.getDropped());
+        assertTrue(sink.values.contains(30));
+        assertFalse(sink.values.contains(10));
+        assertFalse(sink.values.contains(20));
+    }
+
+    @Test
+    public void submitLatestDiscardsWorkInProgress() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Collector<String> sink = new Collector<>();
+
+        DetectionStream<String, String> stream = new DetectionStream<>(worker, delivery, input -> {
+            if (input.equals("old")) {
+                started.countDown();
+                // 被作废时中断唤醒
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    return "interrupted";
+                }
+            }
+            return input;
+        }, sink, null);
+
+        stream.submit("old");
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        long t0 = System.nanoTime();
+        stream.submitLatest("new");
+
+        sink.awaitValue("new");
+        assertTrue((System.nanoTime() - t0) / 1_000_000L < 5_000);
+        assertEquals(Collections.singletonList("new"), sink.values);
+        assertEquals(1, stream.getDiscarded());
+    }
+
+    @Test
+    public void cancelRecyclesPendingAndSuppressesResults() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        Collector<Integer> sink = new Collector<>();
+        List<Integer> recycled = Collections.synchronizedList(new ArrayList<>());
+
+        DetectionStream<Integer, Integer> stream = new DetectionStream<>(worker, delivery, input -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                // 被取消
+            }
+            finished.countDown();
+            return input;
+        }, sink, recycled::add);
+
+        stream.submit(1);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        stream.submit(2);
+        stream.cancel();
+        assertTrue(finished.await(2, TimeUnit.SECONDS));
+
+        // 取消之后的提交直接释放
+        assertFalse(stream.submit(3));
+        assertEquals(2, recycled.size());
+        assertTrue(recycled.contains(2));
+        assertTrue(recycled.contains(3));
+
+        // 排空两个线程后确认没有任何结果发出
+        worker.submit(() -> { }).get(2, TimeUnit.SECONDS);
+        delivery.submit(() -> { }).get(2, TimeUnit.SECONDS);
+        assertTrue(sink.values.isEmpty());
+        assertTrue(stream.isCancelled());
+    }
+
+    @Test
+    public void takePendingReturnsWaitingInputWithoutRecycling() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Collector<Integer> sink = new Collector<>();
+        List<Integer> recycled = Collections.synchronizedList(new ArrayList<>());
+
+        DetectionStream<Integer, Integer> stream = new DetectionStream<>(worker, delivery, input -> {
+            if (input == 0) {
+                started.countDown();
+                release.await();
+            }
+            return input;
+        }, sink, recycled::add);
+
+        stream.submit(0);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        assertNull(stream.takePending());
+        stream.submit(1);
+        // 生产者拿回等待中的输入，改写后重新提交
+        assertEquals(Integer.valueOf(1), stream.takePending());
+        assertNull(stream.takePending());
+        stream.submit(2);
+        release.countDown();
+
+        sink.awaitValue(2);
+        assertTrue(recycled.isEmpty());
+        assertEquals(1, stream.getDropped());
+        assertEquals(2, stream.getProcessed());
+        assertFalse(sink.values.contains(1));
+    }
+
+    @Test
+    public void errorsAreDeliveredAndNullResultsSkipped() throws Exception {
+        Collector<Integer> sink = new Collector<>();
+        DetectionStream<Integer, Integer> stream = new DetectionStream<>(worker, Runnable::run, input -> {
+            if (input < 0) throw new IllegalStateException("bad frame");
+            return input == 0 ? null : input;
+        }, sink, null);
+
+        stream.submit(0);
+        stream.submit(-1);
+        CountDownLatch error = sink.errorLatch;
+        assertTrue(error.await(2, TimeUnit.SECONDS));
+        assertEquals("bad frame", sink.error.get().getMessage());
+
+        stream.submit(5);
+        sink.awaitValue(5);
+        assertEquals(Collections.singletonList(5), sink.values);
+    }
+
+    private static class Collector<O> implements DetectionStream.Sink<O> {
+        final List<O> values = Collections.synchronizedList(new ArrayList<>());
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch errorLatch = new CountDownLatch(1);
+
+        @Override
+        public void onResult(O output) {
+            synchronized (this) {
+                values.add(output);
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error.set(e);
+            errorLatch.countDown();
+        }
+
+        synchronized void awaitValue(O expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!values.contains(expected)) {
+                long left = deadline - System.currentTimeMillis();
+                assertTrue("timed out waiting for " + expected, left > 0);
+                wait(left);
+            }
+        }
+    }
+}
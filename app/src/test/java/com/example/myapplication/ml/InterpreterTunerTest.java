@@ -0,0 +1,184 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * InterpreterTuner 调优逻辑测试：假后端按配置推进假时钟，不需要真实解释器
+ */
+public class InterpreterTunerTest {
+
+    private static final String KEY = "yolov8n.tflite#123@test-device";
+
+    @Test
+    public void picksFastestConfigAndPersistsIt() {
+        MapStore store = new MapStore();
+        FakeBackend backend = new FakeBackend();
+        backend.costs.put(new InterpreterTuner.Config(1, true), 90L);
+        backend.costs.put(new InterpreterTuner.Config(2, true), 40L);
+        backend.costs.put(new InterpreterTuner.Config(4, true), 55L);
+        backend.costs.put(new InterpreterTuner.Config(4, false), 120L);
+
+        InterpreterTuner tuner = new InterpreterTuner(store, backend.clock());
+        InterpreterTuner.Config best = tuner.tune(KEY, new ArrayList<>(backend.costs.keySet()), backend);
+
+        assertEquals(new InterpreterTuner.Config(2, true), best);
+        assertEquals("2:1", store.values.get(KEY));
+        assertEquals(0, backend.openCount);
+    }
+
+    @Test
+    public void reusesSavedConfigWithoutBenchmarking() {
+        MapStore store = new MapStore();
+        store.values.put(KEY, "4:0");
+        FakeBackend backend = new FakeBackend();
+
+        InterpreterTuner.Config config = new InterpreterTuner(store, backend.clock())
+                .tune(KEY, InterpreterTuner.defaultCandidates(8), backend);
+
+        assertEquals(new InterpreterTuner.Config(4, false), config);
+        assertEquals(0, backend.invokeCount);
+    }
+
+    @Test
+    public void medianIgnoresOutliers() {
+        MapStore store = new MapStore();
+        FakeBackend backend = new FakeBackend();
+        backend.costs.put(new InterpreterTuner.Config(1, false), 50L);
+        backend.costs.put(new InterpreterTuner.Config(2, false), 30L);
+        // 2 线程偶尔出现一次很慢的测量 (被调度到小核)，中位数不受影响
+        backend.spikeEvery = 5;
+
+        InterpreterTuner.Config best = new InterpreterTuner(store, backend.clock())
+                .setRuns(0, 5)
+                .tune(KEY, new ArrayList<>(backend.costs.keySet()), backend);
+
+        assertEquals(new InterpreterTuner.Config(2, false), best);
+    }
+
+    @Test
+    public void skipsFailingConfigs() {
+        MapStore store = new MapStore();
+        FakeBackend backend = new FakeBackend();
+        backend.costs.put(new InterpreterTuner.Config(4, true), 10L);
+        backend.costs.put(new InterpreterTuner.Config(2, false), 60L);
+        backend.failing = new InterpreterTuner.Config(4, true);
+
+        InterpreterTuner.Config best = new InterpreterTuner(store, backend.clock())
+                .tune(KEY, new ArrayList<>(backend.costs.keySet()), backend);
+
+        assertEquals(new InterpreterTuner.Config(2, false), best);
+        assertEquals(0, backend.openCount);
+    }
+
+    @Test
+    public void allFailingFallsBackWithoutSaving() {
+        MapStore store = new MapStore();
+        FakeBackend backend = new FakeBackend();
+        InterpreterTuner.Config only = new InterpreterTuner.Config(4, true);
+        backend.costs.put(only, 10L);
+        backend.failing = only;
+
+        List<InterpreterTuner.Config> candidates = new ArrayList<>();
+        candidates.add(only);
+        assertEquals(only, new InterpreterTuner(store, backend.clock()).tune(KEY, candidates, backend));
+        assertTrue(store.values.isEmpty());
+    }
+
+    @Test
+    public void defaultCandidatesAreDistinct() {
+        // XNNPACK 开 x 2 / 4 线程，线程数不超过核心数
+        assertEquals(2, InterpreterTuner.defaultCandidates(16).size());
+        assertEquals(2, InterpreterTuner.defaultCandidates(4).size());
+        assertEquals(2, InterpreterTuner.defaultCandidates(3).size());
+        assertEquals(1, InterpreterTuner.defaultCandidates(2).size());
+        assertEquals(1, InterpreterTuner.defaultCandidates(1).size());
+        for (InterpreterTuner.Config config : InterpreterTuner.defaultCandidates(16)) {
+            assertTrue(config.useXnnpack);
+        }
+    }
+
+    @Test
+    public void defaultConfigUsesXnnpackAndAtMostFourThreads() {
+        assertEquals(new InterpreterTuner.Config(4, true), InterpreterTuner.defaultConfig(8));
+        assertEquals(new InterpreterTuner.Config(2, true), InterpreterTuner.defaultConfig(2));
+        assertEquals(new InterpreterTuner.Config(1, true), InterpreterTuner.defaultConfig(0));
+    }
+
+    @Test
+    public void defaultRunsAreOneWarmupAndThreeMeasured() {
+        FakeBackend backend = new FakeBackend();
+        InterpreterTuner.Config only = new InterpreterTuner.Config(2, true);
+        backend.costs.put(only, 10L);
+        List<InterpreterTuner.Config> candidates = new ArrayList<>();
+        candidates.add(only);
+
+        new InterpreterTuner(new MapStore(), backend.clock()).tune(KEY, candidates, backend);
+        assertEquals(4, backend.invokeCount);
+    }
+
+    @Test
+    public void configRoundTrip() {
+        InterpreterTuner.Config config = new InterpreterTuner.Config(3, true);
+        assertEquals(config, InterpreterTuner.Config.decode(config.encode()));
+        assertNull(InterpreterTuner.Config.decode("garbage"));
+        assertNull(InterpreterTuner.Config.decode("0:1"));
+    }
+
+    private static class MapStore implements InterpreterTuner.Store {
+        final Map<String, String> values = new HashMap<>();
+
+        @Override
+        public String get(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            values.put(key, value);
+        }
+    }
+
+    /** 每次 invoke 按当前配置的 "耗时" 推进假时钟 */
+    private static class FakeBackend implements InterpreterTuner.Backend {
+        final Map<InterpreterTuner.Config, Long> costs = new HashMap<>();
+        InterpreterTuner.Config failing;
+        int spikeEvery;
+        int openCount;
+        int invokeCount;
+        private InterpreterTuner.Config current;
+        private long now;
+
+        LongSupplier clock() {
+            return () -> now;
+        }
+
+        @Override
+        public void open(InterpreterTuner.Config config) throws Exception {
+            if (config.equals(failing)) throw new IllegalStateException("delegate unavailable");
+            current = config;
+            openCount++;
+        }
+
+        @Override
+        public void invoke() {
+            invokeCount++;
+            long cost = costs.get(current);
+            if (spikeEvery > 0 && invokeCount % spikeEvery == 0) cost *= 10;
+            now += cost;
+        }
+
+        @Override
+        public void close() {
+            if (current != null) openCount--;
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.myapplication.ml;
+
+import org.junit.Assume;
+
+import java.util.Arrays;
+
+/**
+ * 微基准工具：预热后重复取样，报告中位数
+ *
+ * *Benchmark 类默认不参与单元测试 (见 app/build.gradle.kts)，需要时手动运行：
+ *   ./gradlew testDebugUnitTest -Pbenchmark
+ * 在 IDE 里直接运行时需加 JVM 参数 -Dbenchmark=true，否则整个类被跳过。
+ */
+final class MicroBench {
+
+    /** 一次被测调用，返回值累加进 sink，防止 JIT 把调用整体消除 */
+    interface Body {
+        int run();
+    }
+
+    private static int sink;
+
+    private MicroBench() {
+    }
+
+    /** 在每个基准类的 @Before 中调用：没开启时跳过 */
+    static void assumeEnabled() {
+        Assume.assumeTrue("benchmark disabled, run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+    }
+
+    /**
+     * @param warmup     预热调用次数 (不计时)
+     * @param samples    取样次数
+     * @param iterations 每次取样连续调用的次数
+     * @return 单次调用耗时的中位数 (毫秒)
+     */
+    static double medianMs(int warmup, int samples, int iterations, Body body) {
+        for (int i = 0; i < warmup; i++) sink += body.run();
+        double[] ms = new double[samples];
+        for (int s = 0; s < samples; s++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < iterations; i++) sink += body.run();
+            ms[s] = (System.nanoTime() - t0) / 1e6 / iterations;
+        }
+        Arrays.sort(ms);
+        return samples % 2 == 1 ? ms[samples / 2] : (ms[samples / 2 - 1] + ms[samples / 2]) / 2;
+    }
+
+    /** 让 sink 参与输出，保证被测调用的结果被"用到" */
+    static int sink() {
+        return sink;
+    }
+}
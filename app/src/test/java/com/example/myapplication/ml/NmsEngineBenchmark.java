@@ -0,0 +1,42 @@
+package com.example.myapplication.ml;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * NmsEngine 扩展性基准，候选数量 10 ~ 5000 (默认不运行，见 MicroBench)
+ */
+public class NmsEngineBenchmark {
+
+    private static final int SAMPLES = 15;
+
+    @Before
+    public void setUp() {
+        MicroBench.assumeEnabled();
+    }
+
+    /**
+     * 旧版 (全排序 + 两两比较) 对比 GRID、GRID + Top-300 (Top-K 为可选项，默认关闭)
+     */
+    @Test
+    public void scaling() {
+        NmsEngine legacy = new NmsEngine().setSearch(NmsEngine.Search.ALL_PAIRS);
+        NmsEngine grid = new NmsEngine().setSearch(NmsEngine.Search.GRID);
+        NmsEngine gridTopK = new NmsEngine().setTopK(300).setSearch(NmsEngine.Search.GRID);
+
+        for (int count : new int[]{10, 50, 100, 500, 1000, 2000, 5000}) {
+            NmsEngineTest.Candidates c = NmsEngineTest.Candidates.random(count, count);
+            int warmup = Math.max(50, 200_000 / count);
+            int iterations = Math.max(1, 5_000 / count);
+            double[] us = new double[3];
+            NmsEngine[] engines = {legacy, grid, gridTopK};
+            for (int e = 0; e < engines.length; e++) {
+                NmsEngine engine = engines[e];
+                us[e] = 1e3 * MicroBench.medianMs(warmup, SAMPLES, iterations,
+                        () -> engine.run(c.boxes, c.scores, c.classIds, c.count));
+            }
+            System.out.printf("[nms n=%d] median of %d: all-pairs %.1f us, grid %.1f us, grid+top300 %.1f us (sink=%d)%n",
+                    count, SAMPLES, us[0], us[1], us[2], MicroBench.sink());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * NmsEngine 的正确性测试 (扩展性基准见 NmsEngineBenchmark)
+ */
+public class NmsEngineTest {
+
+    @Test
+    public void grid_matchesAllPairs() {
+        for (int count : new int[]{1, 10, 200, 3000}) {
+            Candidates c = Candidates.random(count, 3L + count);
+            NmsEngine allPairs = new NmsEngine().setTopK(0).setSearch(NmsEngine.Search.ALL_PAIRS);
+            NmsEngine grid = new NmsEngine().setTopK(0).setSearch(NmsEngine.Search.GRID);
+            assertSameKeep(allPairs, grid, c);
+        }
+    }
+
+    @Test
+    public void softGrid_matchesSoftAllPairs() {
+        Candidates c = Candidates.random(500, 11L);
+        NmsEngine allPairs = new NmsEngine().setTopK(0).setSearch(NmsEngine.Search.ALL_PAIRS)
+                .setSuppression(NmsEngine.Suppression.SOFT).setSoftNms(0.5f, 0.3f);
+        NmsEngine grid = new NmsEngine().setTopK(0).setSearch(NmsEngine.Search.GRID)
+                .setSuppression(NmsEngine.Suppression.SOFT).setSoftNms(0.5f, 0.3f);
+        assertSameKeep(allPairs, grid, c);
+    }
+
+    @Test
+    public void default_keepsEveryCandidateLikeBaseline() {
+        NmsEngine engine = new NmsEngine().setIouThreshold(1.1f); // 阈值 > 1：不抑制任何框
+        assertEquals(0, engine.getTopK());
+        Candidates c = Candidates.random(1000, 9L);
+        assertEquals(1000, engine.run(c.boxes, c.scores, c.classIds, c.count));
+    }
+
+    @Test
+    public void topK_matchesUnboundedWhenCandidatesFitInK() {
+        for (int count : new int[]{1, 50, 299, 300}) {
+            Candidates c = Candidates.random(count, 17L + count);
+            NmsEngine baseline = new NmsEngine().setSearch(NmsEngine.Search.ALL_PAIRS);
+            assertSameKeep(baseline, new NmsEngine().setTopK(300), c);
+            assertSameKeep(new NmsEngine().setSuppression(NmsEngine.Suppression.SOFT),
+                    new NmsEngine().setTopK(300).setSuppression(NmsEngine.Suppression.SOFT), c);
+        }
+    }
+
+    @Test
+    public void topK_onlyConsidersHighestScores() {
+        Candidates c = Candidates.random(1000, 5L);
+        NmsEngine engine = new NmsEngine().setTopK(50).setIouThreshold(1.1f); // 阈值 > 1：不抑制任何框
+        int kept = engine.run(c.boxes, c.scores, c.classIds, c.count);
+        assertEquals(50, kept);
+
+        float[] sorted = c.scores.clone();
+        java.util.Arrays.sort(sorted);
+        float fiftieth = sorted[sorted.length - 50];
+        for (int k = 0; k < kept; k++) {
+            assertTrue(engine.getKeptScore(k) >= fiftieth);
+            if (k > 0) assertTrue(engine.getKeptScore(k - 1) >= engine.getKeptScore(k));
+        }
+    }
+
+    @Test
+    public void classAware_keepsOverlappingBoxesOfDifferentClasses() {
+        float[] boxes = {0.1f, 0.1f, 0.5f, 0.5f, 0.1f, 0.1f, 0.5f, 0.5f};
+        float[] scores = {0.9f, 0.8f};
+        int[] classIds = {0, 1};
+
+        NmsEngine agnostic = new NmsEngine();
+        assertEquals(1, agnostic.run(boxes, scores, classIds, 2));
+
+        NmsEngine aware = new NmsEngine().setClassAware(true);
+        assertEquals(2, aware.run(boxes, scores, classIds, 2));
+    }
+
+    @Test
+    public void soft_decaysOverlappingScore() {
+        float[] boxes = {0.1f, 0.1f, 0.5f, 0.5f, 0.12f, 0.1f, 0.52f, 0.5f};
+        float[] scores = {0.9f, 0.85f};
+        NmsEngine engine = new NmsEngine().setSuppression(NmsEngine.Suppression.SOFT).setSoftNms(0.5f, 0.1f);
+        assertEquals(2, engine.run(boxes, scores, null, 2));
+        assertEquals(0.9f, engine.getKeptScore(0), 0f);
+        assertTrue(engine.getKeptScore(1) < 0.85f);
+    }
+
+    static void assertSameKeep(NmsEngine expected, NmsEngine actual, Candidates c) {
+        int n = expected.run(c.boxes, c.scores, c.classIds, c.count);
+        int[] keep = new int[n];
+        float[] keptScores = new float[n];
+        for (int k = 0; k < n; k++) {
+            keep[k] = expected.getKeptIndex(k);
+            keptScores[k] = expected.getKeptScore(k);
+        }
+        assertEquals(n, actual.run(c.boxes, c.scores, c.classIds, c.count));
+        for (int k = 0; k < n; k++) {
+            assertEquals(keep[k], actual.getKeptIndex(k));
+            assertEquals(keptScores[k], actual.getKeptScore(k), 0f);
+        }
+    }
+
+    /** 模拟杂乱场景：框成簇出现，大小不一 */
+    static class Candidates {
+        float[] boxes;
+        float[] scores;
+        int[] classIds;
+        int count;
+
+        static Candidates random(int count, long seed) {
+            Random random = new Random(seed);
+            Candidates c = new Candidates();
+            c.count = count;
+            c.boxes = new float[count * 4];
+            c.scores = new float[count];
+            c.classIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                float cx = random.nextFloat();
+                float cy = random.nextFloat();
+                float w = 0.01f + random.nextFloat() * 0.15f;
+                float h = 0.01f + random.nextFloat() * 0.15f;
+                c.boxes[i * 4] = Math.max(0f, cx - w / 2);
+                c.boxes[i * 4 + 1] = Math.max(0f, cy - h / 2);
+                c.boxes[i * 4 + 2] = Math.min(1f, cx + w / 2);
+                c.boxes[i * 4 + 3] = Math.min(1f, cy + h / 2);
+                c.scores[i] = 0.5f + random.nextInt(500) / 1000f;
+                c.classIds[i] = random.nextInt(80);
+            }
+            return c;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ObjectTracker 测试：ID 稳定性、关键帧间隔自适应、Kalman 预测
+ */
+public class ObjectTrackerTest {
+
+    private static final long FRAME_NS = 33_000_000L;
+
+    @Test
+    public void keepsIdForMovingObject() {
+        ObjectTracker tracker = new ObjectTracker();
+        for (int f = 0; f < 20; f++) {
+            float x = 0.1f + f * 0.01f;
+            tracker.update(new float[]{x, 0.3f, x + 0.2f, 0.5f}, new int[]{0}, new float[]{0.9f}, 1, f * FRAME_NS);
+        }
+        List<Snapshot> tracks = snapshot(tracker);
+        assertEquals(1, tracks.size());
+        assertEquals(1, tracks.get(0).id);
+        assertEquals(0.29f, tracks.get(0).left, 0.02f);
+    }
+
+    @Test
+    public void separatesClassesAndObjects() {
+        ObjectTracker tracker = new ObjectTracker();
+        float[] boxes = {0.1f, 0.1f, 0.3f, 0.3f, 0.6f, 0.6f, 0.8f, 0.8f, 0.1f, 0.1f, 0.3f, 0.3f};
+        int[] classes = {0, 0, 1};
+        float[] scores = {0.9f, 0.8f, 0.7f};
+        for (int f = 0; f < 3; f++) {
+            tracker.update(boxes, classes, scores, 3, f * FRAME_NS);
+        }
+        List<Snapshot> tracks = snapshot(tracker);
+        assertEquals(3, tracks.size());
+        // 置信度从高到低，ID 按出现顺序分配
+        assertEquals(1, tracks.get(0).id);
+        assertEquals(2, tracks.get(1).id);
+        assertEquals(3, tracks.get(2).id);
+    }
+
+    @Test
+    public void newTracksAreVisibleOnFirstDetection() {
+        ObjectTracker tracker = new ObjectTracker();
+        tracker.update(new float[]{0.1f, 0.1f, 0.3f, 0.3f}, new int[]{0}, new float[]{0.9f}, 1, 0);
+        assertEquals(1, tracker.getTrackCount());
+        // 还没确认前不拉长关键帧间隔
+        assertTrue(tracker.needsDetection());
+        tracker.update(new float[]{0.1f, 0.1f, 0.3f, 0.3f}, new int[]{0}, new float[]{0.9f}, 1, FRAME_NS);
+        assertEquals(1, tracker.getTrackCount());
+    }
+
+    @Test
+    public void tentativeTrackDropsOnFirstMiss() {
+        ObjectTracker tracker = new ObjectTracker().setLifecycle(2, 3);
+        tracker.update(new float[]{0.1f, 0.1f, 0.3f, 0.3f}, new int[]{0}, new float[]{0.9f}, 1, 0);
+        assertEquals(1, tracker.getTrackCount());
+        // 只出现过一次的误检：下一个关键帧没匹配上就消失，不保留 maxMisses 次
+        tracker.update(new float[0], new int[0], new float[0], 0, FRAME_NS);
+        assertEquals(0, tracker.getTrackCount());
+    }
+
+    @Test
+    public void survivesMissedDetectionsThenExpires() {
+        ObjectTracker tracker = new ObjectTracker().setLifecycle(2, 3);
+        float[] box = {0.4f, 0.4f, 0.6f, 0.6f};
+        long t = 0;
+        for (int f = 0; f < 3; f++, t += FRAME_NS) {
+            tracker.update(box, new int[]{0}, new float[]{0.9f}, 1, t);
+        }
+        for (int miss = 1; miss <= 3; miss++, t += FRAME_NS) {
+            tracker.update(new float[0], new int[0], new float[0], 0, t);
+            assertEquals("miss " + miss, 1, tracker.getTrackCount());
+        }
+        tracker.update(new float[0], new int[0], new float[0], 0, t);
+        assertEquals(0, tracker.getTrackCount());
+    }
+
+    @Test
+    public void staticSceneLengthensIntervalAndMotionShortensIt() {
+        ObjectTracker tracker = new ObjectTracker().setMaxInterval(6);
+        float[] box = {0.4f, 0.4f, 0.6f, 0.6f};
+        long t = 0;
+        int detections = 0;
+        for (int f = 0; f < 120; f++, t += FRAME_NS) {
+            if (tracker.needsDetection()) {
+                tracker.update(box, new int[]{0}, new float[]{0.9f}, 1, t);
+                detections++;
+            } else {
+                tracker.predict(t);
+            }
+        }
+        assertEquals(6, tracker.getInterval());
+        // 静止画面：检测次数远少于帧数
+        assertTrue("detections " + detections, detections < 30);
+
+        // 目标突然大幅移动：间隔立即减半
+        tracker.update(new float[]{0.5f, 0.4f, 0.7f, 0.6f}, new int[]{0}, new float[]{0.9f}, 1, t);
+        assertEquals(3, tracker.getInterval());
+    }
+
+    @Test
+    public void predictsBetweenKeyframes() {
+        ObjectTracker tracker = new ObjectTracker();
+        long t = 0;
+        float x = 0.1f;
+        for (int f = 0; f < 15; f++, t += FRAME_NS, x += 0.01f) {
+            tracker.update(new float[]{x, 0.3f, x + 0.2f, 0.5f}, new int[]{0}, new float[]{0.9f}, 1, t);
+        }
+        float lastLeft = snapshot(tracker).get(0).left;
+        // 匀速运动：跳过 3 帧后，预测位置应接近真实位置
+        tracker.predict(t + 2 * FRAME_NS);
+        float predicted = snapshot(tracker).get(0).left;
+        assertTrue(predicted > lastLeft);
+        assertEquals(x + 0.02f, predicted, 0.015f);
+    }
+
+    @Test
+    public void emptyTrackerAlwaysDetects() {
+        ObjectTracker tracker = new ObjectTracker();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(tracker.needsDetection());
+        }
+    }
+
+    private static class Snapshot {
+        int id;
+        float left;
+    }
+
+    private static List<Snapshot> snapshot(ObjectTracker tracker) {
+        List<Snapshot> list = new ArrayList<>();
+        tracker.visitTracks((trackId, classId, score, left, top, right, bottom) -> {
+            Snapshot s = new Snapshot();
+            s.id = trackId;
+            s.left = left;
+            list.add(s);
+        });
+        return list;
+    }
+}
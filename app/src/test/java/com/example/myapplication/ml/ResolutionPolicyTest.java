@@ -0,0 +1,67 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ResolutionPolicy 升降档逻辑测试
+ */
+public class ResolutionPolicyTest {
+
+    private static final int[] SIZES = {320, 480, 640};
+
+    @Test
+    public void stepsDownWhileConfident() {
+        ResolutionPolicy policy = new ResolutionPolicy(SIZES, 640, 100).setCooldownFrames(5);
+        int size = feed(policy, 5, 60, 0.9f);
+        assertEquals(480, size);
+        size = feed(policy, 5, 30, 0.9f);
+        assertEquals(320, size);
+        // 已经是最低档
+        assertEquals(320, feed(policy, 20, 15, 0.9f));
+    }
+
+    @Test
+    public void stepsUpWhenConfidenceDrops() {
+        ResolutionPolicy policy = new ResolutionPolicy(SIZES, 320, 100).setCooldownFrames(5);
+        // 置信度 0.7 介于上下阈值之间：保持
+        assertEquals(320, feed(policy, 10, 15, 0.7f));
+        // 没检测到物体：每过一个冷却期升一档
+        assertEquals(480, feed(policy, 5, 15, 0f));
+        assertEquals(640, feed(policy, 5, 25, 0f));
+    }
+
+    @Test
+    public void overBudgetStepsDownEvenWhenUnsure() {
+        ResolutionPolicy policy = new ResolutionPolicy(SIZES, 640, 40).setCooldownFrames(5);
+        assertEquals(480, feed(policy, 5, 80, 0.3f));
+    }
+
+    @Test
+    public void doesNotStepUpPastBudget() {
+        // 320 实测 30 ms -> 480 估算 67.5 ms，超过 50 ms 预算
+        ResolutionPolicy policy = new ResolutionPolicy(SIZES, 320, 50).setCooldownFrames(5);
+        assertEquals(320, feed(policy, 30, 30, 0f));
+    }
+
+    @Test
+    public void cooldownDelaysDecisions() {
+        ResolutionPolicy policy = new ResolutionPolicy(SIZES, 640, 100).setCooldownFrames(10);
+        assertEquals(640, feed(policy, 9, 60, 0.95f));
+        assertEquals(480, feed(policy, 1, 60, 0.95f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownInitialSize() {
+        new ResolutionPolicy(SIZES, 512, 100);
+    }
+
+    private static int feed(ResolutionPolicy policy, int frames, double latencyMs, float score) {
+        int size = policy.getCurrentSize();
+        for (int i = 0; i < frames; i++) {
+            size = policy.onFrame(latencyMs, score);
+        }
+        return size;
+    }
+}
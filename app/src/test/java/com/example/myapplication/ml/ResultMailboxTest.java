@@ -0,0 +1,76 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * ResultMailbox 测试：覆盖计数、只取一次、并发下计数守恒
+ */
+public class ResultMailboxTest {
+
+    @Test
+    public void latestValueWinsAndOverwritesAreCounted() {
+        ResultMailbox<String> mailbox = new ResultMailbox<>();
+        assertNull(mailbox.take());
+
+        assertFalse(mailbox.publish("a"));
+        assertTrue(mailbox.publish("b"));
+        assertTrue(mailbox.publish("c"));
+        assertEquals("c", mailbox.take());
+        assertNull(mailbox.take());
+
+        assertFalse(mailbox.publish("d"));
+        assertEquals("d", mailbox.take());
+
+        assertEquals(4, mailbox.getPublished());
+        assertEquals(2, mailbox.getConsumed());
+        assertEquals(2, mailbox.getDropped());
+    }
+
+    @Test
+    public void clearDiscardsWithoutCountingDrop() {
+        ResultMailbox<Integer> mailbox = new ResultMailbox<>();
+        mailbox.publish(1);
+        mailbox.clear();
+        assertNull(mailbox.take());
+        assertFalse(mailbox.publish(2));
+        assertEquals(0, mailbox.getDropped());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNull() {
+        new ResultMailbox<String>().publish(null);
+    }
+
+    @Test
+    public void everyPublishIsEitherConsumedOrDropped() throws Exception {
+        ResultMailbox<Integer> mailbox = new ResultMailbox<>();
+        AtomicBoolean done = new AtomicBoolean();
+        int total = 200_000;
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) mailbox.publish(i);
+            done.set(true);
+        });
+        producer.start();
+
+        int last = -1;
+        while (!done.get() || last < total - 1) {
+            Integer v = mailbox.take();
+            if (v == null) {
+                Thread.yield();
+                continue;
+            }
+            // 取到的结果只会越来越新
+            assertTrue(v > last);
+            last = v;
+        }
+        producer.join();
+
+        assertEquals(total, mailbox.getPublished());
+        assertEquals(total, mailbox.getConsumed() + mailbox.getDropped());
+    }
+}
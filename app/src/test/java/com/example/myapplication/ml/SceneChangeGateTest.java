@@ -0,0 +1,107 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * SceneChangeGate 测试：静止帧命中、变化帧不命中、强制刷新与统计
+ */
+public class SceneChangeGateTest {
+
+    private static final int W = 640;
+    private static final int H = 480;
+    private static final int STRIDE = W + 32;
+
+    @Test
+    public void firstFrameAlwaysInfers() {
+        SceneChangeGate gate = new SceneChangeGate(16, 4f);
+        assertFalse(gate.shouldSkip(frame(1L, 0, 0), W, H, STRIDE, 1));
+    }
+
+    @Test
+    public void skipsIdenticalAndNoisyFrames() {
+        SceneChangeGate gate = new SceneChangeGate(16, 4f);
+        gate.shouldSkip(frame(1L, 0, 0), W, H, STRIDE, 1);
+        assertTrue(gate.shouldSkip(frame(1L, 0, 0), W, H, STRIDE, 1));
+        // 传感器噪声 (+-2 灰阶)
+        assertTrue(gate.shouldSkip(frame(1L, 0, 2), W, H, STRIDE, 1));
+        assertEquals(2, gate.getHits());
+        assertEquals(2.0 / 3, gate.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void detectsSceneChange() {
+        SceneChangeGate gate = new SceneChangeGate(16, 4f);
+        gate.shouldSkip(frame(1L, 0, 0), W, H, STRIDE, 1);
+        assertFalse(gate.shouldSkip(frame(2L, 0, 0), W, H, STRIDE, 1));
+        // 变化后的帧成为新的参考帧
+        assertTrue(gate.shouldSkip(frame(2L, 0, 0), W, H, STRIDE, 1));
+    }
+
+    @Test
+    public void slowPanAccumulatesAgainstReference() {
+        SceneChangeGate gate = new SceneChangeGate(16, 4f);
+        gate.shouldSkip(frame(1L, 0, 0), W, H, STRIDE, 1);
+        boolean inferred = false;
+        for (int shift = 4; shift <= 80 && !inferred; shift += 4) {
+            inferred = !gate.shouldSkip(frame(1L, shift, 0), W, H, STRIDE, 1);
+        }
+        assertTrue(inferred);
+    }
+
+    @Test
+    public void forcesRefreshAfterMaxReuse() {
+        SceneChangeGate gate = new SceneChangeGate(16, 4f).setMaxReuseFrames(3);
+        ByteBuffer still = frame(1L, 0, 0);
+        assertFalse(gate.shouldSkip(still, W, H, STRIDE, 1));
+        assertTrue(gate.shouldSkip(still, W, H, STRIDE, 1));
+        assertTrue(gate.shouldSkip(still, W, H, STRIDE, 1));
+        assertTrue(gate.shouldSkip(still, W, H, STRIDE, 1));
+        assertFalse(gate.shouldSkip(still, W, H, STRIDE, 1));
+    }
+
+    @Test
+    public void accountsSavedTime() {
+        SceneChangeGate gate = new SceneChangeGate(16, 4f);
+        gate.recordInferenceMs(40);
+        ByteBuffer still = frame(1L, 0, 0);
+        gate.shouldSkip(still, W, H, STRIDE, 1);
+        gate.shouldSkip(still, W, H, STRIDE, 1);
+        gate.shouldSkip(still, W, H, STRIDE, 1);
+        assertEquals(80, gate.getSavedMs(), 1e-9);
+    }
+
+    @Test
+    public void invalidateForcesInference() {
+        SceneChangeGate gate = new SceneChangeGate(16, 4f);
+        ByteBuffer still = frame(1L, 0, 0);
+        gate.shouldSkip(still, W, H, STRIDE, 1);
+        gate.invalidate();
+        assertFalse(gate.shouldSkip(still, W, H, STRIDE, 1));
+    }
+
+    /**
+     * 由 32x32 大色块组成的随机亮度图，可以整体平移 shift 像素并叠加 +-noise 的噪声
+     */
+    private static ByteBuffer frame(long seed, int shift, int noise) {
+        Random blocks = new Random(seed);
+        int bw = W / 32 + 4, bh = H / 32 + 1;
+        int[] levels = new int[bw * bh];
+        for (int i = 0; i < levels.length; i++) levels[i] = 30 + blocks.nextInt(200);
+
+        Random jitter = new Random(seed * 31 + noise);
+        ByteBuffer buf = ByteBuffer.allocateDirect(STRIDE * H);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                int v = levels[(y / 32) * bw + (x + shift) / 32];
+                if (noise > 0) v += jitter.nextInt(2 * noise + 1) - noise;
+                buf.put(y * STRIDE + x, (byte) v);
+            }
+        }
+        return buf;
+    }
+}
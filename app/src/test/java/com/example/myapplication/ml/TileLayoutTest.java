@@ -0,0 +1,61 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TileLayout 分块方案测试：覆盖整图、重叠、块数封顶
+ */
+public class TileLayoutTest {
+
+    @Test
+    public void smallImageIsSingleTile() {
+        float[] tiles = TileLayout.plan(600, 400, 640, 0.2f, 4);
+        assertEquals(1, TileLayout.tileCount(tiles));
+        assertArrayEquals(new float[]{0f, 0f, 1f, 1f}, tiles, 0f);
+    }
+
+    @Test
+    public void twelveMegapixelGrid() {
+        // 4000x3000，640 块，20% 重叠 -> 步长 512，横向 8 块，纵向 6 块，但每边封顶 4 块
+        float[] tiles = TileLayout.plan(4000, 3000, 640, 0.2f, 4);
+        assertEquals(16, TileLayout.tileCount(tiles));
+        assertCovers(tiles, 4000, 3000);
+    }
+
+    @Test
+    public void tilesKeepNativeSizeWhenUncapped() {
+        // 1600 宽：步长 512 -> ceil(1472 / 512) = 3 块，每块正好 640 像素
+        float[] xs = TileLayout.planAxis(1600, 640, 0.2f, 8);
+        assertEquals(3, xs.length / 2);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(640, Math.round((xs[i * 2 + 1] - xs[i * 2]) * 1600));
+        }
+        assertEquals(0f, xs[0], 0f);
+        assertEquals(1f, xs[5], 1e-6f);
+    }
+
+    @Test
+    public void neighboursOverlap() {
+        float[] xs = TileLayout.planAxis(3000, 640, 0.25f, 4);
+        for (int i = 1; i < xs.length / 2; i++) {
+            float overlapPx = (xs[(i - 1) * 2 + 1] - xs[i * 2]) * 3000;
+            assertTrue("overlap " + overlapPx, overlapPx >= 160 - 1);
+        }
+    }
+
+    private static void assertCovers(float[] tiles, int width, int height) {
+        // 在网格上抽样，每个点都应至少落在一块里
+        for (int y = 0; y < height; y += 37) {
+            for (int x = 0; x < width; x += 37) {
+                float u = (x + 0.5f) / width, v = (y + 0.5f) / height;
+                boolean covered = false;
+                for (int t = 0; t < TileLayout.tileCount(tiles) && !covered; t++) {
+                    covered = u >= tiles[t * 4] && u <= tiles[t * 4 + 2] && v >= tiles[t * 4 + 1] && v <= tiles[t * 4 + 3];
+                }
+                assertTrue("(" + x + "," + y + ") not covered", covered);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.myapplication.ml;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.example.myapplication.ml.YoloOutputDecoderTest.ANCHORS;
+import static com.example.myapplication.ml.YoloOutputDecoderTest.CHANNELS;
+import static com.example.myapplication.ml.YoloOutputDecoderTest.CONF;
+import static com.example.myapplication.ml.YoloOutputDecoderTest.INPUT_SIZE;
+import static com.example.myapplication.ml.YoloOutputDecoderTest.legacyDecode;
+import static com.example.myapplication.ml.YoloOutputDecoderTest.randomOutput;
+import static com.example.myapplication.ml.YoloOutputDecoderTest.toDirectBuffer;
+
+/**
+ * YoloOutputDecoder 微基准 (默认不运行，见 MicroBench)
+ */
+public class YoloOutputDecoderBenchmark {
+
+    private static final int WARMUP = 300;
+    private static final int SAMPLES = 21;
+    private static final int ITERATIONS = 10;
+
+    @Before
+    public void setUp() {
+        MicroBench.assumeEnabled();
+    }
+
+    /**
+     * 旧版逐个 getFloat(index * 4) 对比 anchor 优先 / 通道优先路径，两种输出布局各跑一遍。
+     * 另外统计 decode(FloatBuffer) 每次调用在堆上分配的字节数 (旧版每个候选 new RectF + new Result)。
+     */
+    @Test
+    public void decodePaths() {
+        for (boolean transposed : new boolean[]{false, true}) {
+            float[] data = randomOutput(transposed, 1L);
+            ByteBuffer buffer = toDirectBuffer(data);
+            FloatBuffer view = buffer.asFloatBuffer();
+            YoloOutputDecoder decoder = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, transposed);
+
+            double legacy = MicroBench.medianMs(WARMUP, SAMPLES, ITERATIONS,
+                    () -> legacyDecode(buffer, transposed).count);
+            double anchorMajor = MicroBench.medianMs(WARMUP, SAMPLES, ITERATIONS,
+                    () -> decoder.decodeAnchorMajor(data, CONF));
+            // 通道优先路径只对转置布局有意义
+            String channelMajor = transposed ? String.format("%.3f ms", MicroBench.medianMs(WARMUP, SAMPLES,
+                    ITERATIONS, () -> decoder.decodeChannelMajor(data, CONF))) : "n/a";
+            double fromBuffer = MicroBench.medianMs(WARMUP, SAMPLES, ITERATIONS,
+                    () -> decoder.decode(view, CONF));
+            long allocated = allocatedBytes(() -> decoder.decode(view, CONF));
+
+            System.out.printf("[decode %s] median of %d: legacy getFloat %.3f ms, anchor-major %.3f ms,"
+                            + " channel-major %s, decode(FloatBuffer) %.3f ms (x%.2f vs legacy),"
+                            + " %d candidates, %d bytes allocated/decode (sink=%d)%n",
+                    transposed ? "[1,84,8400]" : "[1,8400,84]", SAMPLES,
+                    legacy, anchorMajor, channelMajor, fromBuffer, legacy / fromBuffer,
+                    decoder.getCandidateCount(), allocated, MicroBench.sink());
+        }
+    }
+
+    /**
+     * 串行对比 2~4 段并行解码 (调用线程 + chunks-1 个工作线程)，转置布局、全部 80 类参与扫描。
+     * 结果只在核数多于段数的机器上有参考意义，单核上并行只会多出调度开销。
+     */
+    @Test
+    public void parallelDecode() {
+        float[] data = randomOutput(true, 1L);
+        YoloOutputDecoder serial = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, true);
+        double serialMs = MicroBench.medianMs(WARMUP, SAMPLES, ITERATIONS, () -> serial.decode(data, CONF));
+        System.out.printf("[decode parallel] %d cores, serial %.3f ms%n",
+                Runtime.getRuntime().availableProcessors(), serialMs);
+        for (int chunks = 2; chunks <= 4; chunks++) {
+            ExecutorService pool = Executors.newFixedThreadPool(chunks - 1);
+            try {
+                YoloOutputDecoder parallel = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, true);
+                parallel.setCalibrationSamples(0);
+                parallel.setParallelDecode(pool, chunks);
+                double parallelMs = MicroBench.medianMs(WARMUP, SAMPLES, ITERATIONS,
+                        () -> parallel.decode(data, CONF));
+                // 默认的实测门槛在这台机器上的结论
+                YoloOutputDecoder gated = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, true);
+                gated.setParallelDecode(pool, chunks);
+                for (int i = 0; i < YoloOutputDecoder.DEFAULT_CALIBRATION_SAMPLES * 2; i++) gated.decode(data, CONF);
+                System.out.printf("[decode parallel] %d chunks: %.3f ms (x%.2f vs serial), gate -> %s (sink=%d)%n",
+                        chunks, parallelMs, serialMs / parallelMs, gated.getParallelVerdict(), MicroBench.sink());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /** 预热后连续解码 100 次，平均每次分配的字节数；JVM 不支持统计时返回 -1 */
+    private static long allocatedBytes(MicroBench.Body body) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        int rounds = 100;
+        for (int i = 0; i < rounds; i++) body.run();
+        return (threads.getThreadAllocatedBytes(id) - before) / rounds;
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * YoloOutputDecoder 的一致性测试 (基准见 YoloOutputDecoderBenchmark)
+ */
+public class YoloOutputDecoderTest {
+
+    static final int CHANNELS = 84;
+    static final int ANCHORS = 8400;
+    static final int INPUT_SIZE = 640;
+    static final float CONF = 0.5f;
+
+    @Test
+    public void channelMajor_matchesAnchorMajor_onTransposedLayout() {
+        float[] data = randomOutput(true, 42L);
+        YoloOutputDecoder decoder = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, true);
+
+        int serial = decoder.decodeAnchorMajor(data, CONF);
+        Snapshot expected = Snapshot.of(decoder, serial);
+
+        int fast = decoder.decodeChannelMajor(data, CONF);
+        assertEquals(serial, fast);
+        expected.assertSame(Snapshot.of(decoder, fast));
+    }
+
+    @Test
+    public void bothLayouts_matchLegacyGetFloatDecode() {
+        for (boolean transposed : new boolean[]{false, true}) {
+            float[] data = randomOutput(transposed, 7L);
+            ByteBuffer buffer = toDirectBuffer(data);
+            YoloOutputDecoder decoder = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, transposed);
+
+            int count = decoder.decode(buffer.asFloatBuffer(), CONF);
+            Snapshot legacy = legacyDecode(buffer, transposed);
+            assertEquals(legacy.count, count);
+            legacy.assertSame(Snapshot.of(decoder, count));
+        }
+    }
+
+    @Test
+    public void batchedOutput_decodesEachImageAtItsOffset() {
+        float[] first = randomOutput(true, 3L);
+        float[] second = randomOutput(true, 4L);
+        float[] batched = new float[first.length * 2];
+        System.arraycopy(first, 0, batched, 0, first.length);
+        System.arraycopy(second, 0, batched, first.length, second.length);
+        ByteBuffer buffer = toDirectBuffer(batched);
+        YoloOutputDecoder decoder = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, true);
+
+        for (int b = 0; b < 2; b++) {
+            int expectedCount = decoder.decode(b == 0 ? first : second, CONF);
+            Snapshot expected = Snapshot.of(decoder, expectedCount);
+            int count = decoder.decode(buffer.asFloatBuffer(), b * decoder.getOutputLength(), CONF);
+            expected.assertSame(Snapshot.of(decoder, count));
+        }
+    }
+
+    @Test
+    public void quantizedOutput_matchesDequantizedFloatDecode() {
+        // 典型的全整型 YOLOv8 导出：输出 scale 约 1/255 (坐标已归一化)，int8 零点 -128 / uint8 零点 0
+        float scale = 1f / 255f;
+        for (boolean transposed : new boolean[]{false, true}) {
+            for (boolean unsigned : new boolean[]{false, true}) {
+                int zeroPoint = unsigned ? 0 : -128;
+                Random random = new Random(transposed ? 11L : 12L);
+                byte[] raw = new byte[CHANNELS * ANCHORS];
+                float[] dequantized = new float[raw.length];
+                for (int i = 0; i < ANCHORS; i++) {
+                    for (int j = 0; j < CHANNELS; j++) {
+                        // 框坐标随机；类别分数大多很低，少量 anchor 高分并制造并列
+                        int q = j < 4 ? random.nextInt(256) : (random.nextInt(20) == 0 ? 128 + random.nextInt(128) : random.nextInt(80));
+                        int index = transposed ? j * ANCHORS + i : i * CHANNELS + j;
+                        raw[index] = (byte) (unsigned ? q : q - 128);
+                        dequantized[index] = ((unsigned ? raw[index] & 0xFF : raw[index]) - zeroPoint) * scale;
+                    }
+                }
+                YoloOutputDecoder decoder = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, transposed);
+                int expectedCount = decoder.decode(dequantized, CONF);
+                Snapshot expected = Snapshot.of(decoder, expectedCount);
+                assertTrue(expectedCount > 0);
+
+                ByteBuffer buffer = ByteBuffer.allocateDirect(raw.length + 16);
+                buffer.position(16);
+                buffer.put(raw);
+                int count = decoder.decodeQuantized(buffer, 16, CONF, scale, zeroPoint, unsigned);
+                expected.assertSame(Snapshot.of(decoder, count));
+            }
+        }
+    }
+
+    @Test
+    public void quantizedThreshold_isExact() {
+        float scale = 0.0039215f;
+        int zeroPoint = -128;
+        int q = YoloOutputDecoder.quantizeThreshold(CONF, scale, zeroPoint);
+        assertTrue((q - zeroPoint) * scale <= CONF);
+        assertTrue((q + 1 - zeroPoint) * scale > CONF);
+    }
+
+    @Test
+    public void activeClasses_matchFullDecodeWithOtherChannelsZeroed() {
+        int[] lesson = {45, 41, 39, 0, 41, 200, -1}; // 乱序、重复、越界都应被整理掉
+        for (boolean transposed : new boolean[]{false, true}) {
+            float[] data = randomOutput(transposed, 21L);
+            float[] masked = data.clone();
+            for (int i = 0; i < ANCHORS; i++) {
+                for (int j = 4; j < CHANNELS; j++) {
+                    int c = j - 4;
+                    if (c != 0 && c != 39 && c != 41 && c != 45) set(masked, transposed, i, j, 0f);
+                }
+            }
+            YoloOutputDecoder decoder = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, transposed);
+            int expectedCount = decoder.decode(masked, CONF);
+            Snapshot expected = Snapshot.of(decoder, expectedCount);
+
+            decoder.setActiveClasses(lesson);
+            assertArrayEquals(new int[]{0, 39, 41, 45}, decoder.getActiveClasses());
+            int count = decoder.decode(data, CONF);
+            expected.assertSame(Snapshot.of(decoder, count));
+            for (int i = 0; i < count; i++) {
+                int c = decoder.getClassId(i);
+                assertTrue("off-lesson class " + c, c == 0 || c == 39 || c == 41 || c == 45);
+            }
+
+            // 恢复全部类别
+            decoder.setActiveClasses(null);
+            assertNull(decoder.getActiveClasses());
+            int full = decoder.decode(data, CONF);
+            Snapshot.of(decoder, full).assertSame(snapshotOf(data, transposed));
+        }
+    }
+
+    @Test
+    public void parallelDecode_isIdenticalToSerial() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            for (boolean transposed : new boolean[]{false, true}) {
+                float[] data = randomOutput(transposed, 33L);
+                Snapshot serial = snapshotOf(data, transposed);
+
+                YoloOutputDecoder decoder = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, transposed);
+                decoder.setCalibrationSamples(0);
+                decoder.setParallelDecode(pool, 4);
+                for (int round = 0; round < 3; round++) {
+                    int count = decoder.decode(data, CONF);
+                    assertTrue(decoder.isLastDecodeParallel());
+                    serial.assertSame(Snapshot.of(decoder, count));
+                }
+
+                // 扫描量低于门槛 (只剩 2 类) 时回到串行
+                decoder.setActiveClasses(new int[]{0, 1});
+                decoder.decode(data, CONF);
+                assertFalse(decoder.isLastDecodeParallel());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parallelDecode_fallsBackWhenExecutorIsShutDown() {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        pool.shutdown();
+        float[] data = randomOutput(true, 34L);
+        YoloOutputDecoder decoder = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, true);
+        decoder.setCalibrationSamples(0);
+        decoder.setParallelDecode(pool, 3);
+        int count = decoder.decode(data, CONF);
+        snapshotOf(data, true).assertSame(Snapshot.of(decoder, count));
+    }
+
+    @Test
+    public void parallelDecode_keptOnlyWhenMeasuredFaster() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            float[] data = randomOutput(true, 35L);
+            Snapshot serial = snapshotOf(data, true);
+            // 并行快一半：测完后保留并行
+            assertEquals(YoloOutputDecoder.ParallelVerdict.PARALLEL, calibrate(pool, data, serial, 100, 50));
+            // 并行只快 5%，不到 10% 的门槛：退回串行
+            assertEquals(YoloOutputDecoder.ParallelVerdict.SERIAL, calibrate(pool, data, serial, 100, 95));
+            // 并行更慢 (单核开发机上的实测情况)
+            assertEquals(YoloOutputDecoder.ParallelVerdict.SERIAL, calibrate(pool, data, serial, 100, 110));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 假时钟：测量阶段按 串行 / 并行 交替的顺序，每次解码分别"耗时" serialCost / parallelCost
+     * 测量期间和之后的输出都必须与串行一致
+     */
+    private static YoloOutputDecoder.ParallelVerdict calibrate(ExecutorService pool, float[] data, Snapshot serial,
+                                                               long serialCost, long parallelCost) {
+        YoloOutputDecoder decoder = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, true);
+        long[] calls = {0};
+        long[] now = {0};
+        decoder.setClock(() -> {
+            long call = calls[0]++;
+            // 每次解码读两次时钟：第二次时按这次解码走的路径推进
+            if ((call & 1) == 1) now[0] += ((call >> 1) & 1) == 1 ? parallelCost : serialCost;
+            return now[0];
+        });
+        decoder.setCalibrationSamples(3);
+        decoder.setParallelDecode(pool, 4);
+        for (int run = 0; run < 6; run++) {
+            assertEquals(YoloOutputDecoder.ParallelVerdict.CALIBRATING, decoder.getParallelVerdict());
+            int count = decoder.decode(data, CONF);
+            assertEquals((run & 1) == 1, decoder.isLastDecodeParallel());
+            serial.assertSame(Snapshot.of(decoder, count));
+        }
+        YoloOutputDecoder.ParallelVerdict verdict = decoder.getParallelVerdict();
+        int count = decoder.decode(data, CONF);
+        assertEquals(verdict == YoloOutputDecoder.ParallelVerdict.PARALLEL, decoder.isLastDecodeParallel());
+        serial.assertSame(Snapshot.of(decoder, count));
+        return verdict;
+    }
+
+    private static Snapshot snapshotOf(float[] data, boolean transposed) {
+        YoloOutputDecoder fresh = new YoloOutputDecoder(CHANNELS, ANCHORS, INPUT_SIZE, transposed);
+        return Snapshot.of(fresh, fresh.decode(data, CONF));
+    }
+
+    // ========================== 工具方法 ==========================
+
+    /** 生成稀疏的模拟输出：大部分类别分数很低，少量 anchor 有高分，并故意制造并列分数 */
+    static float[] randomOutput(boolean transposed, long seed) {
+        Random random = new Random(seed);
+        float[] data = new float[CHANNELS * ANCHORS];
+        for (int i = 0; i < ANCHORS; i++) {
+            set(data, transposed, i, 0, random.nextFloat() * INPUT_SIZE);
+            set(data, transposed, i, 1, random.nextFloat() * INPUT_SIZE);
+            set(data, transposed, i, 2, 2f + random.nextFloat() * 200f);
+            set(data, transposed, i, 3, 2f + random.nextFloat() * 200f);
+            for (int j = 4; j < CHANNELS; j++) {
+                set(data, transposed, i, j, random.nextFloat() * 0.3f);
+            }
+            if (random.nextInt(20) == 0) {
+                float hot = 0.5f + random.nextFloat() * 0.5f;
+                set(data, transposed, i, 4 + random.nextInt(CHANNELS - 4), hot);
+                if (random.nextBoolean()) {
+                    set(data, transposed, i, 4 + random.nextInt(CHANNELS - 4), hot);
+                }
+            }
+        }
+        return data;
+    }
+
+    private static void set(float[] data, boolean transposed, int anchor, int channel, float value) {
+        data[transposed ? channel * ANCHORS + anchor : anchor * CHANNELS + channel] = value;
+    }
+
+    static ByteBuffer toDirectBuffer(float[] data) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length * 4).order(ByteOrder.nativeOrder());
+        buffer.asFloatBuffer().put(data);
+        return buffer;
+    }
+
+    /** 旧版 YoloDetector.detect() 的解码循环 (逐个 getFloat)，作为参考实现 */
+    static Snapshot legacyDecode(ByteBuffer outputBuffer, boolean transposed) {
+        Snapshot s = new Snapshot(ANCHORS);
+        for (int i = 0; i < ANCHORS; i++) {
+            float maxScore = 0f;
+            int maxClassIndex = -1;
+            for (int j = 4; j < CHANNELS; j++) {
+                int index = transposed ? (j * ANCHORS + i) : (i * CHANNELS + j);
+                float score = outputBuffer.getFloat(index * 4);
+                if (score > maxScore) {
+                    maxScore = score;
+                    maxClassIndex = j - 4;
+                }
+            }
+            if (maxScore > CONF) {
+                float rawCx = outputBuffer.getFloat((transposed ? i : i * CHANNELS) * 4);
+                float rawCy = outputBuffer.getFloat((transposed ? ANCHORS + i : i * CHANNELS + 1) * 4);
+                float rawW = outputBuffer.getFloat((transposed ? 2 * ANCHORS + i : i * CHANNELS + 2) * 4);
+                float rawH = outputBuffer.getFloat((transposed ? 3 * ANCHORS + i : i * CHANNELS + 3) * 4);
+                float cx = rawW <= 1.0f ? rawCx * INPUT_SIZE : rawCx;
+                float cy = rawH <= 1.0f ? rawCy * INPUT_SIZE : rawCy;
+                float w = rawW <= 1.0f ? rawW * INPUT_SIZE : rawW;
+                float h = rawH <= 1.0f ? rawH * INPUT_SIZE : rawH;
+                float l = Math.max(0f, Math.min(1f, (cx - w / 2f) / INPUT_SIZE));
+                float t = Math.max(0f, Math.min(1f, (cy - h / 2f) / INPUT_SIZE));
+                float r = Math.max(0f, Math.min(1f, (cx + w / 2f) / INPUT_SIZE));
+                float b = Math.max(0f, Math.min(1f, (cy + h / 2f) / INPUT_SIZE));
+                if (r - l > 0 && b - t > 0) {
+                    s.add(l, t, r, b, maxScore, maxClassIndex);
+                }
+            }
+        }
+        return s;
+    }
+
+    static class Snapshot {
+        final float[] boxes;
+        final float[] scores;
+        final int[] classIds;
+        int count;
+
+        Snapshot(int capacity) {
+            boxes = new float[capacity * 4];
+            scores = new float[capacity];
+            classIds = new int[capacity];
+        }
+
+        void add(float l, float t, float r, float b, float score, int classId) {
+            boxes[count * 4] = l;
+            boxes[count * 4 + 1] = t;
+            boxes[count * 4 + 2] = r;
+            boxes[count * 4 + 3] = b;
+            scores[count] = score;
+            classIds[count] = classId;
+            count++;
+        }
+
+        static Snapshot of(YoloOutputDecoder decoder, int count) {
+            Snapshot s = new Snapshot(count);
+            for (int i = 0; i < count; i++) {
+                s.add(decoder.getLeft(i), decoder.getTop(i), decoder.getRight(i), decoder.getBottom(i),
+                        decoder.getScore(i), decoder.getClassId(i));
+            }
+            return s;
+        }
+
+        void assertSame(Snapshot other) {
+            assertEquals(count, other.count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(classIds[i], other.classIds[i]);
+                assertEquals(scores[i], other.scores[i], 0f);
+                for (int k = 0; k < 4; k++) {
+                    assertEquals(boxes[i * 4 + k], other.boxes[i * 4 + k], 0f);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.myapplication.ml;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * YuvTensorConverter 桌面 JVM 基准 (默认不运行，见 MicroBench)
+ */
+public class YuvTensorConverterBenchmark {
+
+    private static final int WARMUP = 30;
+    private static final int SAMPLES = 15;
+    private static final int ITERATIONS = 3;
+
+    @Before
+    public void setUp() {
+        MicroBench.assumeEnabled();
+    }
+
+    /**
+     * 1280x720 NV21 -> 640x640 float 张量 (旋转 90°)：整帧对比对焦框 ROI (只拷贝覆盖区域的平面数据)
+     */
+    @Test
+    public void frameToTensor() {
+        int w = 1280, h = 720, size = 640;
+        YuvTensorConverterTest.Planes planes = YuvTensorConverterTest.Planes.encode(
+                YuvTensorConverterTest.referenceImage(w, h, 3L), w, h, 2);
+        ByteBuffer yPlane = ByteBuffer.allocateDirect(planes.y.length).put(planes.y);
+        ByteBuffer uPlane = ByteBuffer.allocateDirect(planes.u.length).put(planes.u);
+        ByteBuffer vPlane = ByteBuffer.allocateDirect(planes.v.length).put(planes.v);
+        ByteBuffer input = ByteBuffer.allocateDirect(size * size * 3 * 4).order(ByteOrder.nativeOrder());
+
+        float[][] regions = {{0f, 0f, 1f, 1f}, {0.3f, 0.35f, 0.7f, 0.65f}};
+        for (float[] r : regions) {
+            // 每个区域用新实例，拷贝区大小才反映这个区域本身
+            YuvTensorConverter converter = new YuvTensorConverter(new TensorPreprocessor(input, size, size,
+                    TensorPreprocessor.Layout.NHWC, TensorPreprocessor.Format.FLOAT32, TensorPreprocessor.Sampling.NEAREST));
+            converter.setRegion(r[0], r[1], r[2], r[3]);
+            double ms = MicroBench.medianMs(WARMUP, SAMPLES, ITERATIONS, () -> {
+                converter.convert(yPlane, uPlane, vPlane, w, h, planes.yRowStride, planes.uvRowStride,
+                        planes.uvPixelStride, 90);
+                return 1;
+            });
+            System.out.printf("[yuv] 1280x720 NV21 -> 640x640 float (rot 90), region %.2f,%.2f-%.2f,%.2f:"
+                            + " median %.3f ms, plane copy %d KB%n",
+                    r[0], r[1], r[2], r[3], ms, converter.getCopyBufferBytes() / 1024);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.myapplication.ml;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * YuvTensorConverter 对照参考图的测试 (基准见 YuvTensorConverterBenchmark)
+ *
+ * 参考图由 2x2 同色块组成 (色度下采样无损)，先编码成 YUV 平面，
+ * 再和 "参考图旋转 + 最近邻缩放" 的结果逐像素比较。
+ */
+public class YuvTensorConverterTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int DST = 64;
+
+    @Test
+    public void matchesRotatedReference_i420() {
+        for (int rotation : new int[]{0, 90, 180, 270}) {
+            assertMatchesReference(rotation, 1);
+        }
+    }
+
+    @Test
+    public void matchesRotatedReference_semiPlanar() {
+        for (int rotation : new int[]{0, 90, 180, 270}) {
+            assertMatchesReference(rotation, 2);
+        }
+    }
+
+    @Test
+    public void matchesRotatedReference_region() {
+        for (int rotation : new int[]{0, 90, 180, 270}) {
+            assertMatchesReference(rotation, 2, 0.25f, 0.3f, 0.75f, 0.6f);
+        }
+    }
+
+    @Test
+    public void byteBufferRegion_matchesArrayAndCopiesOnlyTheRegion() {
+        int[] argb = referenceImage(WIDTH, HEIGHT, 5L);
+        Planes planes = Planes.encode(argb, WIDTH, HEIGHT, 2);
+        int planeBytes = planes.y.length + planes.u.length + planes.v.length;
+        for (int rotation : new int[]{0, 90, 180, 270}) {
+            ByteBuffer expected = ByteBuffer.allocateDirect(DST * DST * 3 * 4).order(ByteOrder.nativeOrder());
+            YuvTensorConverter reference = newConverter(expected);
+            reference.setRegion(0.4f, 0.35f, 0.6f, 0.55f);
+            reference.convert(planes.y, planes.u, planes.v, WIDTH, HEIGHT, planes.yRowStride, planes.uvRowStride,
+                    planes.uvPixelStride, rotation);
+
+            ByteBuffer actual = ByteBuffer.allocateDirect(DST * DST * 3 * 4).order(ByteOrder.nativeOrder());
+            YuvTensorConverter converter = newConverter(actual);
+            converter.setRegion(0.4f, 0.35f, 0.6f, 0.55f);
+            converter.convert(ByteBuffer.wrap(planes.y), ByteBuffer.wrap(planes.u), ByteBuffer.wrap(planes.v),
+                    WIDTH, HEIGHT, planes.yRowStride, planes.uvRowStride, planes.uvPixelStride, rotation);
+
+            assertEquals("rotation " + rotation, expected, actual);
+            // 中间 20% x 20% 的区域：拷贝区远小于整个平面
+            assertTrue("rotation " + rotation + " copied " + converter.getCopyBufferBytes(),
+                    converter.getCopyBufferBytes() < planeBytes / 2);
+        }
+    }
+
+    private static YuvTensorConverter newConverter(ByteBuffer input) {
+        return new YuvTensorConverter(new TensorPreprocessor(input, DST, DST,
+                TensorPreprocessor.Layout.NHWC, TensorPreprocessor.Format.FLOAT32, TensorPreprocessor.Sampling.NEAREST));
+    }
+
+    private static void assertMatchesReference(int rotation, int uvPixelStride) {
+        assertMatchesReference(rotation, uvPixelStride, 0f, 0f, 1f, 1f);
+    }
+
+    /**
+     * [left, top, right, bottom] 为正向画面中的 ROI (归一化坐标)
+     */
+    private static void assertMatchesReference(int rotation, int uvPixelStride,
+                                               float left, float top, float right, float bottom) {
+        int[] argb = referenceImage(WIDTH, HEIGHT, rotation + 17L * uvPixelStride);
+        Planes planes = Planes.encode(argb, WIDTH, HEIGHT, uvPixelStride);
+
+        ByteBuffer input = ByteBuffer.allocateDirect(DST * DST * 3 * 4).order(ByteOrder.nativeOrder());
+        YuvTensorConverter converter = new YuvTensorConverter(new TensorPreprocessor(input, DST, DST,
+                TensorPreprocessor.Layout.NHWC, TensorPreprocessor.Format.FLOAT32, TensorPreprocessor.Sampling.NEAREST));
+        converter.setRegion(left, top, right, bottom);
+        converter.convert(planes.y, planes.u, planes.v, WIDTH, HEIGHT, planes.yRowStride, planes.uvRowStride,
+                planes.uvPixelStride, rotation);
+
+        // 参考：先旋转成正向画面，裁出 ROI，再最近邻缩放
+        boolean swap = rotation == 90 || rotation == 270;
+        int uprightW = swap ? HEIGHT : WIDTH;
+        int uprightH = swap ? WIDTH : HEIGHT;
+        FloatBuffer tensor = input.asFloatBuffer();
+        for (int dy = 0; dy < DST; dy++) {
+            for (int dx = 0; dx < DST; dx++) {
+                int ux = Math.min(uprightW - 1, (int) ((left + (dx + 0.5f) * (right - left) / DST) * uprightW));
+                int uy = Math.min(uprightH - 1, (int) ((top + (dy + 0.5f) * (bottom - top) / DST) * uprightH));
+                int sx, sy;
+                switch (rotation) {
+                    case 90: sx = uy; sy = HEIGHT - 1 - ux; break;
+                    case 180: sx = WIDTH - 1 - ux; sy = HEIGHT - 1 - uy; break;
+                    case 270: sx = WIDTH - 1 - uy; sy = ux; break;
+                    default: sx = ux; sy = uy; break;
+                }
+                int expected = argb[sy * WIDTH + sx];
+                int o = (dy * DST + dx) * 3;
+                assertChannel(expected >> 16, tensor.get(o), rotation, dx, dy);
+                assertChannel(expected >> 8, tensor.get(o + 1), rotation, dx, dy);
+                assertChannel(expected, tensor.get(o + 2), rotation, dx, dy);
+            }
+        }
+    }
+
+    private static void assertChannel(int expected, float actual, int rotation, int dx, int dy) {
+        // YUV 量化往返误差允许 3 个灰阶
+        assertEquals("rotation " + rotation + " at (" + dx + "," + dy + ")",
+                (expected & 0xFF) / 255f, actual, 3f / 255f);
+    }
+
+    /** 2x2 同色块的随机参考图 */
+    static int[] referenceImage(int w, int h, long seed) {
+        Random random = new Random(seed);
+        int[] argb = new int[w * h];
+        for (int y = 0; y < h; y += 2) {
+            for (int x = 0; x < w; x += 2) {
+                int color = 0xFF000000 | random.nextInt(0x1000000);
+                argb[y * w + x] = color;
+                argb[y * w + x + 1] = color;
+                argb[(y + 1) * w + x] = color;
+                argb[(y + 1) * w + x + 1] = color;
+            }
+        }
+        return argb;
+    }
+
+    /** 把 ARGB 编码成 YUV_420_888 平面 (BT.601 全范围) */
+    static class Planes {
+        byte[] y, u, v;
+        int yRowStride, uvRowStride, uvPixelStride;
+
+        static Planes encode(int[] argb, int w, int h, int uvPixelStride) {
+            Planes p = new Planes();
+            p.yRowStride = w + 16; // 模拟行尾 padding
+            p.uvPixelStride = uvPixelStride;
+            p.uvRowStride = (w / 2) * uvPixelStride + 16;
+            p.y = new byte[p.yRowStride * h];
+            p.u = new byte[p.uvRowStride * (h / 2)];
+            p.v = new byte[p.uvRowStride * (h / 2)];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    int c = argb[y * w + x];
+                    int r = (c >> 16) & 0xFF, g = (c >> 8) & 0xFF, b = c & 0xFF;
+                    p.y[y * p.yRowStride + x] = (byte) clamp(Math.round(0.299f * r + 0.587f * g + 0.114f * b));
+                    if ((x & 1) == 0 && (y & 1) == 0) {
+                        int uv = (y / 2) * p.uvRowStride + (x / 2) * uvPixelStride;
+                        p.u[uv] = (byte) clamp(Math.round(-0.168736f * r - 0.331264f * g + 0.5f * b + 128));
+                        p.v[uv] = (byte) clamp(Math.round(0.5f * r - 0.418688f * g - 0.081312f * b + 128));
+                    }
+                }
+            }
+            return p;
+        }
+
+        private static int clamp(int c) {
+            return Math.max(0, Math.min(255, c));
+        }
+    }
+}